@@ -0,0 +1,121 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.math.RayTraceContext;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.vector.Vector3d;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.orecruncher.lib.world.SyntheticWorld;
+import org.orecruncher.lib.world.VoxelSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways of tracing a fan of 32 rays out from a point, as the reverb calculation does.  BlockRayTrace runs
+ * against the synthetic world through IBlockReader; the others run against a snapshot of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RayTraceBenchmark {
+
+    private static final int RAYS = 32;
+    private static final double LENGTH = 64D;
+
+    @Param({"CAVES", "FIELDS", "DENSE", "WATER"})
+    public SyntheticWorld.Terrain terrain;
+
+    private SyntheticWorld world;
+    private VoxelSnapshot snapshot;
+    private Vector3d origin;
+    private final Vector3d[] ends = new Vector3d[RAYS];
+
+    private BlockRayTrace blockRayTrace;
+    private VoxelRayCaster caster;
+    private VoxelRayPacket packet;
+    private RayTraceIterator iterator;
+
+    @Setup
+    public void setup() {
+        this.world = new SyntheticWorld(this.terrain);
+        this.snapshot = this.world.snapshot();
+        this.origin = this.world.getListenerEyes();
+
+        for (int i = 0; i < RAYS; i++) {
+            final double longitude = MathStuff.ANGLE * i;
+            final double latitude = Math.asin(((double) i / RAYS) * 2.0D - 1.0D);
+            final Vector3d normal = new Vector3d(
+                    Math.cos(latitude) * Math.cos(longitude),
+                    Math.cos(latitude) * Math.sin(longitude),
+                    Math.sin(latitude)
+            ).normalize();
+            this.ends[i] = this.origin.add(normal.scale(LENGTH));
+        }
+
+        this.blockRayTrace = new BlockRayTrace(this.world, RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
+        this.caster = new VoxelRayCaster(RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
+        this.packet = new VoxelRayPacket(RAYS, RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
+        this.iterator = new RayTraceIterator(new VoxelRayCaster(RayTraceContext.BlockMode.VISUAL, RayTraceContext.FluidMode.SOURCE_ONLY));
+    }
+
+    @Benchmark
+    public void blockRayTrace(final Blackhole bh) {
+        for (int i = 0; i < RAYS; i++) {
+            final BlockRayTraceResult result = this.blockRayTrace.trace(this.origin, this.ends[i]);
+            bh.consume(result.getType() == RayTraceResult.Type.BLOCK);
+        }
+    }
+
+    @Benchmark
+    public void voxelRayCaster(final Blackhole bh) {
+        for (int i = 0; i < RAYS; i++) {
+            final Vector3d end = this.ends[i];
+            bh.consume(this.caster.trace(this.snapshot, this.origin.x, this.origin.y, this.origin.z, end.x, end.y, end.z));
+        }
+    }
+
+    @Benchmark
+    public void voxelRayPacket(final Blackhole bh) {
+        final VoxelRayPacket p = this.packet;
+        p.clear();
+        for (int i = 0; i < RAYS; i++) {
+            final Vector3d end = this.ends[i];
+            p.add(this.origin.x, this.origin.y, this.origin.z, end.x, end.y, end.z);
+        }
+        p.trace(this.snapshot);
+        for (int i = 0; i < RAYS; i++)
+            bh.consume(p.isHit(i));
+    }
+
+    @Benchmark
+    public void rayTraceIterator(final Blackhole bh) {
+        for (int i = 0; i < RAYS; i++) {
+            final Vector3d end = this.ends[i];
+            this.iterator.reset(this.snapshot, this.origin.x, this.origin.y, this.origin.z, end.x, end.y, end.z);
+            while (this.iterator.hasNext())
+                bh.consume(this.iterator.next().getStateId());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.world;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.world.IBlockReader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Random;
+
+/**
+ * Deterministically generated block volume used by the benchmarks.  The same terrain is produced on every run so
+ * results can be compared between commits.  The volume can be read directly as an IBlockReader, or captured as a
+ * VoxelSnapshot the same way the sound processor would see it.
+ */
+public final class SyntheticWorld implements IBlockReader {
+
+    // Size of the volume in sections.  Matches the volume captured by VoxelSnapshotCache.
+    private static final int SECTIONS_XZ = 7;
+    private static final int SECTIONS_Y = 5;
+    public static final int SIZE_XZ = SECTIONS_XZ * 16;
+    public static final int SIZE_Y = SECTIONS_Y * 16;
+
+    private static final long SEED = 0x5EED_50D5L;
+
+    public enum Terrain {
+        /**
+         * Solid stone riddled with winding tunnels and a chamber around the listener.
+         */
+        CAVES,
+        /**
+         * Flat grass land with scattered plants under an open sky.
+         */
+        FIELDS,
+        /**
+         * Grid of stone brick and plank rooms with doorways and glass windows.
+         */
+        DENSE,
+        /**
+         * Sea floor covered by deep water with the listener submerged.
+         */
+        WATER
+    }
+
+    private final Terrain terrain;
+    private final int[] states = new int[SIZE_XZ * SIZE_Y * SIZE_XZ];
+    // Offset so that the listener stands in the middle of a room in the DENSE terrain
+    private final BlockPos listener = new BlockPos(SIZE_XZ / 2 - 4, 41, SIZE_XZ / 2 - 4);
+
+    public SyntheticWorld(@Nonnull final Terrain terrain) {
+        bootstrap();
+        this.terrain = terrain;
+        generate();
+    }
+
+    /**
+     * Performs the registry bootstrap that Minecraft would normally do on startup so block states are available.
+     */
+    public static void bootstrap() {
+        Bootstrap.register();
+    }
+
+    @Nonnull
+    public Terrain getTerrain() {
+        return this.terrain;
+    }
+
+    /**
+     * Block position of the listener's eyes.  It is always an open cell.
+     */
+    @Nonnull
+    public BlockPos getListener() {
+        return this.listener;
+    }
+
+    @Nonnull
+    public Vector3d getListenerEyes() {
+        return new Vector3d(this.listener.getX() + 0.5D, this.listener.getY() + 0.6D, this.listener.getZ() + 0.5D);
+    }
+
+    /**
+     * Picks open positions within the specified range of the listener for sounds to play at.
+     *
+     * @param count Number of positions
+     * @param range Maximum distance from the listener along each axis
+     * @return Array of sound positions
+     */
+    @Nonnull
+    public Vector3d[] getSoundPositions(final int count, final int range) {
+        final Random random = new Random(SEED + count);
+        final Vector3d[] result = new Vector3d[count];
+        int found = 0;
+        int attempts = 0;
+        while (found < count) {
+            final int x = this.listener.getX() + random.nextInt(range * 2 + 1) - range;
+            final int y = this.listener.getY() + random.nextInt(range + 1) - range / 2;
+            final int z = this.listener.getZ() + random.nextInt(range * 2 + 1) - range;
+            // Prefer open cells, but take what is there if the terrain is too solid
+            if (++attempts > count * 64 || Block.getStateById(getStateId(x, y, z)).isAir() || this.terrain == Terrain.WATER)
+                result[found++] = new Vector3d(x + 0.5D, y + 0.5D, z + 0.5D);
+        }
+        return result;
+    }
+
+    /**
+     * Captures the volume as a VoxelSnapshot.
+     */
+    @Nonnull
+    public VoxelSnapshot snapshot() {
+        final VoxelSnapshot.Section[] sections = new VoxelSnapshot.Section[SECTIONS_XZ * SECTIONS_Y * SECTIONS_XZ];
+        final Int2IntOpenHashMap lookup = new Int2IntOpenHashMap();
+        lookup.defaultReturnValue(-1);
+        final int[] palette = new int[16 * 16 * 16];
+        final short[] index = new short[16 * 16 * 16];
+
+        for (int sy = 0; sy < SECTIONS_Y; sy++)
+            for (int sz = 0; sz < SECTIONS_XZ; sz++)
+                for (int sx = 0; sx < SECTIONS_XZ; sx++) {
+                    lookup.clear();
+                    int paletteSize = 0;
+                    for (int y = 0; y < 16; y++)
+                        for (int z = 0; z < 16; z++)
+                            for (int x = 0; x < 16; x++) {
+                                final int id = getStateId(sx * 16 + x, sy * 16 + y, sz * 16 + z);
+                                int idx = lookup.get(id);
+                                if (idx < 0) {
+                                    idx = paletteSize++;
+                                    lookup.put(id, idx);
+                                    palette[idx] = id;
+                                }
+                                index[(y << 8) | (z << 4) | x] = (short) idx;
+                            }
+
+                    final int[] p = new int[paletteSize];
+                    System.arraycopy(palette, 0, p, 0, paletteSize);
+                    final VoxelSnapshot.Section section;
+                    if (paletteSize == 1) {
+                        section = new VoxelSnapshot.Section(p, null, null);
+                    } else if (paletteSize <= 256) {
+                        final byte[] small = new byte[index.length];
+                        for (int i = 0; i < small.length; i++)
+                            small[i] = (byte) index[i];
+                        section = new VoxelSnapshot.Section(p, small, null);
+                    } else {
+                        section = new VoxelSnapshot.Section(p, null, index.clone());
+                    }
+                    sections[(sy * SECTIONS_XZ + sz) * SECTIONS_XZ + sx] = section;
+                }
+
+        return new VoxelSnapshot(0, 0, 0, SECTIONS_XZ, SECTIONS_Y, SECTIONS_XZ, sections);
+    }
+
+    private int getStateId(final int x, final int y, final int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= SIZE_XZ || y >= SIZE_Y || z >= SIZE_XZ)
+            return VoxelSnapshot.AIR_ID;
+        return this.states[(y * SIZE_XZ + z) * SIZE_XZ + x];
+    }
+
+    private void set(final int x, final int y, final int z, @Nonnull final BlockState state) {
+        this.states[(y * SIZE_XZ + z) * SIZE_XZ + x] = Block.getStateId(state);
+    }
+
+    private void generate() {
+        final Random random = new Random(SEED);
+        final int lx = this.listener.getX();
+        final int ly = this.listener.getY();
+        final int lz = this.listener.getZ();
+
+        for (int y = 0; y < SIZE_Y; y++)
+            for (int z = 0; z < SIZE_XZ; z++)
+                for (int x = 0; x < SIZE_XZ; x++) {
+                    final BlockState state;
+                    switch (this.terrain) {
+                        case CAVES: {
+                            final double tunnel = Math.sin(x * 0.17D) + Math.sin(y * 0.23D + 1.3D) + Math.sin(z * 0.19D + 0.7D);
+                            final int dx = x - lx;
+                            final int dy = y - ly;
+                            final int dz = z - lz;
+                            final boolean chamber = dx * dx + dy * dy * 4 + dz * dz < 36;
+                            state = chamber || tunnel > 1.6D ? Blocks.CAVE_AIR.getDefaultState() : Blocks.STONE.getDefaultState();
+                            break;
+                        }
+                        case FIELDS: {
+                            if (y < ly - 5)
+                                state = Blocks.DIRT.getDefaultState();
+                            else if (y == ly - 5)
+                                state = Blocks.GRASS_BLOCK.getDefaultState();
+                            else if (y == ly - 4 && random.nextInt(5) == 0)
+                                state = Blocks.GRASS.getDefaultState();
+                            else
+                                state = Blocks.AIR.getDefaultState();
+                            break;
+                        }
+                        case DENSE: {
+                            final int rx = x & 7;
+                            final int rz = z & 7;
+                            final int ry = Math.floorMod(y - ly + 1, 5);
+                            if (ry == 0)
+                                state = Blocks.OAK_PLANKS.getDefaultState();
+                            else if (rx == 0 || rz == 0) {
+                                if ((rx == 4 || rz == 4) && ry <= 2)
+                                    state = Blocks.AIR.getDefaultState();
+                                else if (ry == 2 && (rx == 2 || rz == 2))
+                                    state = Blocks.GLASS.getDefaultState();
+                                else
+                                    state = Blocks.STONE_BRICKS.getDefaultState();
+                            } else
+                                state = Blocks.AIR.getDefaultState();
+                            break;
+                        }
+                        case WATER:
+                        default: {
+                            if (y < ly - 12)
+                                state = random.nextInt(4) == 0 ? Blocks.GRAVEL.getDefaultState() : Blocks.SAND.getDefaultState();
+                            else if (y < ly + 4)
+                                state = Blocks.WATER.getDefaultState();
+                            else
+                                state = Blocks.AIR.getDefaultState();
+                            break;
+                        }
+                    }
+                    set(x, y, z, state);
+                }
+
+        // The listener always has room to stand
+        if (this.terrain != Terrain.WATER) {
+            set(lx, ly, lz, Blocks.AIR.getDefaultState());
+            set(lx, ly - 1, lz, Blocks.AIR.getDefaultState());
+        }
+    }
+
+    @Nullable
+    @Override
+    public TileEntity getTileEntity(@Nonnull final BlockPos pos) {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public BlockState getBlockState(@Nonnull final BlockPos pos) {
+        return Block.getStateById(getStateId(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    @Nonnull
+    @Override
+    public FluidState getFluidState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+}
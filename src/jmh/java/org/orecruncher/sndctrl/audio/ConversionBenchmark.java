@@ -0,0 +1,78 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import net.minecraft.client.audio.AudioStreamBuffer;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of converting stereo PCM sound data into mono.  Each invocation converts a freshly filled buffer holding
+ * one second of audio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final float SAMPLE_RATE = 44100F;
+
+    @Param({"8", "16"})
+    public int bits;
+
+    private AudioFormat format;
+    private ByteBuffer pristine;
+    private ByteBuffer data;
+    private AudioStreamBuffer buffer;
+
+    @Setup
+    public void setup() {
+        final int frameSize = (this.bits / 8) * 2;
+        this.format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, SAMPLE_RATE, this.bits, 2, frameSize, SAMPLE_RATE, false);
+
+        final byte[] samples = new byte[(int) SAMPLE_RATE * frameSize];
+        new Random(0x50D5L).nextBytes(samples);
+        this.pristine = BufferUtils.createByteBuffer(samples.length).order(ByteOrder.LITTLE_ENDIAN);
+        this.pristine.put(samples).flip();
+        this.data = BufferUtils.createByteBuffer(samples.length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        // Conversion happens in place so every invocation needs a fresh copy of the stereo data
+        this.pristine.rewind();
+        this.data.clear();
+        this.data.put(this.pristine).flip();
+        this.buffer = new AudioStreamBuffer(this.data, this.format);
+    }
+
+    @Benchmark
+    public AudioStreamBuffer convert() {
+        return Conversion.convert(this.buffer);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.util.math.vector.Vector3d;
+import org.openjdk.jmh.annotations.*;
+import org.orecruncher.lib.world.SyntheticWorld;
+import org.orecruncher.sndctrl.api.sound.Category;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the acoustic calculations made for playing sounds.  Both run in steady state: the listener visibility
+ * field carries over between invocations the way it does between processor iterations while the player stands still.
+ * The occlusion path and acoustic cache are bypassed so every invocation traces.
+ */
+public class SoundFXBenchmark {
+
+    private static final int SOUND_RANGE = 24;
+    private static final int THREADS = 2;
+    private static final int ITERATION_MSECS = 50;
+
+    /**
+     * Latency of calculating the effects of a single sound.
+     */
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public static class Calculate {
+
+        @Param({"CAVES", "FIELDS", "DENSE", "WATER"})
+        public SyntheticWorld.Terrain terrain;
+
+        private WorldContext ctx;
+        private SourceContext source;
+        private SoundFXUtils fx;
+        private Vector3d[] positions;
+        private int next;
+
+        @Setup
+        public void setup() {
+            final SyntheticWorld world = new SyntheticWorld(this.terrain);
+            this.ctx = new WorldContext(world.snapshot(), world.getListenerEyes());
+            this.source = new SourceContext();
+            this.fx = new SoundFXUtils(this.source);
+            this.positions = world.getSoundPositions(64, SOUND_RANGE);
+        }
+
+        @Benchmark
+        public AcousticCache.Result calculate() {
+            final Vector3d pos = this.positions[this.next];
+            this.next = (this.next + 1) % this.positions.length;
+            this.source.getOcclusionPath().invalidate();
+            final ReverbDetail detail = ReverbDetail.select(pos.squareDistanceTo(this.ctx.playerEyePosition), Category.BLOCKS, 0);
+            return this.fx.compute(this.ctx, pos, detail, true);
+        }
+    }
+
+    /**
+     * Throughput of the sound processor iteration with a number of sounds playing at once.  Each iteration does the
+     * work processSounds would: the scheduler picks the contexts that are due and spreads them over its workers.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 5, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public static class ProcessSounds {
+
+        @Param({"CAVES", "FIELDS", "DENSE", "WATER"})
+        public SyntheticWorld.Terrain terrain;
+
+        @Param({"8", "32", "128"})
+        public int sources;
+
+        private WorldContext ctx;
+        private ActiveSourceSet contexts;
+        private SoundFXScheduler scheduler;
+
+        @Setup
+        public void setup() {
+            final SyntheticWorld world = new SyntheticWorld(this.terrain);
+            this.ctx = new WorldContext(world.snapshot(), world.getListenerEyes());
+
+            final Vector3d[] positions = world.getSoundPositions(this.sources, SOUND_RANGE);
+            final Reference2ObjectOpenHashMap<SourceContext, SoundFXUtils> work = new Reference2ObjectOpenHashMap<>();
+            final Reference2ObjectOpenHashMap<SourceContext, Vector3d> where = new Reference2ObjectOpenHashMap<>();
+            this.contexts = new ActiveSourceSet(this.sources);
+            for (int i = 0; i < this.sources; i++) {
+                final SourceContext source = new SourceContext();
+                this.contexts.add(source);
+                work.put(source, new SoundFXUtils(source));
+                where.put(source, positions[i]);
+            }
+
+            this.scheduler = new SoundFXScheduler(THREADS, ITERATION_MSECS, source -> {
+                final Vector3d pos = where.get(source);
+                source.getOcclusionPath().invalidate();
+                final ReverbDetail detail = ReverbDetail.select(pos.squareDistanceTo(this.ctx.playerEyePosition), Category.BLOCKS, 0);
+                work.get(source).compute(this.ctx, pos, detail, true);
+            });
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.scheduler.shutdown();
+        }
+
+        @Benchmark
+        public void processSounds() {
+            this.scheduler.process(this.contexts, this.ctx.playerEyePosition);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.orecruncher.environs.handlers;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import org.orecruncher.environs.config.Config;
 import org.orecruncher.environs.scanner.*;
@@ -82,4 +83,16 @@ class AreaBlockEffects extends HandlerBase {
         event.getExpandedPositions().forEach(this.alwaysOn::onBlockUpdate);
         this.nanos += System.nanoTime() - start;
     }
+
+    @SubscribeEvent
+    public void onChunkLoad(@Nonnull final ChunkEvent.Load event) {
+        if (event.getWorld() != null && event.getWorld().isRemote())
+            this.alwaysOn.onChunkLoad(event.getChunk().getPos());
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(@Nonnull final ChunkEvent.Unload event) {
+        if (event.getWorld() != null && event.getWorld().isRemote())
+            this.alwaysOn.onChunkUnload(event.getChunk().getPos());
+    }
 }
@@ -31,6 +31,7 @@ import net.minecraft.world.LightType;
 import net.minecraft.world.World;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import org.orecruncher.environs.Environs;
@@ -40,6 +41,7 @@ import org.orecruncher.environs.library.BiomeLibrary;
 import org.orecruncher.environs.library.DimensionLibrary;
 import org.orecruncher.environs.scanner.CeilingCoverage;
 import org.orecruncher.lib.*;
+import org.orecruncher.lib.events.BlockUpdateEvent;
 import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.resource.ResourceUtils;
 import org.orecruncher.lib.seasons.Season;
@@ -136,6 +138,17 @@ class CommonStateHandler extends HandlerBase {
         CommonState.reset();
     }
 
+    @SubscribeEvent
+    public void onBlockUpdate(@Nonnull final BlockUpdateEvent event) {
+        ceilingCoverage.onBlockUpdate(event.getPositions());
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(@Nonnull final ChunkEvent.Load event) {
+        if (event.getWorld() != null && event.getWorld().isRemote())
+            ceilingCoverage.onChunkLoad(event.getChunk().getPos());
+    }
+
     @SubscribeEvent(priority = EventPriority.HIGH)
     public void diagnostics(@Nonnull final DiagnosticEvent event) {
         if (Config.CLIENT.logging.enableLogging.get()) {
@@ -59,6 +59,8 @@ public final class BlockStateLibrary {
 
     private static final IModLog LOGGER = Environs.LOGGER.createChild(BlockStateLibrary.class);
     private static final BlockStateMatcherMap<BlockStateData> registry = new BlockStateMatcherMap<>();
+    // Advanced each time the block state data is rebuilt or dropped
+    private static volatile int generation;
 
     private BlockStateLibrary() {
 
@@ -72,6 +74,14 @@ public final class BlockStateLibrary {
         config.forEach(BlockStateLibrary::register);
     }
 
+    /**
+     * Gets the generation of the block state data.  It changes whenever the data is reloaded, so anything derived
+     * from the data that was built under a different generation needs to be rebuilt.
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
     @Nonnull
     static BlockStateData get(@Nonnull final BlockState state) {
         BlockStateData profile = registry.get(state);
@@ -181,6 +191,8 @@ public final class BlockStateLibrary {
             BlockStateUtil.setData(Blocks.AIR.getDefaultState(), BlockStateData.DEFAULT);
             BlockStateUtil.setData(Blocks.CAVE_AIR.getDefaultState(), BlockStateData.DEFAULT);
             BlockStateUtil.setData(Blocks.VOID_AIR.getDefaultState(), BlockStateData.DEFAULT);
+
+            generation++;
         }
 
         @Override
@@ -192,6 +204,7 @@ public final class BlockStateLibrary {
         public void stop() {
             registry.clear();
             ForgeUtils.getBlockStates().forEach(state -> BlockStateUtil.setData(state, null));
+            generation++;
         }
     }
 }
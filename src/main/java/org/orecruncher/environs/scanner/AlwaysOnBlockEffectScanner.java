@@ -24,7 +24,9 @@ import java.util.Random;
 import javax.annotation.Nonnull;
 
 import net.minecraft.block.BlockState;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraft.util.math.BlockPos;
@@ -38,14 +40,79 @@ import org.orecruncher.environs.library.BlockStateUtil;
  * The CuboidScanner tries to only scan new blocks that come into range as the
  * player moves. Once all the blocks are scanned in the region (cuboid) it will
  * stop. It will start again once the player moves location.
+ *
+ * Full scans are done by the workers of the CuboidScanner. For the updates as
+ * the player walks around the scanner keeps an index of the blocks with always
+ * on effects in each loaded chunk, so their cost is the number of effect blocks
+ * nearby rather than the volume coming into range.
  */
 @OnlyIn(Dist.CLIENT)
 public class AlwaysOnBlockEffectScanner extends CuboidScanner {
 
+	private ChunkBlockIndex index;
+
 	public AlwaysOnBlockEffectScanner(@Nonnull final ScanContext locus, final int range) {
 		super(locus, "AlwaysOnBlockEffectScanner", range, 0);
 	}
 
+	@Nonnull
+	private ChunkBlockIndex getIndex() {
+		final InterestingStates states = getInterestingStates();
+		if (this.index == null)
+			this.index = new ChunkBlockIndex(states);
+		else if (this.index.getStates() != states)
+			this.index.setStates(states);
+		return this.index;
+	}
+
+	public void onChunkLoad(@Nonnull final ChunkPos pos) {
+		getIndex().onLoad(pos);
+	}
+
+	public void onChunkUnload(@Nonnull final ChunkPos pos) {
+		getIndex().onUnload(pos);
+	}
+
+	@Override
+	public void tick() {
+		final IBlockReader provider = this.locus.getWorld();
+		if (provider instanceof IWorldReader)
+			getIndex().process((IWorldReader) provider);
+		super.tick();
+	}
+
+	@Override
+	protected void updateScan(@Nonnull final Cuboid newVolume, @Nonnull final Cuboid oldVolume,
+			@Nonnull final Cuboid intersect) {
+		final IBlockReader provider = this.locus.getWorld();
+		if (!(provider instanceof IWorldReader)) {
+			super.updateScan(newVolume, oldVolume, intersect);
+			return;
+		}
+
+		// Only the blocks coming into range need to be looked at
+		getIndex().forEach((IWorldReader) provider, newVolume, pos -> {
+			if (!intersect.contains(pos))
+				scan(pos);
+		});
+		this.scanFinished = true;
+	}
+
+	@Override
+	public void onBlockUpdate(@Nonnull final BlockPos pos) {
+		if (this.index != null)
+			this.index.update(pos, this.locus.getWorld().getBlockState(pos));
+		super.onBlockUpdate(pos);
+	}
+
+	private void scan(@Nonnull final BlockPos pos) {
+		if (pos.getY() > 0) {
+			final BlockState state = this.locus.getWorld().getBlockState(pos);
+			if (interestingBlock(state))
+				blockScan(state, pos, this.random);
+		}
+	}
+
 	@Override
 	protected boolean interestingBlock(final BlockState state) {
 		return BlockStateUtil.getData(state).hasAlwaysOnEffects();
@@ -26,15 +26,20 @@ import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.tags.BlockTags;
 import net.minecraft.tags.ITag;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.Heightmap;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.Tags;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.orecruncher.environs.Environs;
 import org.orecruncher.environs.handlers.CommonState;
 import org.orecruncher.environs.library.DimensionInfo;
 import org.orecruncher.environs.library.DimensionLibrary;
 import org.orecruncher.lib.GameUtils;
 import org.orecruncher.lib.TickCounter;
-import org.orecruncher.lib.WorldUtils;
 import org.orecruncher.lib.collections.ObjectArray;
 import org.orecruncher.lib.math.MathStuff;
 
@@ -45,7 +50,15 @@ import net.minecraft.world.World;
 /**
  * Performs area scanning around the player to determine area ceiling coverage.
  * Used to determine if the player is "inside" or "outside".
+ *
+ * The height of the highest block acting as a ceiling is cached for each block
+ * column around the player. A column is found by scanning down from the top of
+ * its chunk heightmap, and holds until a block update is reported in it or its
+ * chunk is reloaded. Columns are mapped into a small grid by their coordinates
+ * so the grid slides along with the player. Whether a block state acts as a
+ * ceiling is worked out once for every state when tags are loaded.
  */
+@Mod.EventBusSubscriber(modid = Environs.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
 @OnlyIn(Dist.CLIENT)
 public final class CeilingCoverage {
 
@@ -56,6 +69,16 @@ public final class CeilingCoverage {
 	private static final float TOTAL_POINTS;
 	private static final ObjectArray<ITag<Block>> NON_CEILING = new ObjectArray<>();
 
+	// Width of the column grid. Must be a power of 2 and wider than the survey area.
+	private static final int GRID_SIZE = 16;
+	private static final int GRID_MASK = GRID_SIZE - 1;
+	// Height recorded for a column without a block that acts as a ceiling
+	private static final int NO_CEILING = -1;
+
+	// Block states that act as a ceiling, indexed by state ID. Rebuilt when tags change.
+	private static BitSet ceilingStates;
+	private static int tagGeneration;
+
 	static {
 
 		final List<Cell> cellList = new ArrayList<>();
@@ -86,17 +109,38 @@ public final class CeilingCoverage {
 		NON_CEILING.add(Tags.Blocks.FENCE_GATES);
 	}
 
+	// Column grid: the coordinates of the column held in each slot, and the Y of its highest ceiling block
+	private final int[] columnX = new int[GRID_SIZE * GRID_SIZE];
+	private final int[] columnZ = new int[GRID_SIZE * GRID_SIZE];
+	private final int[] ceiling = new int[GRID_SIZE * GRID_SIZE];
+	private final boolean[] valid = new boolean[GRID_SIZE * GRID_SIZE];
+	private final BlockPos.Mutable working = new BlockPos.Mutable();
+	private World lastWorld;
+	private int lastGeneration;
+
 	private boolean reallyInside = false;
 
 	public void tick() {
 		if (TickCounter.getTickCount() % SURVEY_INTERVAL == 0) {
-			final DimensionInfo dimInfo = DimensionLibrary.getData(GameUtils.getWorld());
+			final World world = GameUtils.getWorld();
+			final DimensionInfo dimInfo = DimensionLibrary.getData(world);
 			if (dimInfo.alwaysOutside()) {
 				this.reallyInside = false;
 			} else {
+				if (world != this.lastWorld || tagGeneration != this.lastGeneration) {
+					Arrays.fill(this.valid, false);
+					this.lastWorld = world;
+					this.lastGeneration = tagGeneration;
+				}
+
 				final BlockPos pos = CommonState.getPlayerPosition();
+				final int playerHeight = Math.max(pos.getY() + 1, 0);
 				float score = 0.0F;
-				for (Cell cell : cells) score += cell.score(pos);
+				for (final Cell cell : cells) {
+					// Nothing overhead above the players head, so give the points
+					if (getCeiling(world, pos.getX() + cell.offset.getX(), pos.getZ() + cell.offset.getZ()) <= playerHeight)
+						score += cell.potentialPoints();
+				}
 				float ceilingCoverageRatio = 1.0F - (score / TOTAL_POINTS);
 				this.reallyInside = ceilingCoverageRatio > INSIDE_THRESHOLD;
 			}
@@ -107,11 +151,104 @@ public final class CeilingCoverage {
 		return this.reallyInside;
 	}
 
+	/**
+	 * Drops the cached columns the block updates fall in.
+	 */
+	public void onBlockUpdate(@Nonnull final Collection<BlockPos> positions) {
+		for (final BlockPos pos : positions) {
+			final int idx = index(pos.getX(), pos.getZ());
+			if (this.columnX[idx] == pos.getX() && this.columnZ[idx] == pos.getZ())
+				this.valid[idx] = false;
+		}
+	}
+
+	/**
+	 * Drops the cached columns within a chunk that has been loaded, since its contents may have been replaced.
+	 */
+	public void onChunkLoad(@Nonnull final ChunkPos pos) {
+		for (int i = 0; i < this.valid.length; i++)
+			if ((this.columnX[i] >> 4) == pos.x && (this.columnZ[i] >> 4) == pos.z)
+				this.valid[i] = false;
+	}
+
+	private static int index(final int x, final int z) {
+		return (x & GRID_MASK) * GRID_SIZE + (z & GRID_MASK);
+	}
+
+	/**
+	 * Gets the Y of the highest block in the column that acts as a ceiling.
+	 */
+	private int getCeiling(@Nonnull final World world, final int x, final int z) {
+		final int idx = index(x, z);
+		if (this.valid[idx] && this.columnX[idx] == x && this.columnZ[idx] == z)
+			return this.ceiling[idx];
+
+		// Nothing there until the chunk arrives, and it will be looked at again once it does
+		if (!world.chunkExists(x >> 4, z >> 4))
+			return NO_CEILING;
+
+		final BitSet states = getCeilingStates();
+		final BlockPos.Mutable pos = this.working.setPos(x, world.getHeight(Heightmap.Type.MOTION_BLOCKING, x, z), z);
+		int result = NO_CEILING;
+		for (; pos.getY() >= 0; pos.setY(pos.getY() - 1)) {
+			if (states.get(Block.getStateId(world.getBlockState(pos)))) {
+				result = pos.getY();
+				break;
+			}
+		}
+
+		this.columnX[idx] = x;
+		this.columnZ[idx] = z;
+		this.ceiling[idx] = result;
+		this.valid[idx] = true;
+		return result;
+	}
+
+	@Nonnull
+	private static BitSet getCeilingStates() {
+		if (ceilingStates == null) {
+			final BitSet states = new BitSet();
+			for (final BlockState state : Block.BLOCK_STATE_IDS)
+				if (actsAsCeiling(state))
+					states.set(Block.getStateId(state));
+			ceilingStates = states;
+		}
+		return ceilingStates;
+	}
+
+	private static boolean actsAsCeiling(@Nonnull final BlockState state) {
+		// If it doesn't block movement it doesn't count as a ceiling.
+		if (!state.getMaterial().blocksMovement())
+			return false;
+
+		// Test the block tags in our NON_CEILING set to see if any match
+		final Block block = state.getBlock();
+		for (final ITag<Block> tag : NON_CEILING) {
+			if (tag.contains(block))
+				return false;
+		}
+		return true;
+	}
+
+	@SubscribeEvent
+	public static void onTagsUpdated(@Nonnull final TagsUpdatedEvent.VanillaTagTypes event) {
+		invalidateStates();
+	}
+
+	@SubscribeEvent
+	public static void onTagsUpdated(@Nonnull final TagsUpdatedEvent.CustomTagTypes event) {
+		invalidateStates();
+	}
+
+	private static void invalidateStates() {
+		ceilingStates = null;
+		tagGeneration++;
+	}
+
 	private static final class Cell implements Comparable<Cell> {
 
 		private final Vector3i offset;
 		private final float points;
-		private final BlockPos.Mutable working;
 
 		public Cell(@Nonnull final Vector3i offset, final int range) {
 			this.offset = offset;
@@ -119,43 +256,12 @@ public final class CeilingCoverage {
 			final float zV = range - MathStuff.abs(offset.getZ()) + 1;
 			final float candidate = Math.min(xV, zV);
 			this.points = candidate * candidate;
-			this.working = new BlockPos.Mutable();
 		}
 
 		public float potentialPoints() {
 			return this.points;
 		}
 
-		public float score(@Nonnull final BlockPos playerPos) {
-			this.working.setPos(
-					playerPos.getX() + this.offset.getX(),
-					playerPos.getY() + this.offset.getY(),
-					playerPos.getZ() + this.offset.getZ()
-			);
-
-			final World world = GameUtils.getWorld();
-			final int playerHeight = Math.max(playerPos.getY() + 1, 0);
-
-			// Get the precipitation height
-			this.working.setPos(WorldUtils.getPrecipitationHeight(world, this.working));
-
-			// Scan down looking for blocks that are considered "cover"
-			while (this.working.getY() > playerHeight) {
-
-				final BlockState state = world.getBlockState(this.working);
-
-				if (actsAsCeiling(state)) {
-					// Cover block - no points for you!
-					return 0;
-				}
-
-				this.working.setY(this.working.getY() - 1);
-			}
-
-			// Scanned down to the players head and found nothing. So give the points.
-			return this.points;
-		}
-
 		@Override
 		public int compareTo(@Nonnull final Cell cell) {
 			// Want big scores first in the list
@@ -168,20 +274,6 @@ public final class CeilingCoverage {
 			return this.offset.toString() +
 					" points: " + this.points;
 		}
-
-		private boolean actsAsCeiling(@Nonnull final BlockState state) {
-			// If it doesn't block movement it doesn't count as a ceiling.
-			if (!state.getMaterial().blocksMovement())
-				return false;
-
-			// Test the block tags in our NON_CEILING set to see if any match
-			final Block block = state.getBlock();
-			for (final ITag<Block> tag : NON_CEILING) {
-				if (tag.contains(block))
-					return false;
-			}
-			return true;
-		}
 	}
 
 }
@@ -0,0 +1,266 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.environs.scanner;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Index of the positions of interesting blocks, kept per chunk.  A chunk is indexed when it loads, patched as blocks
+ * within it change, and dropped when it unloads.  Queries over an area cost the number of interesting blocks in the
+ * chunks the area touches rather than the volume of the area.  Newly loaded chunks are snapshot a few at a time each
+ * tick and indexed by the scan workers; a query touching a chunk that has not been indexed yet indexes it on the
+ * spot.  Must only be used from the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ChunkBlockIndex {
+
+	// Number of chunks handed to the workers per tick
+	private static final int CHUNKS_PER_TICK = 16;
+
+	private InterestingStates states;
+	private final Long2ObjectOpenHashMap<LongOpenHashSet> chunks = new Long2ObjectOpenHashMap<>();
+	private final LongLinkedOpenHashSet pending = new LongLinkedOpenHashSet();
+	private final Long2ObjectOpenHashMap<ForkJoinTask<LongArrayList>> inFlight = new Long2ObjectOpenHashMap<>();
+	// Chunks that had blocks change while the workers were indexing them
+	private final LongOpenHashSet stale = new LongOpenHashSet();
+	private final BlockPos.Mutable mutable = new BlockPos.Mutable();
+
+	// World that the index describes
+	private IWorldReader world;
+
+	ChunkBlockIndex(@Nonnull final InterestingStates states) {
+		this.states = states;
+	}
+
+	@Nonnull
+	InterestingStates getStates() {
+		return this.states;
+	}
+
+	/**
+	 * Switches the index to a new set of interesting states, such as after the block state library is reloaded.  The
+	 * existing index is dropped and every chunk it knew of is queued to be indexed again.
+	 */
+	void setStates(@Nonnull final InterestingStates states) {
+		final LongArrayList known = new LongArrayList(this.chunks.keySet());
+		known.addAll(this.inFlight.keySet());
+		known.addAll(this.pending);
+		clear();
+		this.states = states;
+		this.pending.addAll(known);
+	}
+
+	/**
+	 * Queues a loaded chunk to be indexed.  Any existing index for the chunk is dropped since the chunk data may have
+	 * been replaced.
+	 */
+	void onLoad(@Nonnull final ChunkPos pos) {
+		final long key = pos.asLong();
+		this.chunks.remove(key);
+		cancel(key);
+		this.pending.add(key);
+	}
+
+	void onUnload(@Nonnull final ChunkPos pos) {
+		final long key = pos.asLong();
+		this.chunks.remove(key);
+		cancel(key);
+		this.pending.remove(key);
+	}
+
+	/**
+	 * Patches the index with the current state of the block.  Has no effect if the chunk has not been indexed.
+	 */
+	void update(@Nonnull final BlockPos pos, @Nonnull final BlockState state) {
+		final long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		final LongOpenHashSet blocks = this.chunks.get(key);
+		if (blocks != null) {
+			if (this.states.contains(state))
+				blocks.add(pos.toLong());
+			else
+				blocks.remove(pos.toLong());
+		} else if (this.inFlight.containsKey(key)) {
+			// The snapshot the workers have is out of date
+			this.stale.add(key);
+		}
+	}
+
+	/**
+	 * Collects the chunks the workers have finished indexing and hands them more from the pending queue.
+	 */
+	void process(@Nonnull final IWorldReader world) {
+		checkWorld(world);
+
+		final ObjectIterator<Long2ObjectMap.Entry<ForkJoinTask<LongArrayList>>> itr = this.inFlight.long2ObjectEntrySet().fastIterator();
+		while (itr.hasNext()) {
+			final Long2ObjectMap.Entry<ForkJoinTask<LongArrayList>> entry = itr.next();
+			final ForkJoinTask<LongArrayList> task = entry.getValue();
+			if (!task.isDone())
+				continue;
+			itr.remove();
+			final long key = entry.getLongKey();
+			if (this.stale.remove(key)) {
+				this.pending.add(key);
+			} else if (task.isCompletedNormally()) {
+				final LongOpenHashSet blocks = new LongOpenHashSet(task.join());
+				blocks.trim();
+				this.chunks.put(key, blocks);
+			}
+			// A chunk the workers failed on is indexed on the spot if a query needs it
+		}
+
+		for (int i = 0; i < CHUNKS_PER_TICK && !this.pending.isEmpty(); i++)
+			submit(this.pending.removeFirstLong());
+	}
+
+	/**
+	 * Passes the position of each indexed block within the cuboid to the consumer.  The position is mutable and is
+	 * not safe to hold on to beyond the call.
+	 */
+	void forEach(@Nonnull final IWorldReader world, @Nonnull final Cuboid cuboid, @Nonnull final Consumer<BlockPos> consumer) {
+		checkWorld(world);
+		final BlockPos min = cuboid.minimum();
+		final BlockPos max = cuboid.maximum();
+		for (int cx = min.getX() >> 4; cx <= max.getX() >> 4; cx++)
+			for (int cz = min.getZ() >> 4; cz <= max.getZ() >> 4; cz++) {
+				final long key = ChunkPos.asLong(cx, cz);
+				if (!this.chunks.containsKey(key)) {
+					this.pending.remove(key);
+					cancel(key);
+					index(key);
+				}
+				final LongOpenHashSet blocks = this.chunks.get(key);
+				if (blocks == null || blocks.isEmpty())
+					continue;
+				final LongIterator itr = blocks.iterator();
+				while (itr.hasNext()) {
+					final BlockPos pos = this.mutable.setPos(itr.nextLong());
+					if (cuboid.contains(pos))
+						consumer.accept(pos);
+				}
+			}
+	}
+
+	void clear() {
+		this.chunks.clear();
+		this.pending.clear();
+		for (final ForkJoinTask<LongArrayList> task : this.inFlight.values())
+			task.cancel(false);
+		this.inFlight.clear();
+		this.stale.clear();
+	}
+
+	int size() {
+		return this.chunks.size();
+	}
+
+	int pending() {
+		return this.pending.size() + this.inFlight.size();
+	}
+
+	private void checkWorld(@Nonnull final IWorldReader world) {
+		if (this.world != world) {
+			clear();
+			this.world = world;
+		}
+	}
+
+	private void cancel(final long key) {
+		final ForkJoinTask<LongArrayList> task = this.inFlight.remove(key);
+		if (task != null)
+			task.cancel(false);
+		this.stale.remove(key);
+	}
+
+	/**
+	 * Snapshots the chunk, if it is loaded, and hands it to the workers to index.
+	 */
+	private void submit(final long key) {
+		final int cx = ChunkPos.getX(key);
+		final int cz = ChunkPos.getZ(key);
+		final IChunk chunk = this.world.getChunk(cx, cz, ChunkStatus.FULL, false);
+		if (chunk == null)
+			return;
+
+		final ChunkSection[] sections = chunk.getSections();
+		final InterestingStates.Snapshot[] snapshots = new InterestingStates.Snapshot[sections.length];
+		int count = 0;
+		for (int sy = 0; sy < sections.length; sy++) {
+			final InterestingStates.Snapshot snapshot = this.states.snapshot(sections[sy], cx, sy, cz);
+			if (snapshot != null)
+				snapshots[count++] = snapshot;
+		}
+
+		// Nothing of interest so there is nothing for the workers to do
+		if (count == 0) {
+			this.chunks.put(key, new LongOpenHashSet());
+			return;
+		}
+
+		final BlockPos min = new BlockPos(cx << 4, 0, cz << 4);
+		final BlockPos max = new BlockPos((cx << 4) + 15, (sections.length << 4) - 1, (cz << 4) + 15);
+		this.inFlight.put(key, ScanWorkers.submit(new SectionScanTask(snapshots, count, min, max)));
+	}
+
+	/**
+	 * Indexes the chunk on the client thread if it is loaded.
+	 */
+	private void index(final long key) {
+		final int cx = ChunkPos.getX(key);
+		final int cz = ChunkPos.getZ(key);
+		final IChunk chunk = this.world.getChunk(cx, cz, ChunkStatus.FULL, false);
+		if (chunk == null)
+			return;
+
+		final LongOpenHashSet blocks = new LongOpenHashSet();
+		final ChunkSection[] sections = chunk.getSections();
+		for (int sy = 0; sy < sections.length; sy++) {
+			final ChunkSection section = sections[sy];
+			if (!this.states.select(section))
+				continue;
+			for (int i = 0; i < 16 * 16 * 16; i++) {
+				if (this.states.get(i) != null)
+					blocks.add(BlockPos.pack((cx << 4) | (i & 15), (sy << 4) | (i >> 8), (cz << 4) | ((i >> 4) & 15)));
+			}
+		}
+
+		blocks.trim();
+		this.chunks.put(key, blocks);
+	}
+}
@@ -19,18 +19,27 @@
 package org.orecruncher.environs.scanner;
 
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.block.BlockState;
 import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraft.util.math.BlockPos;
 
 /**
- * Scans the area around the player in a continuous pattern.
+ * Scans the area around the player in a continuous pattern.  Full scans are done a chunk section at a time; sections
+ * whose palette holds nothing of interest are skipped without looking at their blocks.  When the world allows, a full
+ * scan takes snapshots of the sections in range and scans them on worker threads, handing the blocks found to
+ * blockScan() on the client thread once the workers are done.
  */
 @OnlyIn(Dist.CLIENT)
 public abstract class CuboidScanner extends Scanner {
@@ -38,7 +47,18 @@ public abstract class CuboidScanner extends Scanner {
 	// Iteration variables
 	protected boolean scanFinished = false;
 	protected Cuboid activeCuboid;
-	protected CuboidPointIterator fullRange;
+
+	// Progress of the full scan: the section being scanned, and the layer within it
+	private int sectionMinX;
+	private int sectionMinY;
+	private int sectionMinZ;
+	private int sectionsX;
+	private int sectionsZ;
+	private int sectionCount;
+	private int sectionIndex;
+	private int layer;
+	// Full scan being done by the workers
+	private ForkJoinTask<LongArrayList> parallelScan;
 
 	// State of last tick
 	protected BlockPos lastPos;
@@ -85,7 +105,55 @@ public abstract class CuboidScanner extends Scanner {
 
 		final BlockPos[] points = getMinMaxPointsForVolume(this.lastPos);
 		this.activeCuboid = new Cuboid(points);
-		this.fullRange = new CuboidPointIterator(points);
+
+		final BlockPos min = this.activeCuboid.minimum();
+		final BlockPos max = this.activeCuboid.maximum();
+		this.sectionMinX = min.getX() >> 4;
+		this.sectionMinY = min.getY() >> 4;
+		this.sectionMinZ = min.getZ() >> 4;
+		this.sectionsX = (max.getX() >> 4) - this.sectionMinX + 1;
+		this.sectionsZ = (max.getZ() >> 4) - this.sectionMinZ + 1;
+		final int sectionsY = Math.max(Math.min(max.getY(), 255) >> 4, this.sectionMinY - 1) - this.sectionMinY + 1;
+		this.sectionCount = this.sectionsX * this.sectionsZ * sectionsY;
+		this.sectionIndex = 0;
+		this.layer = 0;
+
+		if (this.parallelScan != null) {
+			this.parallelScan.cancel(false);
+			this.parallelScan = null;
+		}
+
+		final IBlockReader provider = this.locus.getWorld();
+		if (provider instanceof IWorldReader)
+			this.parallelScan = startParallelScan((IWorldReader) provider, min, max);
+	}
+
+	/**
+	 * Snapshots the sections within the cuboid that may hold something of interest and hands them to the workers.
+	 * Taking the snapshot only copies the packed block storage of the sections that pass the palette check.
+	 */
+	@Nonnull
+	private ForkJoinTask<LongArrayList> startParallelScan(@Nonnull final IWorldReader world, @Nonnull final BlockPos min, @Nonnull final BlockPos max) {
+		final InterestingStates states = getInterestingStates();
+		final InterestingStates.Snapshot[] snapshots = new InterestingStates.Snapshot[this.sectionCount];
+		int count = 0;
+		for (int i = 0; i < this.sectionCount; i++) {
+			final int sx = this.sectionMinX + i % this.sectionsX;
+			final int sz = this.sectionMinZ + (i / this.sectionsX) % this.sectionsZ;
+			final int sy = this.sectionMinY + i / (this.sectionsX * this.sectionsZ);
+			final IChunk chunk = world.getChunk(sx, sz, ChunkStatus.FULL, false);
+			final ChunkSection[] sections = chunk != null ? chunk.getSections() : null;
+			if (sections == null || sy >= sections.length)
+				continue;
+			final InterestingStates.Snapshot snapshot = states.snapshot(sections[sy], sx, sy, sz);
+			if (snapshot != null)
+				snapshots[count++] = snapshot;
+		}
+
+		// Y 0 is never scanned
+		final BlockPos low = new BlockPos(min.getX(), Math.max(min.getY(), 1), min.getZ());
+		final BlockPos high = new BlockPos(max.getX(), Math.min(max.getY(), 255), max.getZ());
+		return ScanWorkers.submit(new SectionScanTask(snapshots, count, low, high));
 	}
 
 	@Override
@@ -94,19 +162,19 @@ public abstract class CuboidScanner extends Scanner {
 		// If there is no player position or it's bogus just return
 		final BlockPos playerPos = this.locus.getCenter();
 		if (playerPos.getY() < 0) {
-			this.fullRange = null;
+			this.activeCuboid = null;
 		} else {
 			// If the full range was reset, or the player dimension changed,
 			// dump
 			// everything and restart.
-			if (this.fullRange == null || this.locus.getReference() != this.lastReference) {
+			if (this.activeCuboid == null || this.locus.getReference() != this.lastReference) {
 				resetFullScan();
-				super.tick();
+				scanSections();
 			} else if (this.lastPos.equals(playerPos)) {
 				// The player didn't move. If a scan is in progress
 				// continue.
 				if (!this.scanFinished)
-					super.tick();
+					scanSections();
 			} else {
 				// The player moved.
 				final Cuboid oldVolume = this.activeCuboid != null ? this.activeCuboid : getVolumeFor(this.lastPos);
@@ -119,7 +187,7 @@ public abstract class CuboidScanner extends Scanner {
 				// change to the scan area dump and restart.
 				if (intersect == null || oldVolume.volume() < (oldVolume.volume() - intersect.volume()) * 2) {
 					resetFullScan();
-					super.tick();
+					scanSections();
 				} else {
 
 					// Looks to be a small update, like a player walking around.
@@ -134,7 +202,7 @@ public abstract class CuboidScanner extends Scanner {
 						// old volume and once that is locked then an
 						// subsequent tick will do a delta update to get
 						// the new blocks.
-						super.tick();
+						scanSections();
 					}
 				}
 			}
@@ -186,34 +254,119 @@ public abstract class CuboidScanner extends Scanner {
 		this.scanFinished = true;
 	}
 
-	@Override
-	@Nullable
-	protected BlockPos nextPos(@Nonnull final BlockPos.Mutable workingPos, @Nonnull final Random rand) {
-
-		if (this.scanFinished)
-			return null;
+	/**
+	 * Continues the full scan of the active cuboid.  Sections are scanned a layer at a time until the blocks examined
+	 * reach the per tick budget.  Skipped sections cost nothing against the budget.
+	 */
+	protected void scanSections() {
+
+		if (this.parallelScan != null) {
+			if (!this.parallelScan.isDone())
+				return;
+			final ForkJoinTask<LongArrayList> scan = this.parallelScan;
+			this.parallelScan = null;
+			if (scan.isCompletedNormally()) {
+				deliver(scan.join());
+				return;
+			}
+			// Something went wrong with the workers.  Fall back to scanning on the client thread.
+			if (scan.getException() != null)
+				this.locus.getLogger().error(scan.getException(), "Parallel scan failed");
+		}
 
-		int checked = 0;
+		preScan();
 
-		BlockPos point;
-		while ((point = this.fullRange.peek()) != null) {
+		final IBlockReader provider = this.locus.getWorld();
+		final IWorldReader reader = provider instanceof IWorldReader ? (IWorldReader) provider : null;
+		final InterestingStates states = getInterestingStates();
+		final BlockPos min = this.activeCuboid.minimum();
+		final BlockPos max = this.activeCuboid.maximum();
+		final BlockPos.Mutable pos = this.workingPos;
+
+		int budget = this.blocksPerTick;
+		while (budget > 0 && this.sectionIndex < this.sectionCount) {
+			final int sx = this.sectionMinX + this.sectionIndex % this.sectionsX;
+			final int sz = this.sectionMinZ + (this.sectionIndex / this.sectionsX) % this.sectionsZ;
+			final int sy = this.sectionMinY + this.sectionIndex / (this.sectionsX * this.sectionsZ);
+
+			// Portion of the section within the cuboid.  Y 0 is never scanned.
+			final int x0 = Math.max(min.getX(), sx << 4);
+			final int x1 = Math.min(max.getX(), (sx << 4) + 15);
+			final int y0 = Math.max(Math.max(min.getY(), 1), sy << 4);
+			final int y1 = Math.min(Math.min(max.getY(), 255), (sy << 4) + 15);
+			final int z0 = Math.max(min.getZ(), sz << 4);
+			final int z1 = Math.min(max.getZ(), (sz << 4) + 15);
+
+			// The section is selected fresh each tick since it can change between ticks
+			boolean direct = false;
+			boolean skip = y0 > y1;
+			if (!skip && reader != null) {
+				final IChunk chunk = reader.getChunk(sx, sz, ChunkStatus.FULL, false);
+				final ChunkSection[] sections = chunk != null ? chunk.getSections() : null;
+				final ChunkSection section = sections != null && sy < sections.length ? sections[sy] : null;
+				direct = states.select(section);
+				skip = !direct;
+			}
 
-			// Consume the point
-			this.fullRange.next();
+			if (!skip) {
+				for (int y = y0 + this.layer; y <= y1 && budget > 0; y++, this.layer++) {
+					for (int z = z0; z <= z1; z++)
+						for (int x = x0; x <= x1; x++) {
+							pos.setPos(x, y, z);
+							final BlockState state;
+							if (direct) {
+								state = states.get(((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+							} else {
+								final BlockState s = provider.getBlockState(pos);
+								state = states.contains(s) ? s : null;
+							}
+							if (state != null)
+								blockScan(state, pos, this.random);
+						}
+					budget -= (x1 - x0 + 1) * (z1 - z0 + 1);
+				}
 
-			// Has to be in valid space for it to
-			// be returned.
-			if (point.getY() > 0) {
-				return point;
+				// Budget ran out part way through the section
+				if (y0 + this.layer <= y1)
+					break;
 			}
 
-			// Advance our check counter and loop back
-			// to examine the next point.
-			if (++checked >= this.blocksPerTick)
-				return null;
+			this.sectionIndex++;
+			this.layer = 0;
+		}
+
+		if (this.sectionIndex >= this.sectionCount)
+			this.scanFinished = true;
+
+		postScan();
+	}
+
+	/**
+	 * Hands the blocks found by the workers to blockScan().  The world may have changed since the snapshot was taken
+	 * so each block is checked again.
+	 */
+	private void deliver(@Nonnull final LongArrayList found) {
+
+		preScan();
+
+		final IBlockReader provider = this.locus.getWorld();
+		final BlockPos.Mutable pos = this.workingPos;
+		for (int i = 0; i < found.size(); i++) {
+			pos.setPos(found.getLong(i));
+			final BlockState state = provider.getBlockState(pos);
+			if (interestingBlock(state))
+				blockScan(state, pos, this.random);
 		}
 
 		this.scanFinished = true;
+
+		postScan();
+	}
+
+	@Override
+	@Nullable
+	protected BlockPos nextPos(@Nonnull final BlockPos.Mutable workingPos, @Nonnull final Random rand) {
+		// Full scans are done a section at a time by scanSections()
 		return null;
 	}
 
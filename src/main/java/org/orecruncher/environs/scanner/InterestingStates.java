@@ -0,0 +1,202 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.environs.scanner;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.BitArray;
+import net.minecraft.util.palette.IPalette;
+import net.minecraft.util.palette.IdentityPalette;
+import net.minecraft.util.palette.PalettedContainer;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Set of the block states a scanner is interested in, indexed by block state ID.  A chunk section can be checked
+ * against the set by looking at its palette rather than its blocks, and once selected the packed block storage of the
+ * section is read directly.  Sections holding nothing but stone, dirt, and air can be passed over without looking at
+ * any of their blocks.
+ */
+@OnlyIn(Dist.CLIENT)
+final class InterestingStates {
+
+	// Local palettes never hold more than this many entries; past that a section uses the global palette
+	private static final int MAX_LOCAL_PALETTE = 256;
+
+	private final BitSet states = new BitSet();
+	// Whether each entry of the local palette of the selected section is interesting
+	private final boolean[] local = new boolean[MAX_LOCAL_PALETTE];
+
+	private BitArray storage;
+	private IPalette<BlockState> palette;
+	private int bits;
+	private boolean global;
+
+	InterestingStates(@Nonnull final Predicate<BlockState> filter) {
+		for (final BlockState state : Block.BLOCK_STATE_IDS)
+			if (filter.test(state))
+				this.states.set(Block.getStateId(state));
+	}
+
+	boolean contains(@Nonnull final BlockState state) {
+		return this.states.get(Block.getStateId(state));
+	}
+
+	/**
+	 * Determines if the section may hold interesting block states by looking at its palette.  Palettes do not shrink
+	 * as blocks are removed so the answer can be a false positive, but never a false negative.
+	 */
+	boolean mayContain(@Nullable final ChunkSection section) {
+		if (ChunkSection.isEmpty(section))
+			return false;
+
+		assert section != null;
+
+		final IPalette<BlockState> palette = section.getData().palette;
+		if (palette instanceof IdentityPalette)
+			return true;
+
+		for (int i = 0; i < MAX_LOCAL_PALETTE; i++) {
+			final BlockState state = palette.get(i);
+			if (state == null)
+				break;
+			if (contains(state))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Selects the section for reading.  The selection is only good until the section is modified so it should not be
+	 * held across ticks.
+	 *
+	 * @param section Section to select
+	 * @return true if the section may hold interesting block states, false if it can be skipped
+	 */
+	boolean select(@Nullable final ChunkSection section) {
+		this.storage = null;
+		this.palette = null;
+
+		if (ChunkSection.isEmpty(section))
+			return false;
+
+		assert section != null;
+
+		final PalettedContainer<BlockState> data = section.getData();
+		final IPalette<BlockState> palette = data.palette;
+
+		// The global palette can hold anything so the blocks have to be looked at
+		this.global = palette instanceof IdentityPalette;
+		boolean any = this.global;
+
+		if (!this.global) {
+			Arrays.fill(this.local, false);
+			for (int i = 0; i < MAX_LOCAL_PALETTE; i++) {
+				final BlockState state = palette.get(i);
+				if (state == null)
+					break;
+				if (contains(state)) {
+					this.local[i] = true;
+					any = true;
+				}
+			}
+		}
+
+		if (any) {
+			this.storage = data.storage;
+			this.palette = palette;
+			this.bits = data.bits;
+		}
+
+		return any;
+	}
+
+	/**
+	 * Gets the block state at the index in the selected section if it is interesting.
+	 *
+	 * @param index Index of the block within the section, (y << 8) | (z << 4) | x
+	 * @return The block state if it is interesting, null otherwise
+	 */
+	@Nullable
+	BlockState get(final int index) {
+		final int id = this.storage.getAt(index);
+		if (this.global ? this.states.get(id) : this.local[id])
+			return this.palette.get(id);
+		return null;
+	}
+
+	/**
+	 * Takes a snapshot of the section that can be scanned off the client thread.
+	 *
+	 * @param section Section to capture
+	 * @param x       Section X coordinate
+	 * @param y       Section Y coordinate
+	 * @param z       Section Z coordinate
+	 * @return Snapshot of the section, or null if it holds nothing of interest
+	 */
+	@Nullable
+	Snapshot snapshot(@Nullable final ChunkSection section, final int x, final int y, final int z) {
+		if (!select(section))
+			return null;
+		final BitArray copy = new BitArray(this.bits, 16 * 16 * 16, this.storage.getBackingLongArray().clone());
+		return new Snapshot(x, y, z, copy, this.global ? null : this.local.clone(), this.states);
+	}
+
+	/**
+	 * Immutable copy of the block storage of a section along with which of its palette entries are interesting.
+	 */
+	static final class Snapshot {
+
+		final int x;
+		final int y;
+		final int z;
+		private final BitArray storage;
+		@Nullable
+		private final boolean[] local;
+		private final BitSet states;
+
+		Snapshot(final int x, final int y, final int z, @Nonnull final BitArray storage, @Nullable final boolean[] local, @Nonnull final BitSet states) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.storage = storage;
+			this.local = local;
+			this.states = states;
+		}
+
+		/**
+		 * Determines if the block at the index within the section is interesting.
+		 *
+		 * @param index Index of the block within the section, (y << 8) | (z << 4) | x
+		 */
+		boolean isInteresting(final int index) {
+			final int id = this.storage.getAt(index);
+			return this.local != null ? this.local[id] : this.states.get(id);
+		}
+	}
+}
@@ -21,7 +21,13 @@ package org.orecruncher.environs.scanner;
 import java.util.Random;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.lib.random.LCGRandom;
@@ -31,38 +37,179 @@ import net.minecraft.util.math.BlockPos;
 /**
  * Serves up random blocks in an area around the player. Concentration of block
  * selections are closer to the player.
+ *
+ * The offset along each axis is the difference of two random numbers within the
+ * range. Rather than drawing the offsets directly, a sample first picks the chunk
+ * section it lands in, with each section weighted by the share of the
+ * distribution it covers, and then picks the position within the section from
+ * the distribution restricted to it. Samples landing in a section whose palette
+ * holds nothing of interest are dropped without looking at the world. Every
+ * block is still looked at with the same probability as before, but most of the
+ * samples that would land in air or stone never cost a block lookup.
  */
 @OnlyIn(Dist.CLIENT)
 public abstract class RandomScanner extends Scanner {
 
 	private final LCGRandom lcg = new LCGRandom();
 
-	private int playerX;
-	private int playerY;
-	private int playerZ;
+	private final Axis xAxis;
+	private final Axis yAxis;
+	private final Axis zAxis;
+	// Weight of the full distribution
+	private final double totalWeight;
+
+	// Sections that may hold something of interest, and the running total of their weights
+	private final int[] candidates;
+	private final long[] cumulative;
+	private int candidateCount;
 
 	public RandomScanner(@Nonnull final ScanContext locus, @Nonnull final String name, final int range,
                          final int blocksPerTick) {
 		super(locus, name, range, blocksPerTick);
-	}
 
-	private int randomRange(final int range) {
-		return this.lcg.nextInt(range) - this.lcg.nextInt(range);
+		this.xAxis = new Axis(this.xRange);
+		this.yAxis = new Axis(this.yRange);
+		this.zAxis = new Axis(this.zRange);
+		this.totalWeight = (double) this.xAxis.total * this.yAxis.total * this.zAxis.total;
+
+		final int sections = this.xAxis.weights.length * this.yAxis.weights.length * this.zAxis.weights.length;
+		this.candidates = new int[sections];
+		this.cumulative = new long[sections];
 	}
 
 	@Override
 	public void preScan() {
 		final BlockPos pos = this.locus.getCenter();
-		this.playerX = pos.getX();
-		this.playerY = pos.getY();
-		this.playerZ = pos.getZ();
+		this.xAxis.update(pos.getX());
+		this.yAxis.update(pos.getY());
+		this.zAxis.update(pos.getZ());
+
+		final IBlockReader provider = this.locus.getWorld();
+		final IWorldReader reader = provider instanceof IWorldReader ? (IWorldReader) provider : null;
+		final InterestingStates states = getInterestingStates();
+
+		long weight = 0;
+		this.candidateCount = 0;
+		for (int ix = 0; ix < this.xAxis.count; ix++)
+			for (int iz = 0; iz < this.zAxis.count; iz++) {
+				ChunkSection[] sections = null;
+				if (reader != null) {
+					final IChunk chunk = reader.getChunk(this.xAxis.first + ix, this.zAxis.first + iz, ChunkStatus.FULL, false);
+					// Not loaded, so it is nothing but air
+					if (chunk == null)
+						continue;
+					sections = chunk.getSections();
+				}
+				for (int iy = 0; iy < this.yAxis.count; iy++) {
+					final int sy = this.yAxis.first + iy;
+					if (sy < 0 || sy >= 16)
+						continue;
+					if (sections != null && (sy >= sections.length || !states.mayContain(sections[sy])))
+						continue;
+					weight += this.xAxis.weights[ix] * this.yAxis.weights[iy] * this.zAxis.weights[iz];
+					this.candidates[this.candidateCount] = (ix << 16) | (iy << 8) | iz;
+					this.cumulative[this.candidateCount] = weight;
+					this.candidateCount++;
+				}
+			}
 	}
 
+	/**
+	 * A null position is a sample that landed in a section holding nothing of interest, so the scan goes on with the
+	 * next sample.
+	 */
 	@Override
-	@Nonnull
+	protected boolean skipNull() {
+		return true;
+	}
+
+	@Override
+	@Nullable
 	protected BlockPos nextPos(@Nonnull final BlockPos.Mutable workingPos, @Nonnull final Random rand) {
-		return workingPos.setPos(this.playerX + randomRange(this.xRange), this.playerY + randomRange(this.yRange),
-				this.playerZ + randomRange(this.zRange));
+		if (this.candidateCount == 0)
+			return null;
+
+		// Where the sample falls within the full distribution.  Past the candidates means it landed in a section
+		// that was passed over.
+		final long u = (long) (rand.nextDouble() * this.totalWeight);
+		if (u >= this.cumulative[this.candidateCount - 1])
+			return null;
+
+		int lo = 0;
+		int hi = this.candidateCount - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (this.cumulative[mid] > u)
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+
+		final int section = this.candidates[lo];
+		return workingPos.setPos(
+				this.xAxis.pick(section >> 16, this.lcg),
+				this.yAxis.pick((section >> 8) & 0xFF, this.lcg),
+				this.zAxis.pick(section & 0xFF, this.lcg));
+	}
+
+	/**
+	 * Distribution of the offset from the player along an axis: the difference of two random numbers in [0, range),
+	 * where an offset d has weight range - |d|.  Tracks the weight falling into each chunk section along the axis.
+	 */
+	private static final class Axis {
+
+		final int range;
+		final long total;
+		final long[] weights;
+		int origin;
+		int first;
+		int count;
+
+		Axis(final int range) {
+			this.range = range;
+			this.total = (long) range * range;
+			// Offsets span 2 * range - 1 blocks which can straddle one more section than they fill
+			this.weights = new long[(2 * range - 1 + 15) / 16 + 1];
+		}
+
+		void update(final int origin) {
+			this.origin = origin;
+			this.first = (origin - this.range + 1) >> 4;
+			this.count = ((origin + this.range - 1) >> 4) - this.first + 1;
+			for (int i = 0; i < this.count; i++) {
+				long w = 0;
+				for (int c = low(i); c <= high(i); c++)
+					w += weight(c);
+				this.weights[i] = w;
+			}
+		}
+
+		/**
+		 * Picks a coordinate within the section from the distribution restricted to the section.
+		 */
+		int pick(final int section, @Nonnull final LCGRandom lcg) {
+			int t = lcg.nextInt((int) this.weights[section]);
+			final int high = high(section);
+			int c = low(section);
+			for (; c < high; c++) {
+				t -= weight(c);
+				if (t < 0)
+					break;
+			}
+			return c;
+		}
+
+		private int low(final int section) {
+			return Math.max((this.first + section) << 4, this.origin - this.range + 1);
+		}
+
+		private int high(final int section) {
+			return Math.min(((this.first + section) << 4) + 15, this.origin + this.range - 1);
+		}
+
+		private int weight(final int c) {
+			return this.range - Math.abs(c - this.origin);
+		}
 	}
 
 }
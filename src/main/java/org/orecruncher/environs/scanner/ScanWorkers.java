@@ -0,0 +1,57 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.environs.scanner;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Worker threads that scan section snapshots off the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ScanWorkers {
+
+	private static final ForkJoinPool pool;
+
+	static {
+		final AtomicInteger count = new AtomicInteger();
+		final int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+		pool = new ForkJoinPool(threads, p -> {
+			final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			t.setName("Environs Scan Worker " + count.incrementAndGet());
+			return t;
+		}, null, false);
+	}
+
+	private ScanWorkers() {
+
+	}
+
+	@Nonnull
+	static <T> ForkJoinTask<T> submit(@Nonnull final ForkJoinTask<T> task) {
+		return pool.submit(task);
+	}
+}
@@ -31,6 +31,7 @@ import net.minecraft.block.material.Material;
 import net.minecraft.world.IBlockReader;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.environs.library.BlockStateLibrary;
 import org.orecruncher.lib.random.XorShiftRandom;
 
 import net.minecraft.util.math.BlockPos;
@@ -66,6 +67,9 @@ public abstract class Scanner {
 	protected final Random random = new XorShiftRandom();
 	protected final BlockPos.Mutable workingPos = new BlockPos.Mutable();
 
+	private InterestingStates states;
+	private int statesGeneration;
+
 	public Scanner(@Nonnull final ScanContext locus, @Nonnull final String name, final int range) {
 		this(locus, name, range, 0);
 	}
@@ -122,6 +126,20 @@ public abstract class Scanner {
 		return state.getMaterial() != Material.AIR;
 	}
 
+	/**
+	 * Block states of interest to the scanner.  Built on first use since it depends on the subclass, and rebuilt
+	 * whenever the block state library is reloaded.
+	 */
+	@Nonnull
+	InterestingStates getInterestingStates() {
+		final int generation = BlockStateLibrary.getGeneration();
+		if (this.states == null || this.statesGeneration != generation) {
+			this.states = new InterestingStates(state -> !BLOCKSTATES_TO_IGNORE.contains(state) && interestingBlock(state));
+			this.statesGeneration = generation;
+		}
+		return this.states;
+	}
+
 	public void preScan() {
 
 	}
@@ -137,8 +155,11 @@ public abstract class Scanner {
 		final IBlockReader provider = this.locus.getWorld();
 		for (int count = 0; count < this.blocksPerTick; count++) {
 			final BlockPos pos = nextPos(this.workingPos, this.random);
-			if (pos == null)
+			if (pos == null) {
+				if (skipNull())
+					continue;
 				break;
+			}
 			final BlockState state = provider.getBlockState(pos);
 			if (BLOCKSTATES_TO_IGNORE.contains(state))
 				continue;
@@ -151,6 +172,14 @@ public abstract class Scanner {
 
 	}
 
+	/**
+	 * Determines what a null from nextPos() means.  By default it means there is nothing more to scan this tick.
+	 * Override to return true if it instead means the sample should be skipped and the scan go on.
+	 */
+	protected boolean skipNull() {
+		return false;
+	}
+
 	/**
 	 * Provide the next block position to be processed. For memory efficiency the
 	 * provided mutable should be used to store the coordinate information and
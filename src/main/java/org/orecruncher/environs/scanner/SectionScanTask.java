@@ -0,0 +1,110 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.environs.scanner;
+
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.Nonnull;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Finds the interesting blocks within a set of section snapshots.  The sections are split into slabs that are scanned
+ * in parallel and the positions found are merged.  Only blocks within the bounds are reported.
+ */
+@OnlyIn(Dist.CLIENT)
+final class SectionScanTask extends RecursiveTask<LongArrayList> {
+
+	// Number of sections a task scans itself rather than splitting
+	private static final int THRESHOLD = 4;
+
+	private final InterestingStates.Snapshot[] sections;
+	private final int from;
+	private final int to;
+	private final int minX;
+	private final int minY;
+	private final int minZ;
+	private final int maxX;
+	private final int maxY;
+	private final int maxZ;
+
+	SectionScanTask(@Nonnull final InterestingStates.Snapshot[] sections, final int count, @Nonnull final BlockPos min, @Nonnull final BlockPos max) {
+		this.sections = sections;
+		this.from = 0;
+		this.to = count;
+		this.minX = min.getX();
+		this.minY = min.getY();
+		this.minZ = min.getZ();
+		this.maxX = max.getX();
+		this.maxY = max.getY();
+		this.maxZ = max.getZ();
+	}
+
+	private SectionScanTask(@Nonnull final SectionScanTask parent, final int from, final int to) {
+		this.sections = parent.sections;
+		this.from = from;
+		this.to = to;
+		this.minX = parent.minX;
+		this.minY = parent.minY;
+		this.minZ = parent.minZ;
+		this.maxX = parent.maxX;
+		this.maxY = parent.maxY;
+		this.maxZ = parent.maxZ;
+	}
+
+	@Override
+	@Nonnull
+	protected LongArrayList compute() {
+		if (this.to - this.from > THRESHOLD) {
+			final int mid = (this.from + this.to) >>> 1;
+			final SectionScanTask left = new SectionScanTask(this, this.from, mid);
+			left.fork();
+			final LongArrayList right = new SectionScanTask(this, mid, this.to).compute();
+			final LongArrayList result = left.join();
+			result.addAll(right);
+			return result;
+		}
+
+		final LongArrayList result = new LongArrayList();
+		for (int i = this.from; i < this.to; i++)
+			scan(this.sections[i], result);
+		return result;
+	}
+
+	private void scan(@Nonnull final InterestingStates.Snapshot section, @Nonnull final LongArrayList result) {
+		final int baseX = section.x << 4;
+		final int baseY = section.y << 4;
+		final int baseZ = section.z << 4;
+		final int x0 = Math.max(this.minX, baseX);
+		final int x1 = Math.min(this.maxX, baseX + 15);
+		final int y0 = Math.max(this.minY, baseY);
+		final int y1 = Math.min(this.maxY, baseY + 15);
+		final int z0 = Math.max(this.minZ, baseZ);
+		final int z1 = Math.min(this.maxZ, baseZ + 15);
+
+		for (int y = y0; y <= y1; y++)
+			for (int z = z0; z <= z1; z++)
+				for (int x = x0; x <= x1; x++)
+					if (section.isInteresting(((y & 15) << 8) | ((z & 15) << 4) | (x & 15)))
+						result.add(BlockPos.pack(x, y, z));
+	}
+}
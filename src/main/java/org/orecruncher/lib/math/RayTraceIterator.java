@@ -18,56 +18,105 @@
 
 package org.orecruncher.lib.math;
 
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.BlockRayTraceResult;
-import net.minecraft.util.math.RayTraceResult;
-import net.minecraft.util.math.vector.Vector3d;
+import org.orecruncher.lib.world.VoxelSnapshot;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 import java.util.Iterator;
 
-public class RayTraceIterator implements Iterator<BlockRayTraceResult> {
+/**
+ * Iterates the blocks hit along a line segment.  The VoxelHit returned by next() is owned by the underlying caster
+ * and is only valid until the following call to hasNext() or next().  An iterator can be reused by calling reset().
+ */
+public class RayTraceIterator implements Iterator<VoxelHit> {
 
     @Nonnull
-    private final BlockRayTrace traceContext;
-    @Nonnull
-    private final BlockPos targetBlock;
-    @Nonnull
-    private final Vector3d normal;
+    private final VoxelRayCaster caster;
+
+    private VoxelSnapshot world = VoxelSnapshot.EMPTY;
+    private double startX;
+    private double startY;
+    private double startZ;
+    private double endX;
+    private double endY;
+    private double endZ;
+    private double normalX;
+    private double normalY;
+    private double normalZ;
+    private int targetX;
+    private int targetY;
+    private int targetZ;
+
+    private boolean hasHit;
+    private boolean advance;
+
+    public RayTraceIterator(@Nonnull final VoxelRayCaster caster) {
+        this.caster = caster;
+    }
 
-    @Nullable
-    private BlockRayTraceResult hitResult;
+    /**
+     * Starts a new iteration over the segment between the start and end points.
+     */
+    public void reset(@Nonnull final VoxelSnapshot world, final double sx, final double sy, final double sz, final double ex, final double ey, final double ez) {
+        this.world = world;
+        this.startX = sx;
+        this.startY = sy;
+        this.startZ = sz;
+        this.endX = ex;
+        this.endY = ey;
+        this.endZ = ez;
+        this.targetX = MathStuff.floor(ex);
+        this.targetY = MathStuff.floor(ey);
+        this.targetZ = MathStuff.floor(ez);
 
-    public RayTraceIterator(@Nonnull final BlockRayTrace traceContext) {
-        this.traceContext = traceContext;
-        this.targetBlock = new BlockPos(traceContext.end);
-        this.normal = MathStuff.normalize(traceContext.start, traceContext.end);
+        final double dx = ex - sx;
+        final double dy = ey - sy;
+        final double dz = ez - sz;
+        final double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (len < 1.0E-4D) {
+            this.normalX = this.normalY = this.normalZ = 0;
+        } else {
+            this.normalX = dx / len;
+            this.normalY = dy / len;
+            this.normalZ = dz / len;
+        }
+
+        this.advance = false;
         doTrace();
     }
 
     private void doTrace() {
-        if (this.hitResult != null && this.hitResult.getPos().equals(this.targetBlock)) {
-            this.hitResult = null;
+        this.hasHit = this.caster.trace(this.world, this.startX, this.startY, this.startZ, this.endX, this.endY, this.endZ);
+    }
+
+    private void advance() {
+        final VoxelHit hit = this.caster.getResult();
+        if (hit.isBlock(this.targetX, this.targetY, this.targetZ)) {
+            this.hasHit = false;
         } else {
-            this.hitResult = this.traceContext.trace();
+            this.startX = hit.getHitX() + this.normalX;
+            this.startY = hit.getHitY() + this.normalY;
+            this.startZ = hit.getHitZ() + this.normalZ;
+            doTrace();
         }
     }
 
     @Override
     public boolean hasNext() {
-        return this.hitResult != null && this.hitResult.getType() != RayTraceResult.Type.MISS;
+        if (this.advance) {
+            this.advance = false;
+            if (this.hasHit)
+                advance();
+        }
+        return this.hasHit;
     }
 
     @Override
     @Nonnull
-    public BlockRayTraceResult next() {
-        if (this.hitResult == null || this.hitResult.getType() == RayTraceResult.Type.MISS)
+    public VoxelHit next() {
+        if (!hasNext())
             throw new IllegalStateException("No more blocks in trace");
-        final BlockRayTraceResult result = this.hitResult;
-        this.traceContext.start = this.hitResult.getHitVec().add(this.normal);
-        doTrace();
-        return result;
+        this.advance = true;
+        return this.caster.getResult();
     }
 
 }
@@ -0,0 +1,115 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import com.google.common.base.MoreObjects;
+import net.minecraft.util.Direction;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Mutable result of a VoxelRayCaster trace.  Instances are reused between traces so callers should copy out any
+ * values they need to retain before tracing again.
+ */
+public final class VoxelHit {
+
+    boolean hit;
+    int blockX;
+    int blockY;
+    int blockZ;
+    double hitX;
+    double hitY;
+    double hitZ;
+    double distance;
+    int stateId;
+    @Nonnull
+    Direction face = Direction.UP;
+
+    /**
+     * Indicates whether the trace hit a block.  If false, the hit position is the end of the traced segment.
+     */
+    public boolean isHit() {
+        return this.hit;
+    }
+
+    public boolean isMiss() {
+        return !this.hit;
+    }
+
+    public int getBlockX() {
+        return this.blockX;
+    }
+
+    public int getBlockY() {
+        return this.blockY;
+    }
+
+    public int getBlockZ() {
+        return this.blockZ;
+    }
+
+    public double getHitX() {
+        return this.hitX;
+    }
+
+    public double getHitY() {
+        return this.hitY;
+    }
+
+    public double getHitZ() {
+        return this.hitZ;
+    }
+
+    /**
+     * Distance from the start of the traced segment to the hit position.
+     */
+    public double getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Global block state id of the block that was hit.  Only meaningful when isHit() is true.
+     */
+    public int getStateId() {
+        return this.stateId;
+    }
+
+    /**
+     * The face of the block that was struck by the ray.
+     */
+    @Nonnull
+    public Direction getFace() {
+        return this.face;
+    }
+
+    public boolean isBlock(final int x, final int y, final int z) {
+        return this.blockX == x && this.blockY == y && this.blockZ == z;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("hit", this.hit)
+                .add("block", String.format("(%d,%d,%d)", this.blockX, this.blockY, this.blockZ))
+                .add("face", this.face)
+                .add("distance", this.distance)
+                .toString();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.RayTraceContext;
+import net.minecraft.util.math.shapes.ISelectionContext;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.util.math.shapes.VoxelShapes;
+import net.minecraft.world.EmptyBlockReader;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tests a ray segment against the shape of a block state.  Shared by the voxel ray casters.  Block shapes are
+ * resolved once per block state against an empty world, so shapes that depend on neighbors or position offsets are
+ * approximated.  An instance is not thread safe.
+ */
+final class VoxelIntersector {
+
+    private static final double INSIDE_EPSILON = 1.0E-7D;
+
+    private static final ShapeTable COLLIDER_SHAPES = new ShapeTable(RayTraceContext.BlockMode.COLLIDER);
+    private static final ShapeTable VISUAL_SHAPES = new ShapeTable(RayTraceContext.BlockMode.VISUAL);
+    private static final ShapeTable OUTLINE_SHAPES = new ShapeTable(RayTraceContext.BlockMode.OUTLINE);
+
+    private final ShapeTable shapes;
+    private final RayTraceContext.FluidMode fluidMode;
+
+    // Current segment being tested
+    private double startX;
+    private double startY;
+    private double startZ;
+    private double dirX;
+    private double dirY;
+    private double dirZ;
+
+    // Face struck by the closest box of the last intersect() call
+    private Direction faceScratch = Direction.UP;
+
+    // Face that was hit by the last successful test() call
+    Direction face = Direction.UP;
+
+    VoxelIntersector(@Nonnull final RayTraceContext.BlockMode blockMode, @Nonnull final RayTraceContext.FluidMode fluidMode) {
+        switch (blockMode) {
+            case COLLIDER:
+                this.shapes = COLLIDER_SHAPES;
+                break;
+            case VISUAL:
+                this.shapes = VISUAL_SHAPES;
+                break;
+            default:
+                this.shapes = OUTLINE_SHAPES;
+                break;
+        }
+        this.fluidMode = fluidMode;
+    }
+
+    /**
+     * Sets the segment to test.  The direction is the vector from the start to the end point.
+     */
+    void setSegment(final double sx, final double sy, final double sz, final double dx, final double dy, final double dz) {
+        this.startX = sx;
+        this.startY = sy;
+        this.startZ = sz;
+        this.dirX = dx;
+        this.dirY = dy;
+        this.dirZ = dz;
+    }
+
+    /**
+     * Tests the current segment against the block state at the given position.
+     *
+     * @param id     Block state id of the block
+     * @param tEnter Parametric distance at which the segment entered the block
+     * @param enter  Face through which the segment entered the block
+     * @return Parametric distance of the hit, or a value greater than 1 if there isn't one
+     */
+    double test(final int id, final int x, final int y, final int z, final double tEnter, @Nonnull final Direction enter) {
+        final Shape shape = this.shapes.get(id);
+        double best = Double.MAX_VALUE;
+        Direction bestFace = enter;
+
+        if (shape.full) {
+            best = tEnter;
+        } else if (shape.boxes.length > 0) {
+            best = intersect(shape.boxes, x, y, z);
+            bestFace = this.faceScratch;
+        }
+
+        if (shape.fluidBoxes.length > 0 && (this.fluidMode == RayTraceContext.FluidMode.ANY || (this.fluidMode == RayTraceContext.FluidMode.SOURCE_ONLY && shape.fluidSource))) {
+            final double t = intersect(shape.fluidBoxes, x, y, z);
+            if (t < best) {
+                best = t;
+                bestFace = this.faceScratch;
+            }
+        }
+
+        this.face = bestFace;
+        return best;
+    }
+
+    /**
+     * Slab test of the current segment against a set of boxes offset to the given block position.  Returns the
+     * parametric distance along the segment of the closest hit, or Double.MAX_VALUE if nothing is hit.
+     */
+    private double intersect(@Nonnull final double[] boxes, final int x, final int y, final int z) {
+        final double ox = this.startX - x;
+        final double oy = this.startY - y;
+        final double oz = this.startZ - z;
+
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < boxes.length; i += 6) {
+            double tNear = Double.NEGATIVE_INFINITY;
+            double tFar = Double.POSITIVE_INFINITY;
+            Direction nearFace = Direction.UP;
+
+            // X slab
+            if (this.dirX == 0) {
+                if (ox < boxes[i] || ox > boxes[i + 3])
+                    continue;
+            } else {
+                final double inv = 1D / this.dirX;
+                double t1 = (boxes[i] - ox) * inv;
+                double t2 = (boxes[i + 3] - ox) * inv;
+                if (t1 > t2) {
+                    final double t = t1;
+                    t1 = t2;
+                    t2 = t;
+                }
+                if (t1 > tNear) {
+                    tNear = t1;
+                    nearFace = this.dirX > 0 ? Direction.WEST : Direction.EAST;
+                }
+                tFar = Math.min(tFar, t2);
+            }
+
+            // Y slab
+            if (this.dirY == 0) {
+                if (oy < boxes[i + 1] || oy > boxes[i + 4])
+                    continue;
+            } else {
+                final double inv = 1D / this.dirY;
+                double t1 = (boxes[i + 1] - oy) * inv;
+                double t2 = (boxes[i + 4] - oy) * inv;
+                if (t1 > t2) {
+                    final double t = t1;
+                    t1 = t2;
+                    t2 = t;
+                }
+                if (t1 > tNear) {
+                    tNear = t1;
+                    nearFace = this.dirY > 0 ? Direction.DOWN : Direction.UP;
+                }
+                tFar = Math.min(tFar, t2);
+            }
+
+            // Z slab
+            if (this.dirZ == 0) {
+                if (oz < boxes[i + 2] || oz > boxes[i + 5])
+                    continue;
+            } else {
+                final double inv = 1D / this.dirZ;
+                double t1 = (boxes[i + 2] - oz) * inv;
+                double t2 = (boxes[i + 5] - oz) * inv;
+                if (t1 > t2) {
+                    final double t = t1;
+                    t1 = t2;
+                    t2 = t;
+                }
+                if (t1 > tNear) {
+                    tNear = t1;
+                    nearFace = this.dirZ > 0 ? Direction.NORTH : Direction.SOUTH;
+                }
+                tFar = Math.min(tFar, t2);
+            }
+
+            if (tNear > tFar || tFar < 0)
+                continue;
+
+            // Starting inside the box is a hit at the start point, same as what Minecraft does
+            if (tNear < INSIDE_EPSILON) {
+                tNear = 0;
+                nearFace = Direction.getFacingFromVector(this.dirX, this.dirY, this.dirZ).getOpposite();
+            }
+
+            if (tNear < best) {
+                best = tNear;
+                this.faceScratch = nearFace;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Flattened bounding boxes of a block state's shape, and that of its fluid.  Each box is 6 doubles: min x/y/z
+     * followed by max x/y/z relative to the block origin.
+     */
+    private static final class Shape {
+        static final double[] NO_BOXES = new double[0];
+
+        final boolean full;
+        final double[] boxes;
+        final double[] fluidBoxes;
+        final boolean fluidSource;
+
+        Shape(final boolean full, @Nonnull final double[] boxes, @Nonnull final double[] fluidBoxes, final boolean fluidSource) {
+            this.full = full;
+            this.boxes = boxes;
+            this.fluidBoxes = fluidBoxes;
+            this.fluidSource = fluidSource;
+        }
+    }
+
+    /**
+     * Lazily populated table of shapes indexed by block state id.  Racing threads may both compute an entry but
+     * the results are the same, so the last write wins without harm.
+     */
+    private static final class ShapeTable {
+
+        private final RayTraceContext.BlockMode mode;
+        private volatile AtomicReferenceArray<Shape> table;
+
+        ShapeTable(@Nonnull final RayTraceContext.BlockMode mode) {
+            this.mode = mode;
+        }
+
+        @Nonnull
+        Shape get(final int id) {
+            AtomicReferenceArray<Shape> t = this.table;
+            if (t == null || id >= t.length()) {
+                synchronized (this) {
+                    t = this.table;
+                    if (t == null || id >= t.length())
+                        this.table = t = new AtomicReferenceArray<>(Math.max(Block.BLOCK_STATE_IDS.size(), id + 1));
+                }
+            }
+            Shape s = t.get(id);
+            if (s == null) {
+                s = resolve(Block.getStateById(id));
+                t.lazySet(id, s);
+            }
+            return s;
+        }
+
+        @Nonnull
+        private Shape resolve(@Nonnull final BlockState state) {
+            VoxelShape shape;
+            try {
+                shape = state.isAir() ? VoxelShapes.empty() : this.mode.get(state, EmptyBlockReader.INSTANCE, BlockPos.ZERO, ISelectionContext.dummy());
+            } catch (@Nonnull final Throwable t) {
+                // Some blocks do not like being asked about their shape outside of a real world
+                shape = state.getMaterial().blocksMovement() ? VoxelShapes.fullCube() : VoxelShapes.empty();
+            }
+
+            final FluidState fluid = state.getFluidState();
+            VoxelShape fluidShape = VoxelShapes.empty();
+            if (!fluid.isEmpty()) {
+                try {
+                    fluidShape = fluid.getShape(EmptyBlockReader.INSTANCE, BlockPos.ZERO);
+                } catch (@Nonnull final Throwable t) {
+                    fluidShape = VoxelShapes.fullCube();
+                }
+            }
+
+            final boolean full = shape == VoxelShapes.fullCube();
+            return new Shape(full, full ? Shape.NO_BOXES : flatten(shape), flatten(fluidShape), fluid.isSource());
+        }
+
+        @Nonnull
+        private static double[] flatten(@Nonnull final VoxelShape shape) {
+            if (shape.isEmpty())
+                return Shape.NO_BOXES;
+            final List<AxisAlignedBB> list = shape.toBoundingBoxList();
+            final double[] result = new double[list.size() * 6];
+            int idx = 0;
+            for (final AxisAlignedBB bb : list) {
+                result[idx++] = bb.minX;
+                result[idx++] = bb.minY;
+                result[idx++] = bb.minZ;
+                result[idx++] = bb.maxX;
+                result[idx++] = bb.maxY;
+                result[idx++] = bb.maxZ;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.RayTraceContext;
+import org.orecruncher.lib.world.VoxelSnapshot;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Voxel ray caster that walks a line segment through a VoxelSnapshot using a 3D DDA.  All math is done with
+ * primitives and the result is written into a reusable VoxelHit, so once the shape tables are warmed up a trace does
+ * not allocate.  An instance is not thread safe; use one per thread or per task.
+ */
+public final class VoxelRayCaster {
+
+    private final VoxelIntersector intersector;
+    private final VoxelHit result = new VoxelHit();
+
+    // Current segment being traced
+    private double startX;
+    private double startY;
+    private double startZ;
+    private double dirX;
+    private double dirY;
+    private double dirZ;
+
+    public VoxelRayCaster(@Nonnull final RayTraceContext.BlockMode blockMode, @Nonnull final RayTraceContext.FluidMode fluidMode) {
+        this.intersector = new VoxelIntersector(blockMode, fluidMode);
+    }
+
+    /**
+     * Result of the last trace.  The object is reused by subsequent traces.
+     */
+    @Nonnull
+    public VoxelHit getResult() {
+        return this.result;
+    }
+
+    /**
+     * Traces the line segment between the start and end points, stopping at the first block hit.
+     *
+     * @return true if a block was hit, false otherwise
+     */
+    public boolean trace(@Nonnull final VoxelSnapshot world, final double sx, final double sy, final double sz, final double ex, final double ey, final double ez) {
+        this.startX = sx;
+        this.startY = sy;
+        this.startZ = sz;
+        this.dirX = ex - sx;
+        this.dirY = ey - sy;
+        this.dirZ = ez - sz;
+        this.intersector.setSegment(sx, sy, sz, this.dirX, this.dirY, this.dirZ);
+
+        final VoxelHit hit = this.result;
+        final double length = Math.sqrt(this.dirX * this.dirX + this.dirY * this.dirY + this.dirZ * this.dirZ);
+
+        if (length == 0) {
+            return miss(ex, ey, ez, length);
+        }
+
+        int x = MathStuff.floor(sx);
+        int y = MathStuff.floor(sy);
+        int z = MathStuff.floor(sz);
+
+        final int stepX = this.dirX > 0 ? 1 : (this.dirX < 0 ? -1 : 0);
+        final int stepY = this.dirY > 0 ? 1 : (this.dirY < 0 ? -1 : 0);
+        final int stepZ = this.dirZ > 0 ? 1 : (this.dirZ < 0 ? -1 : 0);
+
+        final double tDeltaX = stepX == 0 ? Double.MAX_VALUE : 1D / Math.abs(this.dirX);
+        final double tDeltaY = stepY == 0 ? Double.MAX_VALUE : 1D / Math.abs(this.dirY);
+        final double tDeltaZ = stepZ == 0 ? Double.MAX_VALUE : 1D / Math.abs(this.dirZ);
+
+        double tMaxX = stepX > 0 ? (x + 1 - sx) * tDeltaX : (stepX < 0 ? (sx - x) * tDeltaX : Double.MAX_VALUE);
+        double tMaxY = stepY > 0 ? (y + 1 - sy) * tDeltaY : (stepY < 0 ? (sy - y) * tDeltaY : Double.MAX_VALUE);
+        double tMaxZ = stepZ > 0 ? (z + 1 - sz) * tDeltaZ : (stepZ < 0 ? (sz - z) * tDeltaZ : Double.MAX_VALUE);
+
+        // Face a ray hits when entering the first block; it starts inside so treat it as if it is leaving
+        Direction face = Direction.getFacingFromVector(this.dirX, this.dirY, this.dirZ).getOpposite();
+        double tEnter = 0;
+
+        // Nothing past the clip point can be hit, so the walk stops there.  Upper bound on the number of voxels the
+        // clipped segment can cross.
+        final double limit = world.clip(sx, sy, sz, this.dirX, this.dirY, this.dirZ);
+        int remaining = Math.abs(MathStuff.floor(sx + this.dirX * limit) - x)
+                + Math.abs(MathStuff.floor(sy + this.dirY * limit) - y)
+                + Math.abs(MathStuff.floor(sz + this.dirZ * limit) - z) + 1;
+
+        while (remaining-- > 0) {
+            if (hitCheck(world, x, y, z, tEnter, face, length))
+                return true;
+
+            if (tMaxX < tMaxY) {
+                if (tMaxX < tMaxZ) {
+                    tEnter = tMaxX;
+                    x += stepX;
+                    tMaxX += tDeltaX;
+                    face = stepX > 0 ? Direction.WEST : Direction.EAST;
+                } else {
+                    tEnter = tMaxZ;
+                    z += stepZ;
+                    tMaxZ += tDeltaZ;
+                    face = stepZ > 0 ? Direction.NORTH : Direction.SOUTH;
+                }
+            } else if (tMaxY < tMaxZ) {
+                tEnter = tMaxY;
+                y += stepY;
+                tMaxY += tDeltaY;
+                face = stepY > 0 ? Direction.DOWN : Direction.UP;
+            } else {
+                tEnter = tMaxZ;
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+                face = stepZ > 0 ? Direction.NORTH : Direction.SOUTH;
+            }
+
+            if (tEnter > limit)
+                break;
+        }
+
+        hit.blockX = MathStuff.floor(ex);
+        hit.blockY = MathStuff.floor(ey);
+        hit.blockZ = MathStuff.floor(ez);
+        return miss(ex, ey, ez, length);
+    }
+
+    private boolean miss(final double ex, final double ey, final double ez, final double length) {
+        final VoxelHit hit = this.result;
+        hit.hit = false;
+        hit.hitX = ex;
+        hit.hitY = ey;
+        hit.hitZ = ez;
+        hit.distance = length;
+        hit.stateId = VoxelSnapshot.AIR_ID;
+        return false;
+    }
+
+    private boolean hitCheck(@Nonnull final VoxelSnapshot world, final int x, final int y, final int z, final double tEnter, @Nonnull final Direction face, final double length) {
+        final int id = world.getStateId(x, y, z);
+        if (id == VoxelSnapshot.AIR_ID)
+            return false;
+
+        final double best = this.intersector.test(id, x, y, z, tEnter, face);
+        if (best > 1D)
+            return false;
+
+        final VoxelHit hit = this.result;
+        hit.hit = true;
+        hit.blockX = x;
+        hit.blockY = y;
+        hit.blockZ = z;
+        hit.hitX = this.startX + this.dirX * best;
+        hit.hitY = this.startY + this.dirY * best;
+        hit.hitZ = this.startZ + this.dirZ * best;
+        hit.distance = best * length;
+        hit.stateId = id;
+        hit.face = this.intersector.face;
+        return true;
+    }
+}
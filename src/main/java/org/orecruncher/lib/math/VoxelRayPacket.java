@@ -0,0 +1,290 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.RayTraceContext;
+import org.orecruncher.lib.world.VoxelSnapshot;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Traces a group of line segments through a VoxelSnapshot together.  Ray state is held in parallel primitive arrays
+ * and all live rays are advanced one voxel per pass, so rays that share an origin walk the same neighborhood of the
+ * snapshot at the same time.  Rays drop out of the pass as soon as they hit something or reach their end.  Like
+ * VoxelRayCaster, an instance is reused between traces and is not thread safe.
+ */
+public final class VoxelRayPacket {
+
+    private static final Direction[] FACES = Direction.values();
+
+    private final VoxelIntersector intersector;
+    private final int capacity;
+    private int count;
+
+    // Ray definition
+    private final double[] originX;
+    private final double[] originY;
+    private final double[] originZ;
+    private final double[] dirX;
+    private final double[] dirY;
+    private final double[] dirZ;
+    private final double[] length;
+    private final double[] limit;
+
+    // Traversal state
+    private final int[] posX;
+    private final int[] posY;
+    private final int[] posZ;
+    private final int[] stepX;
+    private final int[] stepY;
+    private final int[] stepZ;
+    private final double[] tMaxX;
+    private final double[] tMaxY;
+    private final double[] tMaxZ;
+    private final double[] tDeltaX;
+    private final double[] tDeltaY;
+    private final double[] tDeltaZ;
+    private final double[] tEnter;
+    private final byte[] enterFace;
+    private final int[] remaining;
+    private final int[] active;
+
+    // Results
+    private final boolean[] hit;
+    private final double[] hitT;
+    private final int[] hitStateId;
+    private final byte[] hitFace;
+
+    public VoxelRayPacket(final int capacity, @Nonnull final RayTraceContext.BlockMode blockMode, @Nonnull final RayTraceContext.FluidMode fluidMode) {
+        this.intersector = new VoxelIntersector(blockMode, fluidMode);
+        this.capacity = capacity;
+        this.originX = new double[capacity];
+        this.originY = new double[capacity];
+        this.originZ = new double[capacity];
+        this.dirX = new double[capacity];
+        this.dirY = new double[capacity];
+        this.dirZ = new double[capacity];
+        this.length = new double[capacity];
+        this.limit = new double[capacity];
+        this.posX = new int[capacity];
+        this.posY = new int[capacity];
+        this.posZ = new int[capacity];
+        this.stepX = new int[capacity];
+        this.stepY = new int[capacity];
+        this.stepZ = new int[capacity];
+        this.tMaxX = new double[capacity];
+        this.tMaxY = new double[capacity];
+        this.tMaxZ = new double[capacity];
+        this.tDeltaX = new double[capacity];
+        this.tDeltaY = new double[capacity];
+        this.tDeltaZ = new double[capacity];
+        this.tEnter = new double[capacity];
+        this.enterFace = new byte[capacity];
+        this.remaining = new int[capacity];
+        this.active = new int[capacity];
+        this.hit = new boolean[capacity];
+        this.hitT = new double[capacity];
+        this.hitStateId = new int[capacity];
+        this.hitFace = new byte[capacity];
+    }
+
+    /**
+     * Removes all rays from the packet.
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Adds a segment to the packet.
+     *
+     * @return The lane index of the ray within the packet
+     */
+    public int add(final double sx, final double sy, final double sz, final double ex, final double ey, final double ez) {
+        if (this.count == this.capacity)
+            throw new IllegalStateException("Ray packet is full");
+        final int lane = this.count++;
+        this.originX[lane] = sx;
+        this.originY[lane] = sy;
+        this.originZ[lane] = sz;
+        this.dirX[lane] = ex - sx;
+        this.dirY[lane] = ey - sy;
+        this.dirZ[lane] = ez - sz;
+        return lane;
+    }
+
+    /**
+     * Traces all of the rays in the packet.  Results are available through the lane accessors.
+     */
+    public void trace(@Nonnull final VoxelSnapshot world) {
+        int live = 0;
+        for (int lane = 0; lane < this.count; lane++) {
+            if (setup(world, lane))
+                this.active[live++] = lane;
+        }
+
+        while (live > 0) {
+            int next = 0;
+            for (int i = 0; i < live; i++) {
+                final int lane = this.active[i];
+                if (!hitCheck(world, lane) && advance(lane))
+                    this.active[next++] = lane;
+            }
+            live = next;
+        }
+    }
+
+    private boolean setup(@Nonnull final VoxelSnapshot world, final int lane) {
+        final double dx = this.dirX[lane];
+        final double dy = this.dirY[lane];
+        final double dz = this.dirZ[lane];
+        final double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        this.length[lane] = len;
+        this.hit[lane] = false;
+        this.hitT[lane] = 1D;
+        this.hitStateId[lane] = VoxelSnapshot.AIR_ID;
+
+        if (len == 0)
+            return false;
+
+        final double sx = this.originX[lane];
+        final double sy = this.originY[lane];
+        final double sz = this.originZ[lane];
+        final int x = MathStuff.floor(sx);
+        final int y = MathStuff.floor(sy);
+        final int z = MathStuff.floor(sz);
+        this.posX[lane] = x;
+        this.posY[lane] = y;
+        this.posZ[lane] = z;
+
+        final int stX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        final int stY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        final int stZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+        this.stepX[lane] = stX;
+        this.stepY[lane] = stY;
+        this.stepZ[lane] = stZ;
+
+        final double tdX = stX == 0 ? Double.MAX_VALUE : 1D / Math.abs(dx);
+        final double tdY = stY == 0 ? Double.MAX_VALUE : 1D / Math.abs(dy);
+        final double tdZ = stZ == 0 ? Double.MAX_VALUE : 1D / Math.abs(dz);
+        this.tDeltaX[lane] = tdX;
+        this.tDeltaY[lane] = tdY;
+        this.tDeltaZ[lane] = tdZ;
+
+        this.tMaxX[lane] = stX > 0 ? (x + 1 - sx) * tdX : (stX < 0 ? (sx - x) * tdX : Double.MAX_VALUE);
+        this.tMaxY[lane] = stY > 0 ? (y + 1 - sy) * tdY : (stY < 0 ? (sy - y) * tdY : Double.MAX_VALUE);
+        this.tMaxZ[lane] = stZ > 0 ? (z + 1 - sz) * tdZ : (stZ < 0 ? (sz - z) * tdZ : Double.MAX_VALUE);
+
+        this.tEnter[lane] = 0;
+        this.enterFace[lane] = (byte) Direction.getFacingFromVector(dx, dy, dz).getOpposite().ordinal();
+        // Nothing past the clip point can be hit, so the walk stops there
+        final double lim = world.clip(sx, sy, sz, dx, dy, dz);
+        this.limit[lane] = lim;
+        this.remaining[lane] = Math.abs(MathStuff.floor(sx + dx * lim) - x) + Math.abs(MathStuff.floor(sy + dy * lim) - y) + Math.abs(MathStuff.floor(sz + dz * lim) - z) + 1;
+        return true;
+    }
+
+    private boolean hitCheck(@Nonnull final VoxelSnapshot world, final int lane) {
+        final int x = this.posX[lane];
+        final int y = this.posY[lane];
+        final int z = this.posZ[lane];
+        final int id = world.getStateId(x, y, z);
+        if (id == VoxelSnapshot.AIR_ID)
+            return false;
+
+        this.intersector.setSegment(this.originX[lane], this.originY[lane], this.originZ[lane], this.dirX[lane], this.dirY[lane], this.dirZ[lane]);
+        final double t = this.intersector.test(id, x, y, z, this.tEnter[lane], FACES[this.enterFace[lane]]);
+        if (t > 1D)
+            return false;
+
+        this.hit[lane] = true;
+        this.hitT[lane] = t;
+        this.hitStateId[lane] = id;
+        this.hitFace[lane] = (byte) this.intersector.face.ordinal();
+        return true;
+    }
+
+    private boolean advance(final int lane) {
+        if (--this.remaining[lane] <= 0)
+            return false;
+
+        final double mX = this.tMaxX[lane];
+        final double mY = this.tMaxY[lane];
+        final double mZ = this.tMaxZ[lane];
+
+        if (mX < mY && mX < mZ) {
+            this.tEnter[lane] = mX;
+            this.posX[lane] += this.stepX[lane];
+            this.tMaxX[lane] = mX + this.tDeltaX[lane];
+            this.enterFace[lane] = (byte) (this.stepX[lane] > 0 ? Direction.WEST : Direction.EAST).ordinal();
+        } else if (mY < mZ && !(mX < mY)) {
+            this.tEnter[lane] = mY;
+            this.posY[lane] += this.stepY[lane];
+            this.tMaxY[lane] = mY + this.tDeltaY[lane];
+            this.enterFace[lane] = (byte) (this.stepY[lane] > 0 ? Direction.DOWN : Direction.UP).ordinal();
+        } else {
+            this.tEnter[lane] = mZ;
+            this.posZ[lane] += this.stepZ[lane];
+            this.tMaxZ[lane] = mZ + this.tDeltaZ[lane];
+            this.enterFace[lane] = (byte) (this.stepZ[lane] > 0 ? Direction.NORTH : Direction.SOUTH).ordinal();
+        }
+
+        return this.tEnter[lane] <= this.limit[lane];
+    }
+
+    public boolean isHit(final int lane) {
+        return this.hit[lane];
+    }
+
+    /**
+     * Hit position of the ray, or the end of the segment if there was no hit.
+     */
+    public double getHitX(final int lane) {
+        return this.originX[lane] + this.dirX[lane] * this.hitT[lane];
+    }
+
+    public double getHitY(final int lane) {
+        return this.originY[lane] + this.dirY[lane] * this.hitT[lane];
+    }
+
+    public double getHitZ(final int lane) {
+        return this.originZ[lane] + this.dirZ[lane] * this.hitT[lane];
+    }
+
+    /**
+     * Distance from the start of the segment to the hit position.
+     */
+    public double getDistance(final int lane) {
+        return this.length[lane] * this.hitT[lane];
+    }
+
+    public int getStateId(final int lane) {
+        return this.hitStateId[lane];
+    }
+
+    @Nonnull
+    public Direction getFace(final int lane) {
+        return FACES[this.hitFace[lane]];
+    }
+}
@@ -77,6 +77,13 @@ public interface IWeatherVariables {
      */
     float getTemperature();
 
+    /**
+     * Gets the type of precipitation falling on the player
+     *
+     * @return "none", "rain", or "snow"
+     */
+    String getPrecipitation();
+
     /**
      * Indicates if the temperature at the player location is cold enough to show frost breath, etc.
      *
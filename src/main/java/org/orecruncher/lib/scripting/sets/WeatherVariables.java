@@ -20,11 +20,13 @@ package org.orecruncher.lib.scripting.sets;
 
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.lib.GameUtils;
 import org.orecruncher.lib.WorldUtils;
 import org.orecruncher.lib.scripting.VariableSet;
+import org.orecruncher.lib.world.PrecipitationCache;
 
 import javax.annotation.Nonnull;
 
@@ -39,6 +41,14 @@ public class WeatherVariables extends VariableSet<IWeatherVariables> implements
         }
         return 0F;
     });
+    private final LazyVariable<String> precipitation = new LazyVariable<>(() -> {
+        if (GameUtils.isInGame()) {
+            final World world = GameUtils.getWorld();
+            final BlockPos pos = GameUtils.getPlayer().getPosition();
+            return PrecipitationCache.getPrecipitationAt(world, pos).getName();
+        }
+        return Biome.RainType.NONE.getName();
+    });
     private boolean isRaining;
     private boolean isThundering;
     private float rainIntensity;
@@ -69,6 +79,7 @@ public class WeatherVariables extends VariableSet<IWeatherVariables> implements
             this.isThundering = false;
         }
         this.temperature.reset();
+        this.precipitation.reset();
     }
 
     @Override
@@ -95,4 +106,9 @@ public class WeatherVariables extends VariableSet<IWeatherVariables> implements
     public float getTemperature() {
         return this.temperature.get();
     }
+
+    @Override
+    public String getPrecipitation() {
+        return this.precipitation.get();
+    }
 }
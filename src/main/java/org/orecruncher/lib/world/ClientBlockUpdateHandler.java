@@ -21,6 +21,7 @@ package org.orecruncher.lib.world;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
@@ -31,6 +32,7 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.commons.lang3.tuple.Pair;
 import org.orecruncher.dsurround.DynamicSurroundings;
+import org.orecruncher.lib.GameUtils;
 import org.orecruncher.lib.events.BlockUpdateEvent;
 import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.math.LoggingTimerEMA;
@@ -38,6 +40,7 @@ import org.orecruncher.sndctrl.config.Config;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.function.LongPredicate;
 
 @Mod.EventBusSubscriber(modid = DynamicSurroundings.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public final class ClientBlockUpdateHandler {
@@ -48,14 +51,58 @@ public final class ClientBlockUpdateHandler {
     // Delay presenting block update triggers.  This is to avoid generating extra work when a blocks is going to
     // be filled in again, like mining underwater.
     private static final int TICK_OFFSET = 10;
+    // Block updates within this range of the player advance the change epoch
+    private static final int EPOCH_RANGE = 64;
+    // Number of recent nearby block changes remembered for cell level invalidation
+    private static final int CHANGE_LOG_SIZE = 1024;
     private static final LoggingTimerEMA timer = new LoggingTimerEMA("Block Updates");
     private static final Queue<Pair<Integer, BlockPos>> updates = new LinkedList<>();
     private static final Set<BlockPos> toSend = new ObjectOpenHashSet<>();
+    private static final long[] changeLog = new long[CHANGE_LOG_SIZE];
+    private static final int[] changeLogEpoch = new int[CHANGE_LOG_SIZE];
+    private static int changeLogCount = 0;
+    private static int resetEpoch = 0;
     private static int interval = 0;
+    private static volatile int changeEpoch = 0;
+
+    /**
+     * Gets the current change epoch.  The epoch is advanced whenever block updates are presented that are near the
+     * player, so a calculation tagged with the epoch remains valid as long as the epoch does not change.
+     */
+    public static int getChangeEpoch() {
+        return changeEpoch;
+    }
+
+    /**
+     * Determines if any block near the player that matches the test has changed since the specified epoch.  If the
+     * history of changes does not go back far enough to tell, a change is assumed.
+     *
+     * @param epoch Change epoch to check against
+     * @param test  Test applied to the packed BlockPos (BlockPos.toLong()) of each change
+     * @return true if a matching block changed, false otherwise
+     */
+    public static boolean hasChangedSince(final int epoch, @Nonnull final LongPredicate test) {
+        if (epoch == changeEpoch)
+            return false;
+        synchronized (changeLog) {
+            if (epoch - resetEpoch < 0)
+                return true;
+            final int oldest = Math.max(0, changeLogCount - CHANGE_LOG_SIZE);
+            for (int i = changeLogCount - 1; i >= oldest; i--) {
+                final int idx = i % CHANGE_LOG_SIZE;
+                if (changeLogEpoch[idx] - epoch <= 0)
+                    return false;
+                if (test.test(changeLog[idx]))
+                    return true;
+            }
+            return oldest > 0;
+        }
+    }
 
     // Callback that is inserted into ClientWorld processing via ASM
     public static void blockUpdateCallback(@Nonnull final ClientWorld world, @Nonnull final BlockPos pos, @Nonnull final BlockState state) {
         updates.add(Pair.of(interval + TICK_OFFSET, pos));
+        VoxelSnapshotCache.onBlockChanged(pos);
     }
 
     @SubscribeEvent(priority = EventPriority.LOW)
@@ -73,6 +120,24 @@ public final class ClientBlockUpdateHandler {
             }
 
             if (toSend.size() > 0) {
+                final PlayerEntity player = GameUtils.getPlayer();
+                if (player != null) {
+                    final BlockPos playerPos = player.getPosition();
+                    synchronized (changeLog) {
+                        final int epoch = changeEpoch + 1;
+                        boolean changed = false;
+                        for (final BlockPos pos : toSend) {
+                            if (pos.withinDistance(playerPos, EPOCH_RANGE)) {
+                                final int idx = changeLogCount++ % CHANGE_LOG_SIZE;
+                                changeLog[idx] = pos.toLong();
+                                changeLogEpoch[idx] = epoch;
+                                changed = true;
+                            }
+                        }
+                        if (changed)
+                            changeEpoch = epoch;
+                    }
+                }
                 final BlockUpdateEvent evt = new BlockUpdateEvent(toSend);
                 MinecraftForge.EVENT_BUS.post(evt);
             }
@@ -95,6 +160,10 @@ public final class ClientBlockUpdateHandler {
         if (event.getWorld().isRemote()) {
             updates.clear();
             interval = 0;
+            synchronized (changeLog) {
+                // Nothing calculated in the old world can be trusted
+                resetEpoch = ++changeEpoch;
+            }
         }
     }
 
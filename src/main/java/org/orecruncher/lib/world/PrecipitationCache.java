@@ -0,0 +1,201 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.world;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.orecruncher.dsurround.DynamicSurroundings;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.TickCounter;
+import org.orecruncher.lib.WorldUtils;
+import org.orecruncher.lib.events.BlockUpdateEvent;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Caches the precipitation of the block columns around the player.  For each column the height at which precipitation
+ * stops and the type of precipitation that falls there are held so that a precipitation check does not need a biome,
+ * temperature, and heightmap lookup.  Precipitation changes slowly so a column is good for a second, or until a block
+ * update is reported in it.  Columns are mapped into a fixed grid by their coordinates so the grid follows the player
+ * without needing to be moved.
+ * <p>
+ * Columns are only filled on the client thread since doing so reads the world.  Other threads read the grid through
+ * getCachedPrecipitationAt(), which never touches the world; a column they need that is missing or out of date is
+ * requested and filled on the next client tick.
+ */
+@Mod.EventBusSubscriber(modid = DynamicSurroundings.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class PrecipitationCache {
+
+    // Width of the grid in columns.  Must be a power of 2.
+    private static final int SIZE = 128;
+    private static final int MASK = SIZE - 1;
+    // Number of ticks a column is considered current
+    private static final int MAX_AGE = 20;
+
+    private static final Column[] columns = new Column[SIZE * SIZE];
+    // Columns that other threads found missing or out of date, packed as block positions
+    private static final LongOpenHashSet requests = new LongOpenHashSet();
+    private static final LongArrayList filling = new LongArrayList();
+    private static volatile World lastWorld;
+
+    private PrecipitationCache() {
+
+    }
+
+    /**
+     * Gets the precipitation currently falling at the specified location.  Same result as
+     * WorldUtils.getCurrentPrecipitationAt() except that the type of precipitation is based on the temperature where
+     * precipitation stops in the column.
+     */
+    @Nonnull
+    public static Biome.RainType getPrecipitationAt(@Nonnull final IWorldReader world, @Nonnull final BlockPos pos) {
+        return getPrecipitationAt(world, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Gets the precipitation currently falling at the specified location.  Must only be called from the client thread.
+     */
+    @Nonnull
+    public static Biome.RainType getPrecipitationAt(@Nonnull final IWorldReader world, final int x, final int y, final int z) {
+        if (!(world instanceof World) || !WorldUtils.isRaining((World) world))
+            return Biome.RainType.NONE;
+
+        final Column column = getColumn((World) world, x, z);
+        return y < column.height ? Biome.RainType.NONE : column.type;
+    }
+
+    /**
+     * Gets the type of precipitation that would fall at the specified location if it is precipitating, using only the
+     * columns already in the grid.  Can be called from any thread.  The caller is responsible for checking whether it
+     * is precipitating.  A column that has not been filled yet reads as no precipitation until the next client tick.
+     */
+    @Nonnull
+    public static Biome.RainType getCachedPrecipitationAt(final int x, final int y, final int z) {
+        final Column column = columns[(x & MASK) * SIZE + (z & MASK)];
+        final boolean present = column != null && column.x == x && column.z == z;
+        if (!present || TickCounter.getTickCount() - column.tick >= MAX_AGE) {
+            synchronized (requests) {
+                requests.add(BlockPos.pack(x, 0, z));
+            }
+        }
+        // A column that is a little out of date is better than none
+        if (!present)
+            return Biome.RainType.NONE;
+        return y < column.height ? Biome.RainType.NONE : column.type;
+    }
+
+    @Nonnull
+    private static Column getColumn(@Nonnull final World world, final int x, final int z) {
+        if (world != lastWorld) {
+            clear();
+            lastWorld = world;
+        }
+
+        final long tick = TickCounter.getTickCount();
+        final int idx = (x & MASK) * SIZE + (z & MASK);
+        Column column = columns[idx];
+        if (column == null || column.x != x || column.z != z || tick - column.tick >= MAX_AGE) {
+            column = new Column(world, x, z, tick);
+            columns[idx] = column;
+        }
+        return column;
+    }
+
+    private static void clear() {
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = null;
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(@Nonnull final TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END)
+            return;
+
+        // Take the requests so other threads are not held up while the columns are filled
+        synchronized (requests) {
+            if (requests.isEmpty())
+                return;
+            filling.addAll(requests);
+            requests.clear();
+        }
+
+        final World world = GameUtils.getWorld();
+        if (world != null) {
+            for (int i = 0; i < filling.size(); i++) {
+                final long pos = filling.getLong(i);
+                getColumn(world, BlockPos.unpackX(pos), BlockPos.unpackZ(pos));
+            }
+        }
+        filling.clear();
+    }
+
+    @SubscribeEvent
+    public static void onBlockUpdate(@Nonnull final BlockUpdateEvent event) {
+        // A block placed or removed can change where precipitation stops
+        for (final BlockPos pos : event.getPositions()) {
+            final int idx = (pos.getX() & MASK) * SIZE + (pos.getZ() & MASK);
+            final Column column = columns[idx];
+            if (column != null && column.x == pos.getX() && column.z == pos.getZ())
+                columns[idx] = null;
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOW)
+    public static void onWorldUnload(@Nonnull final WorldEvent.Unload event) {
+        if (event.getWorld().isRemote()) {
+            clear();
+            lastWorld = null;
+        }
+    }
+
+    private static final class Column {
+        final int x;
+        final int z;
+        final long tick;
+        // Lowest Y at which precipitation falls
+        final int height;
+        @Nonnull
+        final Biome.RainType type;
+
+        Column(@Nonnull final World world, final int x, final int z, final long tick) {
+            this.x = x;
+            this.z = z;
+            this.tick = tick;
+            this.height = world.getHeight(Heightmap.Type.MOTION_BLOCKING, x, z);
+
+            final BlockPos pos = new BlockPos(x, this.height, z);
+            final Biome biome = world.getBiome(pos);
+            if (biome.getPrecipitation() == Biome.RainType.NONE)
+                this.type = Biome.RainType.NONE;
+            else
+                this.type = WorldUtils.isSnowTemperature(WorldUtils.getTemperatureAt(world, pos)) ? Biome.RainType.SNOW : Biome.RainType.RAIN;
+        }
+    }
+}
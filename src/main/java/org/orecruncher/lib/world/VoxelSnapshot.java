@@ -0,0 +1,185 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.world;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Immutable copy of the chunk sections surrounding a point in the world.  Block states are stored as global state
+ * ids in palette compressed sections so that lookups are cheap and can be safely made from threads other than the
+ * client thread.  Positions outside of the captured volume are reported as air; tracing clips its rays to the
+ * captured volume so that the live world is never touched off the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class VoxelSnapshot implements IBlockReader {
+
+    public static final int AIR_ID = Block.getStateId(Blocks.AIR.getDefaultState());
+    public static final VoxelSnapshot EMPTY = new VoxelSnapshot(0, 0, 0, 0, 0, 0, new Section[0]);
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final Section[] sections;
+
+    // Block bounds of the captured volume, max exclusive, outside of which every lookup is air
+    private final int boundMinX;
+    private final int boundMinY;
+    private final int boundMinZ;
+    private final int boundMaxX;
+    private final int boundMaxY;
+    private final int boundMaxZ;
+
+    VoxelSnapshot(final int minX, final int minY, final int minZ, final int sizeX, final int sizeY, final int sizeZ, @Nonnull final Section[] sections) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.sections = sections;
+        this.boundMinX = minX << 4;
+        this.boundMinY = minY << 4;
+        this.boundMinZ = minZ << 4;
+        this.boundMaxX = (minX + sizeX) << 4;
+        this.boundMaxY = (minY + sizeY) << 4;
+        this.boundMaxZ = (minZ + sizeZ) << 4;
+    }
+
+    /**
+     * Determines how much of a segment can run into blocks.  Past the returned point the segment is outside of the
+     * snapshot, so everything it would cross reads as air and need not be walked.
+     *
+     * @return Fraction of the segment, from 0 to 1, at which it leaves the captured volume for good
+     */
+    public double clip(final double sx, final double sy, final double sz, final double dx, final double dy, final double dz) {
+        double enter = 0D;
+        double exit = 1D;
+        if (dx != 0) {
+            final double t1 = (this.boundMinX - sx) / dx;
+            final double t2 = (this.boundMaxX - sx) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        } else if (sx < this.boundMinX || sx >= this.boundMaxX) {
+            return 0D;
+        }
+        if (dy != 0) {
+            final double t1 = (this.boundMinY - sy) / dy;
+            final double t2 = (this.boundMaxY - sy) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        } else if (sy < this.boundMinY || sy >= this.boundMaxY) {
+            return 0D;
+        }
+        if (dz != 0) {
+            final double t1 = (this.boundMinZ - sz) / dz;
+            final double t2 = (this.boundMaxZ - sz) / dz;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        } else if (sz < this.boundMinZ || sz >= this.boundMaxZ) {
+            return 0D;
+        }
+        return enter > exit ? 0D : exit;
+    }
+
+    /**
+     * Gets the global block state id at the specified block coordinates.
+     *
+     * @return The state id of the block.  Locations outside the snapshot are air.
+     */
+    public int getStateId(final int x, final int y, final int z) {
+        final int sx = (x >> 4) - this.minX;
+        final int sy = (y >> 4) - this.minY;
+        final int sz = (z >> 4) - this.minZ;
+        if (sx < 0 || sy < 0 || sz < 0 || sx >= this.sizeX || sy >= this.sizeY || sz >= this.sizeZ)
+            return AIR_ID;
+        return this.sections[(sy * this.sizeZ + sz) * this.sizeX + sx].get(x & 15, y & 15, z & 15);
+    }
+
+    boolean isOrigin(final int x, final int y, final int z) {
+        return this.minX == x && this.minY == y && this.minZ == z;
+    }
+
+    @Nonnull
+    public BlockState getBlockState(final int x, final int y, final int z) {
+        return Block.getStateById(getStateId(x, y, z));
+    }
+
+    @Override
+    @Nonnull
+    public BlockState getBlockState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    @Nonnull
+    public FluidState getFluidState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    @Nullable
+    public TileEntity getTileEntity(@Nonnull final BlockPos pos) {
+        // Tile entities are not captured
+        return null;
+    }
+
+    /**
+     * Read only copy of a single 16x16x16 chunk section.  A section made up of a single state does not carry index
+     * data.  Sections with 256 or fewer distinct states use byte indices into the palette, and the rest use shorts.
+     */
+    static final class Section {
+
+        static final Section AIR = new Section(new int[]{AIR_ID}, null, null);
+
+        private final int[] palette;
+        @Nullable
+        private final byte[] smallIndex;
+        @Nullable
+        private final short[] largeIndex;
+
+        Section(@Nonnull final int[] palette, @Nullable final byte[] smallIndex, @Nullable final short[] largeIndex) {
+            this.palette = palette;
+            this.smallIndex = smallIndex;
+            this.largeIndex = largeIndex;
+        }
+
+        int get(final int x, final int y, final int z) {
+            final int idx = (y << 8) | (z << 4) | x;
+            if (this.smallIndex != null)
+                return this.palette[this.smallIndex[idx] & 0xFF];
+            if (this.largeIndex != null)
+                return this.palette[this.largeIndex[idx]];
+            return this.palette[0];
+        }
+    }
+}
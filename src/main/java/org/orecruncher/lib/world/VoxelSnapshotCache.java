@@ -0,0 +1,224 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.world;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.SectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.orecruncher.dsurround.DynamicSurroundings;
+import org.orecruncher.lib.TickCounter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Maintains copies of the chunk sections around the player and hands out immutable VoxelSnapshots of them.  Section
+ * copies are reused between captures until the underlying section is replaced, its chunk is reloaded, or a block
+ * within it changes.  Must only be used from the client thread.
+ */
+@Mod.EventBusSubscriber(modid = DynamicSurroundings.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class VoxelSnapshotCache {
+
+    // Horizontal and vertical radius, in sections, of the volume captured around the center point
+    private static final int HORIZONTAL_RADIUS = 3;
+    private static final int VERTICAL_RADIUS = 2;
+    private static final int SIZE_XZ = HORIZONTAL_RADIUS * 2 + 1;
+    private static final int SIZE_Y = VERTICAL_RADIUS * 2 + 1;
+
+    private static final Long2ObjectOpenHashMap<Entry> cache = new Long2ObjectOpenHashMap<>();
+    private static final LongOpenHashSet dirty = new LongOpenHashSet();
+
+    // Scratch space used when copying a section
+    private static final Int2IntOpenHashMap paletteLookup = new Int2IntOpenHashMap();
+    private static final int[] paletteScratch = new int[16 * 16 * 16];
+    private static final short[] indexScratch = new short[16 * 16 * 16];
+
+    private static World lastWorld;
+    private static long lastTick = -1;
+    private static VoxelSnapshot lastSnapshot = VoxelSnapshot.EMPTY;
+
+    static {
+        paletteLookup.defaultReturnValue(-1);
+    }
+
+    private VoxelSnapshotCache() {
+
+    }
+
+    /**
+     * Obtains a snapshot of the world centered on the specified position.  A snapshot is only generated once per
+     * client tick; subsequent calls within the same tick return the prior result.
+     *
+     * @param world  The world to capture
+     * @param center Center point of the capture
+     * @return Snapshot of the sections around the center point
+     */
+    @Nonnull
+    public static VoxelSnapshot capture(@Nonnull final World world, @Nonnull final BlockPos center) {
+        final long tick = TickCounter.getTickCount();
+        if (tick == lastTick && world == lastWorld)
+            return lastSnapshot;
+
+        if (world != lastWorld) {
+            cache.clear();
+            dirty.clear();
+            lastWorld = world;
+            lastSnapshot = VoxelSnapshot.EMPTY;
+        }
+
+        lastTick = tick;
+
+        final int minX = (center.getX() >> 4) - HORIZONTAL_RADIUS;
+        final int minY = Math.max((center.getY() >> 4) - VERTICAL_RADIUS, 0);
+        final int minZ = (center.getZ() >> 4) - HORIZONTAL_RADIUS;
+
+        final VoxelSnapshot.Section[] sections = new VoxelSnapshot.Section[SIZE_XZ * SIZE_Y * SIZE_XZ];
+        boolean changed = false;
+
+        for (int cx = 0; cx < SIZE_XZ; cx++)
+            for (int cz = 0; cz < SIZE_XZ; cz++) {
+                final Chunk chunk = world.getChunk(minX + cx, minZ + cz);
+                final ChunkSection[] chunkSections = chunk.getSections();
+                for (int cy = 0; cy < SIZE_Y; cy++) {
+                    final int sy = minY + cy;
+                    final ChunkSection source = sy < chunkSections.length ? chunkSections[sy] : null;
+                    final long key = SectionPos.asLong(minX + cx, sy, minZ + cz);
+                    Entry entry = cache.get(key);
+                    if (entry == null || entry.source != source || dirty.contains(key)) {
+                        entry = new Entry(source, copy(source));
+                        cache.put(key, entry);
+                        changed = true;
+                    }
+                    sections[(cy * SIZE_XZ + cz) * SIZE_XZ + cx] = entry.data;
+                }
+            }
+
+        dirty.clear();
+
+        // Nothing changed and we are looking at the same volume so reuse the existing snapshot
+        if (!changed && lastSnapshot != VoxelSnapshot.EMPTY && lastSnapshot.isOrigin(minX, minY, minZ))
+            return lastSnapshot;
+
+        // Toss sections that have fallen out of the capture volume
+        cache.long2ObjectEntrySet().removeIf(e -> {
+            final long key = e.getLongKey();
+            final int x = SectionPos.extractX(key) - minX;
+            final int y = SectionPos.extractY(key) - minY;
+            final int z = SectionPos.extractZ(key) - minZ;
+            return x < 0 || y < 0 || z < 0 || x >= SIZE_XZ || y >= SIZE_Y || z >= SIZE_XZ;
+        });
+
+        return lastSnapshot = new VoxelSnapshot(minX, minY, minZ, SIZE_XZ, SIZE_Y, SIZE_XZ, sections);
+    }
+
+    @Nonnull
+    private static VoxelSnapshot.Section copy(@Nullable final ChunkSection section) {
+        if (ChunkSection.isEmpty(section))
+            return VoxelSnapshot.Section.AIR;
+
+        assert section != null;
+
+        paletteLookup.clear();
+        int paletteSize = 0;
+        for (int y = 0; y < 16; y++)
+            for (int z = 0; z < 16; z++)
+                for (int x = 0; x < 16; x++) {
+                    final int id = Block.getStateId(section.getBlockState(x, y, z));
+                    int idx = paletteLookup.get(id);
+                    if (idx < 0) {
+                        idx = paletteSize++;
+                        paletteLookup.put(id, idx);
+                        paletteScratch[idx] = id;
+                    }
+                    indexScratch[(y << 8) | (z << 4) | x] = (short) idx;
+                }
+
+        final int[] palette = new int[paletteSize];
+        System.arraycopy(paletteScratch, 0, palette, 0, paletteSize);
+
+        if (paletteSize == 1)
+            return new VoxelSnapshot.Section(palette, null, null);
+
+        if (paletteSize <= 256) {
+            final byte[] index = new byte[indexScratch.length];
+            for (int i = 0; i < index.length; i++)
+                index[i] = (byte) indexScratch[i];
+            return new VoxelSnapshot.Section(palette, index, null);
+        }
+
+        return new VoxelSnapshot.Section(palette, null, indexScratch.clone());
+    }
+
+    /**
+     * Marks the section containing the block as needing to be copied again.  Called as the client world changes the
+     * block rather than when the delayed BlockUpdateEvent is posted, so the next capture picks up the change.
+     */
+    static void onBlockChanged(@Nonnull final BlockPos pos) {
+        dirty.add(SectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+    }
+
+    /**
+     * Marks every section of a chunk as needing to be copied again.  A chunk data packet can refill the existing
+     * sections of a chunk in place, so the section identity check alone does not catch it.
+     */
+    @SubscribeEvent(priority = EventPriority.LOW)
+    public static void onChunkLoad(@Nonnull final ChunkEvent.Load event) {
+        if (event.getWorld() != null && event.getWorld().isRemote()) {
+            final ChunkPos pos = event.getChunk().getPos();
+            for (int sy = 0; sy < 16; sy++)
+                dirty.add(SectionPos.asLong(pos.x, sy, pos.z));
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOW)
+    public static void onWorldUnload(@Nonnull final WorldEvent.Unload event) {
+        if (event.getWorld().isRemote()) {
+            cache.clear();
+            dirty.clear();
+            lastWorld = null;
+            lastTick = -1;
+            lastSnapshot = VoxelSnapshot.EMPTY;
+        }
+    }
+
+    private static final class Entry {
+        @Nullable
+        final ChunkSection source;
+        @Nonnull
+        final VoxelSnapshot.Section data;
+
+        Entry(@Nullable final ChunkSection source, @Nonnull final VoxelSnapshot.Section data) {
+            this.source = source;
+            this.data = data;
+        }
+    }
+}
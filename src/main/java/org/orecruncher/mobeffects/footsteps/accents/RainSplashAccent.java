@@ -25,7 +25,7 @@ import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
-import org.orecruncher.lib.WorldUtils;
+import org.orecruncher.lib.world.PrecipitationCache;
 import org.orecruncher.lib.collections.ObjectArray;
 import org.orecruncher.mobeffects.config.Config;
 import org.orecruncher.mobeffects.library.FootstepLibrary;
@@ -51,7 +51,7 @@ class RainSplashAccent implements IFootstepAccentProvider {
         final World world = entity.getEntityWorld();
         if (world.isRaining()) {
             // Get the precipitation type at the location
-            final Biome.RainType rainType = WorldUtils.getCurrentPrecipitationAt(world, blockPos.up());
+            final Biome.RainType rainType = PrecipitationCache.getPrecipitationAt(world, blockPos.getX(), blockPos.getY() + 1, blockPos.getZ());
             if (rainType == Biome.RainType.RAIN)
                 acoustics.add(FootstepLibrary.getRainSplashAcoustic());
         }
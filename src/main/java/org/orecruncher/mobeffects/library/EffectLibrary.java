@@ -21,7 +21,6 @@ package org.orecruncher.mobeffects.library;
 import com.google.gson.reflect.TypeToken;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import net.minecraft.client.audio.ISound;
 import net.minecraft.client.audio.LocatableSound;
@@ -49,12 +48,13 @@ import org.orecruncher.mobeffects.MobEffects;
 import org.orecruncher.mobeffects.library.config.EntityConfig;
 import org.orecruncher.sndctrl.api.acoustics.Library;
 import org.orecruncher.sndctrl.api.sound.SoundBuilder;
+import org.orecruncher.sndctrl.library.SoundLibrary;
+import org.orecruncher.sndctrl.library.SoundPolicy;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 
 @Mod.EventBusSubscriber(
         modid = MobEffects.MOD_ID,
@@ -71,9 +71,6 @@ public final class EffectLibrary {
 
     private static final Object2ObjectOpenHashMap<ResourceLocation, EntityEffectInfo> effectConfiguration = new Object2ObjectOpenHashMap<>();
     private static final Reference2ObjectOpenHashMap<Class<? extends Entity>, EntityEffectInfo> effects = new Reference2ObjectOpenHashMap<>();
-    private static final Set<ResourceLocation> blockedSounds = new ObjectOpenHashSet<>();
-
-    private static final Map<ResourceLocation, SoundEvent> soundReplace = new Object2ObjectOpenHashMap<>();
 
     private EffectLibrary() {
 
@@ -106,11 +103,12 @@ public final class EffectLibrary {
     public static void soundPlay(@Nonnull PlaySoundEvent e) {
         final ISound theSound = e.getSound();
         if (theSound != null) {
-            final ResourceLocation soundResource = theSound.getSoundLocation();
-            if (blockedSounds.contains(soundResource)) {
+            // Blocks and replacements are compiled into the sound's policy
+            final SoundPolicy policy = SoundLibrary.getPolicy(theSound);
+            if (policy.isBlocked()) {
                 e.setResultSound(null);
             } else {
-                final SoundEvent evt = soundReplace.get(soundResource);
+                final SoundEvent evt = policy.getReplacement();
                 if (evt != null) {
                     e.setResultSound(SoundBuilder.builder(evt).from((LocatableSound) theSound).build());
                 }
@@ -155,7 +153,7 @@ public final class EffectLibrary {
 
                     for (final String r : kvp.getValue().blockedSounds) {
                         try {
-                            blockedSounds.add(new ResourceLocation(r));
+                            SoundLibrary.blockSound(new ResourceLocation(r));
                         } catch (@Nonnull final Throwable t) {
                             MobEffects.LOGGER.error(t, "Not a valid sound resource location: %s", r);
                         }
@@ -166,9 +164,11 @@ public final class EffectLibrary {
             // Replace our bow loose sounds
             final ResourceLocation bowLoose = new ResourceLocation(MobEffects.MOD_ID, "bow.loose");
             Library.getSound(bowLoose).ifPresent(se -> {
-                soundReplace.put(new ResourceLocation("minecraft:entity.arrow.shoot"), se);
-                soundReplace.put(new ResourceLocation("minecraft:entity.skeleton.shoot"), se);
+                SoundLibrary.replaceSound(new ResourceLocation("minecraft:entity.arrow.shoot"), se);
+                SoundLibrary.replaceSound(new ResourceLocation("minecraft:entity.skeleton.shoot"), se);
             });
+
+            SoundLibrary.compilePolicies();
         }
 
         @Override
@@ -186,8 +186,8 @@ public final class EffectLibrary {
         public void stop() {
             effectConfiguration.clear();
             effects.clear();
-            blockedSounds.clear();
-            soundReplace.clear();
+            SoundLibrary.clearSoundOverrides();
+            SoundLibrary.compilePolicies();
         }
     }
 }
@@ -19,10 +19,14 @@
 package org.orecruncher.sndctrl.audio;
 
 import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
-import net.minecraft.client.Minecraft;
 import net.minecraft.client.audio.*;
 import net.minecraft.client.audio.ChannelManager.Entry;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraftforge.api.distmarker.Dist;
@@ -43,15 +47,17 @@ import org.orecruncher.sndctrl.api.sound.ISoundInstance;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * Handles the life cycle of sounds submitted to the Minecraft sound engine.
+ * Handles the life cycle of sounds submitted to the Minecraft sound engine.  State changes are driven by what the
+ * sound engine reports through the mixin hooks: a sound starting to play, and the channel it was given being released.
+ * Released channels are queued by the hook and only those are examined each tick, along with any sounds waiting in
+ * Minecraft's delay queue.
  */
 @OnlyIn(Dist.CLIENT)
 public final class AudioEngine {
@@ -60,6 +66,16 @@ public final class AudioEngine {
     private static final String FMT_DBG_TRACKED = TextFormatting.AQUA + "AudioEngine: %d";
     private static final String FMT_DBG_SOUND = TextFormatting.GOLD + "%s: %d";
     private static final ReferenceOpenHashSet<ISoundInstance> playingSounds = new ReferenceOpenHashSet<>(256);
+    // Channels handed out by the sound engine, and the number playing for each sound resource
+    private static final Reference2ObjectOpenHashMap<Entry, Channel> channels = new Reference2ObjectOpenHashMap<>(256);
+    // Channels released by the sound engine thread that have not been picked up by the client thread
+    private static final Queue<Entry> released = new ConcurrentLinkedQueue<>();
+    // Released channels whose sound Minecraft has not yet dropped from its playing list
+    private static final ObjectArrayList<Channel> releasing = new ObjectArrayList<>();
+    private static final Object2IntOpenHashMap<ResourceLocation> channelCounts = new Object2IntOpenHashMap<>(64);
+    // Sounds sitting in Minecraft's delay queue
+    private static final ObjectArrayList<ISoundInstance> delayed = new ObjectArrayList<>();
+    private static boolean countsChanged;
 
     @Nonnull
     private static List<String> diagnostics = ImmutableList.of();
@@ -85,6 +101,11 @@ public final class AudioEngine {
                 // Delayed sounds are held in a separate queue in the engine thus there is nothing to stop.
                 sound.setState(SoundState.DONE);
                 SoundUtils.getDelayedSounds().remove(sound);
+                playingSounds.remove(sound);
+            } else if (state == SoundState.VIRTUAL) {
+                // Virtual voices are not in the engine.  The voice manager will drop it.
+                sound.setState(SoundState.DONE);
+                playingSounds.remove(sound);
             } else {
                 // Tell Minecraft to stop the sound.  Termination will be detected in the client tick handler.
                 sound.setState(SoundState.STOPPING);
@@ -100,6 +121,7 @@ public final class AudioEngine {
         LOGGER.debug("Stopping all sounds");
         GameUtils.getSoundHander().stop();
         playingSounds.forEach(s -> s.setState(SoundState.DONE));
+        VoiceManager.clear();
         processTerminalSounds();
     }
 
@@ -132,6 +154,7 @@ public final class AudioEngine {
             GameUtils.getSoundHander().playDelayed(sound, sound.getPlayDelay());
             sound.setState(SoundState.DELAYED);
             playingSounds.add(sound);
+            delayed.add(sound);
         } else if (SoundUtils.hasRoom()) {
             // Play the sound now
             try {
@@ -147,6 +170,7 @@ public final class AudioEngine {
                         // It played!  Save the reference to the sound play for tracking.
                         playingSounds.add(sound);
                         sound.setState(SoundState.PLAYING);
+                        VoiceManager.onPlaying(sound);
                     }
                 } else {
                     /*
@@ -162,8 +186,18 @@ public final class AudioEngine {
             } finally {
                 playedSound = null;
             }
+        } else if (VoiceManager.makeRoom(sound) || VoiceManager.virtualize(sound)) {
+            // No room.  Either a less important sound is being stopped to make room, or this one is not important
+            // enough to take a source from another sound.  Wait for one to free up.
+            playingSounds.add(sound);
+        } else {
+            sound.setState(SoundState.BLOCKED);
         }
 
+        // A promoted virtual voice is already tracked
+        if (sound.getState().isTerminal())
+            playingSounds.remove(sound);
+
         LOGGER.debug(Config.Flags.SOUND_PLAY, () -> {
             final double distance;
             if (GameUtils.getPlayer() != null) {
@@ -176,9 +210,16 @@ public final class AudioEngine {
         });
     }
 
+    private static void markReleased(@Nonnull final Channel channel) {
+        if (!channel.released) {
+            channel.released = true;
+            releasing.add(channel);
+        }
+    }
+
     /**
-     * Run down our active sound list checking that they are still active. If they
-     * aren't update the state accordingly.
+     * Resolves the state of sounds whose channel has been released or that are waiting in Minecraft's delay queue,
+     * and gives virtual voices a chance at any sources that freed up.
      *
      * @param event Event that was raised
      */
@@ -190,74 +231,97 @@ public final class AudioEngine {
         final Map<ISound, Integer> delayedSounds = SoundUtils.getDelayedSounds();
         final Map<ISound, Entry> playing = SoundUtils.getPlayingSounds();
 
+        Entry entry;
+        while ((entry = released.poll()) != null) {
+            final Channel channel = channels.get(entry);
+            if (channel != null)
+                markReleased(channel);
+        }
+
         /*
-         Process our queued sounds to make sure the state is appropriate. A sound can move between the playing sound
-         list and the delayed sound list based on its attributes so we need to make sure we detect that.
+         Minecraft releases the channel on the sound engine thread when the sound finishes or is stopped, and drops the
+         sound from its playing list on a later tick.  A sound is only looked up once its channel is released, and
+         once dropped it is either done or, if it repeats with a delay, back in the delay queue.
 
          We cannot rely on isSoundPlaying(). It can return FALSE even though the sound is in the internal playing
          lists. We only want to transition if the sound is in the playing lists or not.
         */
-        for (final ISoundInstance sound : playingSounds) {
-            final SoundState currentState = sound.getState();
-            final boolean isPlaying = playing.containsKey(sound);
-
-            switch (currentState) {
-                case DELAYED:
-                    // The sound play is delayed. Check to see if Minecraft transitioned it's state.
-                    if (!delayedSounds.containsKey(sound)) {
-                        sound.setState(isPlaying ? SoundState.PLAYING : SoundState.DONE);
-                    }
-                    break;
-                case STOPPING:
-                    if (!isPlaying) {
-                        sound.setState(SoundState.DONE);
-                    }
-                    break;
-                case PLAYING:
-                    // The sound is playing. Check to see if the Minecraft sound engine transitioned to a
-                    // different state.
-                    if (!isPlaying) {
-                        sound.setState(delayedSounds.containsKey(sound) ? SoundState.DELAYED : SoundState.DONE);
-                    }
-                    break;
-                default:
-                    // This should not happen, but to be safe set to a terminal state
-                    LOGGER.debug(Config.Flags.SOUND_PLAY, () -> String.format("Incorrect sound state [%s]", sound));
-                    sound.setState(SoundState.ERROR);
-                    break;
+        for (int i = releasing.size() - 1; i >= 0; i--) {
+            final Channel channel = releasing.get(i);
+            if (playing.get(channel.sound) == channel.entry)
+                continue;
+
+            releasing.set(i, releasing.get(releasing.size() - 1));
+            releasing.remove(releasing.size() - 1);
+            channels.remove(channel.entry);
+            channelCounts.addTo(channel.location, -1);
+            if (channelCounts.getInt(channel.location) <= 0)
+                channelCounts.removeInt(channel.location);
+            countsChanged = true;
+
+            if (channel.sound instanceof ISoundInstance) {
+                final ISoundInstance sound = (ISoundInstance) channel.sound;
+                final SoundState state = sound.getState();
+                if (state == SoundState.PLAYING && delayedSounds.containsKey(sound)) {
+                    sound.setState(SoundState.DELAYED);
+                    delayed.add(sound);
+                } else if (state == SoundState.PLAYING || state == SoundState.STOPPING) {
+                    sound.setState(SoundState.DONE);
+                    playingSounds.remove(sound);
+                }
             }
         }
 
-        // Process any sounds in a terminal state.
-        processTerminalSounds();
-
-        // Generate diagnostics if needed.
-        if (processDiagnostics() && Minecraft.getInstance().gameSettings.showDebugInfo) {
-            diagnostics = new ArrayList<>(16);
-            diagnostics.add(String.format(FMT_DBG_SOUND_SYSTEM, SoundUtils.getTotalPlaying(), SoundUtils.getMaxSounds()));
-            diagnostics.add(String.format(FMT_DBG_TRACKED, playingSounds.size()));
-
-            playing.keySet().stream()
-                    .map(s -> s.getSound().getSoundLocation())
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                    .entrySet().stream()
-                    .map(e -> String.format(FMT_DBG_SOUND, e.getKey().toString(), e.getValue()))
-                    .sorted()
-                    .forEach(diagnostics::add);
-        } else if (diagnostics.size() > 0) {
-            diagnostics = ImmutableList.of();
+        // Delayed sounds are normally picked up when they start to play.  Catch the ones Minecraft dropped.
+        for (int i = delayed.size() - 1; i >= 0; i--) {
+            final ISoundInstance sound = delayed.get(i);
+            if (sound.getState() == SoundState.DELAYED) {
+                if (delayedSounds.containsKey(sound))
+                    continue;
+                if (playing.containsKey(sound)) {
+                    sound.setState(SoundState.PLAYING);
+                } else {
+                    sound.setState(SoundState.DONE);
+                    playingSounds.remove(sound);
+                }
+            }
+            delayed.remove(i);
         }
+
+        // Promote virtual voices if sources have freed up
+        if (VoiceManager.tick(AudioEngine::playSound0))
+            processTerminalSounds();
     }
 
     private static void processTerminalSounds() {
         playingSounds.removeIf(s -> s.getState().isTerminal());
     }
 
+    /**
+     * Diagnostic events are only raised while the debug overlay is showing.  The per sound lines are only rebuilt
+     * when the counts have changed.
+     */
     @SubscribeEvent(priority = EventPriority.LOW)
     public static void onGatherText(@Nonnull final DiagnosticEvent event) {
-        if (processDiagnostics() && !diagnostics.isEmpty()) {
-            event.getLeft().addAll(diagnostics);
+        if (!processDiagnostics()) {
+            if (!diagnostics.isEmpty())
+                diagnostics = ImmutableList.of();
+            return;
+        }
+
+        if (countsChanged || diagnostics.isEmpty()) {
+            countsChanged = false;
+            final ObjectArrayList<String> lines = new ObjectArrayList<>(channelCounts.size());
+            for (final Object2IntMap.Entry<ResourceLocation> e : channelCounts.object2IntEntrySet())
+                lines.add(String.format(FMT_DBG_SOUND, e.getKey().toString(), e.getIntValue()));
+            lines.sort(null);
+            diagnostics = lines;
         }
+
+        event.getLeft().add(String.format(FMT_DBG_SOUND_SYSTEM, SoundUtils.getTotalPlaying(), SoundUtils.getMaxSounds()));
+        event.getLeft().add(String.format(FMT_DBG_TRACKED, playingSounds.size()));
+        event.getLeft().add(TextFormatting.AQUA + VoiceManager.getDiagnosticString());
+        event.getLeft().addAll(diagnostics);
     }
 
     private static boolean processDiagnostics() {
@@ -273,11 +337,51 @@ public final class AudioEngine {
      * what actually got played and to perform logging.  The standard sound listener will not receive callbacks if
      * the sound is too far away (based on the sound instance distance value).
      * @param sound Sound that is being queued into the audio engine
+     * @param entry Channel the sound engine assigned to the sound
      */
-    public static void onPlaySound(@Nonnull final ISound sound) {
+    public static void onPlaySound(@Nonnull final ISound sound, @Nonnull final Entry entry) {
         playedSound = sound;
-        if (!(playedSound instanceof ISoundInstance)) {
+
+        final Channel channel = new Channel(sound, entry);
+        channels.put(entry, channel);
+        channelCounts.addTo(channel.location, 1);
+        countsChanged = true;
+        // The sound engine thread may have already finished with it
+        if (entry.isReleased())
+            markReleased(channel);
+
+        if (sound instanceof ISoundInstance) {
+            // A delayed sound, or the repeat of one, coming out of Minecraft's delay queue
+            final ISoundInstance instance = (ISoundInstance) sound;
+            if (instance.getState() == SoundState.DELAYED && playingSounds.contains(instance))
+                instance.setState(SoundState.PLAYING);
+        } else {
             LOGGER.debug(Config.Flags.BASIC_SOUND_PLAY, () -> String.format("PLAYING: [%s]", SoundUtils.debugString(playedSound)));
         }
     }
+
+    /**
+     * Hook that is called on the sound engine thread when a channel is released.  The channel is looked at on the
+     * next client tick.
+     * @param entry Channel that was released
+     */
+    public static void onChannelReleased(@Nonnull final Entry entry) {
+        released.add(entry);
+    }
+
+    /**
+     * A sound play handed a channel by the sound engine.
+     */
+    private static final class Channel {
+        final ISound sound;
+        final ResourceLocation location;
+        final Entry entry;
+        boolean released;
+
+        Channel(@Nonnull final ISound sound, @Nonnull final Entry entry) {
+            this.sound = sound;
+            this.location = sound.getSoundLocation();
+            this.entry = entry;
+        }
+    }
 }
@@ -28,10 +28,18 @@ import javax.annotation.Nullable;
 import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 
 @OnlyIn(Dist.CLIENT)
 public final class Conversion {
 
+    // Number of samples processed per bulk transfer
+    private static final int CHUNK_SAMPLES = 4096;
+
+    private Conversion() {
+
+    }
+
     /**
      * Handles the conversion of the incoming IAudioStream into mono format as needed.
      *
@@ -43,11 +51,17 @@ public final class Conversion {
         if (format.getChannels() == 1)
             return inputStream;
 
+        // If the sample size is not 8 or 16 bits just return the original
+        final int bits = format.getSampleSizeInBits();
+        if (bits != 8 && bits != 16)
+            return inputStream;
+
         return new MonoStream(inputStream);
     }
 
     /**
-     * Converts the AudioStreamBuffer into mono if needed.
+     * Converts the AudioStreamBuffer into mono if needed.  The sound engine caches buffers by sound resource and
+     * hands the same buffer back on later plays, so once converted the buffer stays mono and is not converted again.
      *
      * @param buffer Audio stream buffer to convert
      * @return Converted audio buffer
@@ -65,61 +79,119 @@ public final class Conversion {
         if (bits != 8 && bits != 16)
             return buffer;
 
-        // Do the conversion.  Essentially it averages the values in the source buffer based on the sample size.
-        boolean bigendian = format.isBigEndian();
-        final AudioFormat monoformat = new AudioFormat(
+        final ByteBuffer source = buffer.inputBuffer;
+        if (source == null) {
+            return buffer;
+        }
+
+        final int monoLength = downmix(source, bits, null, null);
+
+        // Patch up the old object
+        buffer.audioFormat = toMono(format);
+        buffer.inputBuffer.rewind();
+        buffer.inputBuffer.limit(monoLength);
+        return buffer;
+    }
+
+    @Nonnull
+    private static AudioFormat toMono(@Nonnull final AudioFormat format) {
+        return new AudioFormat(
                 format.getEncoding(),
                 format.getSampleRate(),
-                bits,
+                format.getSampleSizeInBits(),
                 1, // Mono - single channel
                 format.getFrameSize() >> 1,
                 format.getFrameRate(),
-                bigendian);
+                format.isBigEndian());
+    }
 
-        final ByteBuffer source = buffer.inputBuffer;
-        if (source == null) {
-            return buffer;
+    /**
+     * Averages the channels of interleaved stereo data in place.  The data is moved through scratch arrays in bulk
+     * rather than a sample at a time.  Mono samples are written behind the read position, so the source data is never
+     * overwritten before it is read.
+     *
+     * @param data         Stereo data from position 0 to the limit.  The byte order of the buffer is honored.
+     * @param bits         Sample size in bits, 8 or 16
+     * @param shortScratch Scratch space for 16 bit samples, or null to allocate
+     * @param byteScratch  Scratch space for 8 bit samples, or null to allocate
+     * @return Length in bytes of the mono data at the start of the buffer
+     */
+    private static int downmix(@Nonnull final ByteBuffer data, final int bits, @Nullable short[] shortScratch, @Nullable byte[] byteScratch) {
+        final int length = data.limit();
+
+        if (bits == 16) {
+            if (shortScratch == null)
+                shortScratch = new short[CHUNK_SAMPLES];
+            final ByteBuffer view = data.duplicate().order(data.order());
+            view.position(0);
+            final ShortBuffer in = view.asShortBuffer();
+            final ShortBuffer out = view.asShortBuffer();
+            // Only whole frames are converted
+            final int samples = (length >> 2) << 1;
+            in.limit(samples);
+            while (in.hasRemaining()) {
+                final int count = Math.min(in.remaining(), shortScratch.length);
+                in.get(shortScratch, 0, count);
+                for (int i = 0, j = 0; i < count; i += 2, j++)
+                    shortScratch[j] = (short) ((shortScratch[i] >> 1) + (shortScratch[i + 1] >> 1));
+                out.put(shortScratch, 0, count >> 1);
+            }
+            // Half as many 16 bit samples remain, which works out to the stereo sample count in bytes
+            return samples;
         }
 
-        final int sourceLength = source.limit();
-        final int skip = format.getFrameSize();
-        for (int i = 0; i < sourceLength; i += skip) {
-            final int targetIdx = i >> 1;
-            if (bits == 8) {
-                final int c1 = source.get(i) >> 1;
-                final int c2 = source.get(i + 1) >> 1;
-                final int v = c1 + c2;
-                source.put(targetIdx, (byte) v);
-            } else {
-                final int c1 = source.getShort(i) >> 1;
-                final int c2 = source.getShort(i + 2) >> 1;
-                final int v = c1 + c2;
-                source.putShort(targetIdx, (short) v);
-            }
+        if (byteScratch == null)
+            byteScratch = new byte[CHUNK_SAMPLES];
+        final ByteBuffer in = data.duplicate();
+        final ByteBuffer out = data.duplicate();
+        in.position(0);
+        in.limit(length & ~1);
+        out.position(0);
+        while (in.hasRemaining()) {
+            final int count = Math.min(in.remaining(), byteScratch.length);
+            in.get(byteScratch, 0, count);
+            for (int i = 0, j = 0; i < count; i += 2, j++)
+                byteScratch[j] = (byte) ((byteScratch[i] >> 1) + (byteScratch[i + 1] >> 1));
+            out.put(byteScratch, 0, count >> 1);
         }
-        // Patch up the old object
-        buffer.audioFormat = monoformat;
-        buffer.inputBuffer.rewind();
-        buffer.inputBuffer.limit(sourceLength >> 1);
-        return buffer;
+        return length >> 1;
     }
 
+    /**
+     * Downmixes a streamed sound as it is read.
+     */
     private static class MonoStream implements IAudioStream {
 
         private final IAudioStream source;
+        private final AudioFormat format;
+        private final int bits;
+        private final short[] shortScratch;
+        private final byte[] byteScratch;
 
         public MonoStream(@Nonnull final IAudioStream source) {
             this.source = source;
+            final AudioFormat sourceFormat = source.getAudioFormat();
+            this.format = toMono(sourceFormat);
+            this.bits = sourceFormat.getSampleSizeInBits();
+            this.shortScratch = this.bits == 16 ? new short[CHUNK_SAMPLES] : null;
+            this.byteScratch = this.bits == 8 ? new byte[CHUNK_SAMPLES] : null;
         }
 
         @Override
         public AudioFormat getAudioFormat() {
-            return this.source.getAudioFormat();
+            return this.format;
         }
 
         @Override
         public ByteBuffer readOggSoundWithCapacity(int size) throws IOException {
-            return this.source.readOggSoundWithCapacity(size);
+            // The caller sizes requests off of the mono format so twice as much is needed from the source
+            final ByteBuffer data = this.source.readOggSoundWithCapacity(size * 2);
+            if (data == null)
+                return null;
+            final int monoLength = downmix(data, this.bits, this.shortScratch, this.byteScratch);
+            data.position(0);
+            data.limit(monoLength);
+            return data;
         }
 
         @Override
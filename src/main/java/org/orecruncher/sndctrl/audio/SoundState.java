@@ -46,6 +46,10 @@ public enum SoundState {
      * The sound is in the sound engine DELAYED queue waiting to play.
      */
     DELAYED(true, false),
+    /**
+     * The sound could not get a source in the sound engine and is waiting for one to free up.
+     */
+    VIRTUAL(true, false),
     /**
      * The sound is in the process of being stopped.
      */
@@ -0,0 +1,285 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import net.minecraft.client.audio.ISound;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.api.sound.Category;
+import org.orecruncher.sndctrl.api.sound.ISoundCategory;
+import org.orecruncher.sndctrl.api.sound.ISoundInstance;
+import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import java.util.function.Consumer;
+
+/**
+ * Decides which of the sound instances submitted through the AudioEngine get one of the limited sound sources when
+ * the sound engine is full.  Each voice is given a priority from its category, how audible it is to the listener
+ * (distance, volume, and occlusion), and how long it has been playing.  When there is no room a new sound can steal
+ * the source of the lowest priority voice that is playing.  Voices that lose out are held as virtual voices and are
+ * promoted back into the sound engine as sources free up.  Looping sounds are held until stopped; one shot sounds
+ * are only held briefly since there is little point starting them late.  Only called from the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class VoiceManager {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(VoiceManager.class);
+
+    // A new voice has to beat the weakest playing voice by this factor before it steals its source
+    private static final float STEAL_MARGIN = 1.25F;
+    // Number of ticks a one shot sound can wait as a virtual voice before it is dropped
+    private static final int MAX_VIRTUAL_AGE = 10;
+    // Ticks of play after which a voice's priority is halved
+    private static final float AGE_SCALE = 200F;
+    // Sounds that are barely audible are not worth holding as a virtual voice
+    private static final float MIN_AUDIBILITY = 0.01F;
+
+    private static final Reference2FloatOpenHashMap<ISoundCategory> CATEGORY_WEIGHT = new Reference2FloatOpenHashMap<>();
+
+    static {
+        CATEGORY_WEIGHT.defaultReturnValue(1F);
+        CATEGORY_WEIGHT.put(Category.HOSTILE, 1.5F);
+        CATEGORY_WEIGHT.put(Category.PLAYERS, 1.5F);
+        CATEGORY_WEIGHT.put(Category.WEATHER, 0.75F);
+        CATEGORY_WEIGHT.put(Category.AMBIENT, 0.5F);
+    }
+
+    // Tick at which each voice started playing
+    private static final Reference2LongOpenHashMap<ISoundInstance> started = new Reference2LongOpenHashMap<>(256);
+    // Voices waiting for a source, and the tick they started waiting
+    private static final ObjectArrayList<ISoundInstance> virtual = new ObjectArrayList<>();
+    private static final Reference2LongOpenHashMap<ISoundInstance> virtualSince = new Reference2LongOpenHashMap<>();
+    // Direct path gain of the sounds being processed by the sound FX processor
+    private static final Reference2FloatOpenHashMap<ISound> occlusion = new Reference2FloatOpenHashMap<>(256);
+
+    private static long tickCount;
+    private static int stolen;
+    private static int promoted;
+    private static int expired;
+
+    private VoiceManager() {
+    }
+
+    /**
+     * Records that the sound started playing in the sound engine.
+     */
+    static void onPlaying(@Nonnull final ISoundInstance sound) {
+        started.put(sound, tickCount);
+    }
+
+    /**
+     * Attempts to free a source for the sound by stopping the lowest priority voice that is playing.  The stopped
+     * voice becomes virtual if it is worth resuming later.  The sound engine only lets go of the source on a later
+     * tick, so the sound is held as a virtual voice and promoted once the source is released.  That way each steal
+     * frees exactly one source for one waiting sound.
+     *
+     * @param sound Sound that needs a source
+     * @return true if a source is being freed and the sound is waiting on it as a virtual voice, false otherwise
+     */
+    static boolean makeRoom(@Nonnull final ISoundInstance sound) {
+        if (!Config.CLIENT.sound.enableVoiceManagement.get())
+            return false;
+
+        final Vector3d listener = getListener();
+        gatherOcclusion();
+
+        final float wanted = priority(sound, listener, 0);
+        ISoundInstance victim = null;
+        float lowest = Float.MAX_VALUE;
+        for (final Reference2LongOpenHashMap.Entry<ISoundInstance> e : started.reference2LongEntrySet()) {
+            final ISoundInstance candidate = e.getKey();
+            if (candidate.getState() != SoundState.PLAYING || isProtected(candidate))
+                continue;
+            final float p = priority(candidate, listener, tickCount - e.getLongValue());
+            if (p < lowest) {
+                lowest = p;
+                victim = candidate;
+            }
+        }
+
+        if (victim == null || wanted <= lowest * STEAL_MARGIN)
+            return false;
+
+        final ISoundInstance v = victim;
+        LOGGER.debug(Config.Flags.SOUND_PLAY, () -> String.format("Voice [%s] stolen by [%s]", v, sound));
+        started.removeLong(victim);
+        GameUtils.getSoundHander().stop(victim);
+        // Looping sounds can pick up again later.  One shots would restart from the top so let them go.
+        if (!victim.canRepeat() || !virtualize(victim, listener))
+            victim.setState(SoundState.STOPPING);
+        stolen++;
+        hold(sound);
+        return true;
+    }
+
+    /**
+     * Holds the sound as a virtual voice if it is worth resuming when a source frees up.
+     *
+     * @param sound Sound that could not get a source
+     * @return true if the sound is now a virtual voice, false if it should be dropped
+     */
+    static boolean virtualize(@Nonnull final ISoundInstance sound) {
+        return Config.CLIENT.sound.enableVoiceManagement.get() && virtualize(sound, getListener());
+    }
+
+    private static boolean virtualize(@Nonnull final ISoundInstance sound, @Nonnull final Vector3d listener) {
+        if (audibility(sound, listener) < MIN_AUDIBILITY)
+            return false;
+        hold(sound);
+        return true;
+    }
+
+    private static void hold(@Nonnull final ISoundInstance sound) {
+        sound.setState(SoundState.VIRTUAL);
+        if (!virtualSince.containsKey(sound)) {
+            virtual.add(sound);
+            virtualSince.put(sound, tickCount);
+        }
+    }
+
+    /**
+     * Drops tracking of voices that are no longer playing, expires virtual voices that waited too long, and promotes
+     * the highest priority virtual voices while there is room in the sound engine.
+     *
+     * @param promoter Plays a virtual voice that is being promoted
+     * @return true if any virtual voices were expired, false otherwise
+     */
+    static boolean tick(@Nonnull final Consumer<ISoundInstance> promoter) {
+        tickCount++;
+
+        started.reference2LongEntrySet().removeIf(e -> e.getKey().getState() != SoundState.PLAYING);
+
+        if (virtual.isEmpty())
+            return false;
+
+        boolean dropped = false;
+
+        // Stopped through the AudioEngine, or one shots that are too late to bother with
+        for (int i = virtual.size() - 1; i >= 0; i--) {
+            final ISoundInstance sound = virtual.get(i);
+            final boolean stale = !sound.canRepeat() && tickCount - virtualSince.getLong(sound) > MAX_VIRTUAL_AGE;
+            if (sound.getState() != SoundState.VIRTUAL || stale) {
+                if (stale) {
+                    sound.setState(SoundState.DONE);
+                    expired++;
+                    dropped = true;
+                }
+                virtual.remove(i);
+                virtualSince.removeLong(sound);
+            }
+        }
+
+        if (virtual.isEmpty() || !SoundUtils.hasRoom())
+            return dropped;
+
+        final Vector3d listener = getListener();
+        gatherOcclusion();
+        while (!virtual.isEmpty() && SoundUtils.hasRoom()) {
+            int best = 0;
+            float bestPriority = -1F;
+            for (int i = 0; i < virtual.size(); i++) {
+                final ISoundInstance candidate = virtual.get(i);
+                // A stolen voice may still be on its way out of the sound engine
+                if (SoundUtils.getPlayingSounds().containsKey(candidate))
+                    continue;
+                final float p = priority(candidate, listener, 0);
+                if (p > bestPriority) {
+                    bestPriority = p;
+                    best = i;
+                }
+            }
+            if (bestPriority < 0)
+                break;
+            final ISoundInstance sound = virtual.remove(best);
+            virtualSince.removeLong(sound);
+            promoted++;
+            promoter.accept(sound);
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Forgets all voices.  Virtual voices are placed in a terminal state.
+     */
+    static void clear() {
+        for (final ISoundInstance sound : virtual)
+            sound.setState(SoundState.DONE);
+        virtual.clear();
+        virtualSince.clear();
+        started.clear();
+    }
+
+    @Nonnull
+    static String getDiagnosticString() {
+        return String.format("Voices: %d real, %d virtual, %d stolen, %d promoted, %d expired",
+                started.size(), virtual.size(), stolen, promoted, expired);
+    }
+
+    /**
+     * Sounds that are not positioned in the world, or are in categories the player explicitly listens to, are never
+     * stolen.
+     */
+    private static boolean isProtected(@Nonnull final ISoundInstance sound) {
+        if (sound.isGlobal() || sound.getAttenuationType() == ISound.AttenuationType.NONE)
+            return true;
+        final ISoundCategory category = sound.getSoundCategory();
+        return category == Category.MUSIC || category == Category.RECORDS || category == Category.MASTER || category == Category.CONFIG;
+    }
+
+    private static float priority(@Nonnull final ISoundInstance sound, @Nonnull final Vector3d listener, final long age) {
+        final float weight = isProtected(sound) ? 100F : CATEGORY_WEIGHT.getFloat(sound.getSoundCategory());
+        return weight * audibility(sound, listener) / (1F + age / AGE_SCALE);
+    }
+
+    /**
+     * Rough estimate of how loud the sound is to the listener.  Linear attenuation over the sound's range scaled by
+     * its volume and the gain of the direct path if the sound FX processor has calculated it.
+     */
+    private static float audibility(@Nonnull final ISoundInstance sound, @Nonnull final Vector3d listener) {
+        float result = Math.max(sound.getVolume(), 0F);
+        if (!sound.isGlobal() && sound.getAttenuationType() != ISound.AttenuationType.NONE && sound.getSound() != null) {
+            final float range = Math.max(sound.getSound().getAttenuationDistance(), 1);
+            final float distance = (float) Math.sqrt(listener.squareDistanceTo(sound.getX(), sound.getY(), sound.getZ()));
+            result *= Math.max(1F - distance / range, 0F);
+        }
+        return result * occlusion.getFloat(sound);
+    }
+
+    private static void gatherOcclusion() {
+        occlusion.clear();
+        occlusion.defaultReturnValue(1F);
+        SoundFXProcessor.gatherDirectGain(occlusion);
+    }
+
+    @Nonnull
+    private static Vector3d getListener() {
+        final Vector3d view = GameUtils.getMC().gameRenderer.getActiveRenderInfo().getProjectedView();
+        return view != null ? view : Vector3d.ZERO;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of calculated reverb and occlusion parameters.  Sounds that replay from the same block, with the
+ * listener in the same block, will get the same result so there is no need to trace again.  Each entry remembers the
+ * chunk sections its trace passed through and is dropped when a block within one of them changes; changes elsewhere
+ * around the player do not affect it.  Accessed concurrently from the sound processor threads.
+ */
+@OnlyIn(Dist.CLIENT)
+final class AcousticCache {
+
+    private final Map<Key, Entry> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    AcousticCache(final int capacity) {
+        this.cache = new LinkedHashMap<Key, Entry>(capacity, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(@Nonnull final Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Nullable
+    Result get(@Nonnull final Key key) {
+        Entry entry;
+        synchronized (this.cache) {
+            entry = this.cache.get(key);
+        }
+        if (entry != null && TracedSections.hasChangedSince(entry.epoch, entry.sections)) {
+            synchronized (this.cache) {
+                this.cache.remove(key, entry);
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return entry.result;
+    }
+
+    /**
+     * Caches a result.
+     *
+     * @param key      Conditions the result was calculated under
+     * @param result   Calculated result
+     * @param epoch    Block change epoch captured before the calculation was made
+     * @param sections Sorted sections the calculation traced through
+     */
+    void put(@Nonnull final Key key, @Nonnull final Result result, final int epoch, @Nonnull final long[] sections) {
+        final Entry entry = new Entry(result, epoch, sections);
+        synchronized (this.cache) {
+            this.cache.put(key, entry);
+        }
+    }
+
+    void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    @Nonnull
+    String getDiagnosticString() {
+        final long h = this.hits.get();
+        final long m = this.misses.get();
+        final long total = h + m;
+        final int size;
+        synchronized (this.cache) {
+            size = this.cache.size();
+        }
+        return String.format("Acoustic Cache: %d entries, %d hits, %d misses (%.1f%%)", size, h, m, total == 0 ? 0F : h * 100F / total);
+    }
+
+    /**
+     * Identifies the conditions under which a set of acoustic parameters were calculated.
+     */
+    static final class Key {
+        private final int sourceX;
+        private final int sourceY;
+        private final int sourceZ;
+        private final int listenerX;
+        private final int listenerY;
+        private final int listenerZ;
+        private final int dampening;
+        private final boolean occlusion;
+        private final boolean inWater;
+        private final int detail;
+        private final int hash;
+
+        Key(@Nonnull final WorldContext ctx, @Nonnull final Vector3d soundPos, final boolean occlusion, final int detail) {
+            this.sourceX = MathStuff.floor(soundPos.x);
+            this.sourceY = MathStuff.floor(soundPos.y);
+            this.sourceZ = MathStuff.floor(soundPos.z);
+            this.listenerX = ctx.playerEyePos.getX();
+            this.listenerY = ctx.playerEyePos.getY();
+            this.listenerZ = ctx.playerEyePos.getZ();
+            this.dampening = Float.floatToIntBits(ctx.auralDampening);
+            this.occlusion = occlusion;
+            this.inWater = ctx.isInWater;
+            this.detail = detail;
+
+            int h = this.sourceX;
+            h = 31 * h + this.sourceY;
+            h = 31 * h + this.sourceZ;
+            h = 31 * h + this.listenerX;
+            h = 31 * h + this.listenerY;
+            h = 31 * h + this.listenerZ;
+            h = 31 * h + this.dampening;
+            h = 31 * h + (this.occlusion ? 1 : 0);
+            h = 31 * h + (this.inWater ? 1 : 0);
+            h = 31 * h + this.detail;
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key k = (Key) obj;
+            return this.hash == k.hash
+                    && this.sourceX == k.sourceX
+                    && this.sourceY == k.sourceY
+                    && this.sourceZ == k.sourceZ
+                    && this.listenerX == k.listenerX
+                    && this.listenerY == k.listenerY
+                    && this.listenerZ == k.listenerZ
+                    && this.dampening == k.dampening
+                    && this.occlusion == k.occlusion
+                    && this.inWater == k.inWater
+                    && this.detail == k.detail;
+        }
+    }
+
+    private static final class Entry {
+        final Result result;
+        final int epoch;
+        final long[] sections;
+
+        Entry(@Nonnull final Result result, final int epoch, @Nonnull final long[] sections) {
+            this.result = result;
+            this.epoch = epoch;
+            this.sections = sections;
+        }
+    }
+
+    /**
+     * Immutable set of calculated send and direct filter parameters.
+     */
+    static final class Result {
+        final float sendGain0;
+        final float sendCutoff0;
+        final float sendGain1;
+        final float sendCutoff1;
+        final float sendGain2;
+        final float sendCutoff2;
+        final float sendGain3;
+        final float sendCutoff3;
+        final float directGain;
+        final float directCutoff;
+
+        Result(final float sendGain0, final float sendCutoff0,
+               final float sendGain1, final float sendCutoff1,
+               final float sendGain2, final float sendCutoff2,
+               final float sendGain3, final float sendCutoff3,
+               final float directGain, final float directCutoff) {
+            this.sendGain0 = sendGain0;
+            this.sendCutoff0 = sendCutoff0;
+            this.sendGain1 = sendGain1;
+            this.sendCutoff1 = sendCutoff1;
+            this.sendGain2 = sendGain2;
+            this.sendCutoff2 = sendCutoff2;
+            this.sendGain3 = sendGain3;
+            this.sendCutoff3 = sendCutoff3;
+            this.directGain = directGain;
+            this.directCutoff = directCutoff;
+        }
+    }
+}
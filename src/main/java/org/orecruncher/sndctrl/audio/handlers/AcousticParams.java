@@ -0,0 +1,180 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.lwjgl.openal.EXTEfx;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Block of OpenAL parameters calculated for a sound source.  A SourceContext keeps two of these: the sound processor
+ * writes into one while the sound engine thread reads from the other.  The writer holds the write lock of a
+ * StampedLock while it fills the block, and a reader copies the block under an optimistic read stamp.  The reader
+ * never blocks; if the stamp does not validate what it copied may be torn and it tries again on the next tick.  The
+ * lock provides the ordering that makes the copy safe under the memory model.
+ */
+@OnlyIn(Dist.CLIENT)
+final class AcousticParams {
+
+    private final StampedLock lock = new StampedLock();
+    // Stamp of the write in progress.  Only touched by the writer.
+    private long writeStamp;
+
+    // Version of the parameter set held.  Zero means nothing has been published.
+    long version;
+    boolean process;
+    // Set when the values are a quick estimate made as the sound started
+    boolean estimate;
+
+    float sendGain0;
+    float sendCutoff0;
+    float sendGain1;
+    float sendCutoff1;
+    float sendGain2;
+    float sendCutoff2;
+    float sendGain3;
+    float sendCutoff3;
+    float directGain;
+    float directCutoff;
+    float airAbsorb;
+
+    /**
+     * Begins a write of the block.  Only one thread may write a block at a time.
+     */
+    void beginWrite() {
+        this.writeStamp = this.lock.writeLock();
+    }
+
+    /**
+     * Completes a write of the block making the values visible to readers.
+     */
+    void endWrite() {
+        this.lock.unlockWrite(this.writeStamp);
+    }
+
+    /**
+     * Fills the block with the result of an acoustic calculation.  Values are bounded to what OpenAL accepts.
+     */
+    void set(@Nonnull final AcousticCache.Result result, final float airAbsorptionFactor, final boolean estimate) {
+        this.process = true;
+        this.estimate = estimate;
+        this.sendGain0 = gain(result.sendGain0);
+        this.sendCutoff0 = gainHF(result.sendCutoff0);
+        this.sendGain1 = gain(result.sendGain1);
+        this.sendCutoff1 = gainHF(result.sendCutoff1);
+        this.sendGain2 = gain(result.sendGain2);
+        this.sendCutoff2 = gainHF(result.sendCutoff2);
+        this.sendGain3 = gain(result.sendGain3);
+        this.sendCutoff3 = gainHF(result.sendCutoff3);
+        this.directGain = gain(result.directGain);
+        this.directCutoff = gainHF(result.directCutoff);
+        this.airAbsorb = MathStuff.clamp(airAbsorptionFactor, EXTEfx.AL_MIN_AIR_ABSORPTION_FACTOR, EXTEfx.AL_MAX_AIR_ABSORPTION_FACTOR);
+    }
+
+    /**
+     * Marks the block as not having any effects to apply.  The source reverts to unfiltered play.
+     */
+    void clear() {
+        this.process = false;
+        this.estimate = false;
+    }
+
+    /**
+     * Copies the values of the block into another.  Can be called while the block is being written.
+     *
+     * @param dest Block to receive the values
+     * @return true if a consistent set of values was copied, false if a write was in progress
+     */
+    boolean copyTo(@Nonnull final AcousticParams dest) {
+        final long stamp = this.lock.tryOptimisticRead();
+        if (stamp == 0)
+            return false;
+        dest.version = this.version;
+        dest.process = this.process;
+        dest.estimate = this.estimate;
+        dest.sendGain0 = this.sendGain0;
+        dest.sendCutoff0 = this.sendCutoff0;
+        dest.sendGain1 = this.sendGain1;
+        dest.sendCutoff1 = this.sendCutoff1;
+        dest.sendGain2 = this.sendGain2;
+        dest.sendCutoff2 = this.sendCutoff2;
+        dest.sendGain3 = this.sendGain3;
+        dest.sendCutoff3 = this.sendCutoff3;
+        dest.directGain = this.directGain;
+        dest.directCutoff = this.directCutoff;
+        dest.airAbsorb = this.airAbsorb;
+        if (this.lock.validate(stamp))
+            return true;
+        // Torn.  Make sure the destination does not look like it holds this version.
+        dest.version = 0;
+        return false;
+    }
+
+    /**
+     * Sets the block to a step from one set of values toward another.
+     *
+     * @param from    Values to step from
+     * @param to      Values to step toward
+     * @param rate    Portion of the distance to cover
+     * @param epsilon Distance considered close enough
+     * @return true if every value is within epsilon of the target after the step, false otherwise
+     */
+    boolean blend(@Nonnull final AcousticParams from, @Nonnull final AcousticParams to, final float rate, final float epsilon) {
+        this.version = to.version;
+        this.process = to.process;
+        this.estimate = to.estimate;
+        this.sendGain0 = lerp(from.sendGain0, to.sendGain0, rate);
+        this.sendCutoff0 = lerp(from.sendCutoff0, to.sendCutoff0, rate);
+        this.sendGain1 = lerp(from.sendGain1, to.sendGain1, rate);
+        this.sendCutoff1 = lerp(from.sendCutoff1, to.sendCutoff1, rate);
+        this.sendGain2 = lerp(from.sendGain2, to.sendGain2, rate);
+        this.sendCutoff2 = lerp(from.sendCutoff2, to.sendCutoff2, rate);
+        this.sendGain3 = lerp(from.sendGain3, to.sendGain3, rate);
+        this.sendCutoff3 = lerp(from.sendCutoff3, to.sendCutoff3, rate);
+        this.directGain = lerp(from.directGain, to.directGain, rate);
+        this.directCutoff = lerp(from.directCutoff, to.directCutoff, rate);
+        this.airAbsorb = lerp(from.airAbsorb, to.airAbsorb, rate);
+        return close(this.sendGain0, to.sendGain0, epsilon) && close(this.sendCutoff0, to.sendCutoff0, epsilon)
+                && close(this.sendGain1, to.sendGain1, epsilon) && close(this.sendCutoff1, to.sendCutoff1, epsilon)
+                && close(this.sendGain2, to.sendGain2, epsilon) && close(this.sendCutoff2, to.sendCutoff2, epsilon)
+                && close(this.sendGain3, to.sendGain3, epsilon) && close(this.sendCutoff3, to.sendCutoff3, epsilon)
+                && close(this.directGain, to.directGain, epsilon) && close(this.directCutoff, to.directCutoff, epsilon)
+                && close(this.airAbsorb, to.airAbsorb, epsilon);
+    }
+
+    private static float lerp(final float from, final float to, final float rate) {
+        return from + (to - from) * rate;
+    }
+
+    private static boolean close(final float value, final float target, final float epsilon) {
+        return Math.abs(value - target) <= epsilon;
+    }
+
+    private static float gain(final float value) {
+        return MathStuff.clamp(value, EXTEfx.AL_LOWPASS_MIN_GAIN, EXTEfx.AL_LOWPASS_MAX_GAIN);
+    }
+
+    private static float gainHF(final float value) {
+        return MathStuff.clamp(value, EXTEfx.AL_LOWPASS_MIN_GAINHF, EXTEfx.AL_LOWPASS_MAX_GAINHF);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.IWorldReader;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups sound sources into zones of nearby sources.  The reverb of the sources in a zone is nearly the same so it is
+ * traced once from the centroid of the zone and shared; each source still traces its own direct path to the listener.
+ * Zones are cells of a grid whose size grows with the distance from the listener, since a small difference in position
+ * matters less the further away the sound is.  Sources are only zoned with others of the same level of detail.
+ * <p>
+ * Sources are admitted for update at staggered iterations, so two sources in the same cell are rarely updated
+ * together.  Zones are therefore kept across iterations: a source admitted later joins the zone formed by an earlier
+ * one and reuses its reverb.  A source stays a member of its zone until it is placed in another or stops playing, and
+ * the centroid follows the latest position of each member.  A zone is dropped once it is empty or no source has been
+ * placed in it for a while.  The traced reverb is redone when the blocks near the player change or the listener moves
+ * to another block.
+ */
+@OnlyIn(Dist.CLIENT)
+final class AcousticZones {
+
+    // Squared distances from the listener past which the cell size doubles
+    private static final double[] DISTANCE_THRESHOLDS_SQ = {8 * 8, 16 * 16};
+    // Cells near the listener are 2 blocks on a side
+    private static final int MIN_CELL_SHIFT = 1;
+    // Iterations a zone survives without a source being placed in it.  Covers the refresh interval of a source.
+    private static final int IDLE_ITERATIONS = 16;
+
+    private final Long2ObjectOpenHashMap<Zone> zones = new Long2ObjectOpenHashMap<>();
+    private final AtomicInteger traced = new AtomicInteger();
+    private final AtomicInteger shared = new AtomicInteger();
+    private int iteration;
+    private int lastZones;
+    private int lastShared;
+    private long totalTraced;
+    private long totalShared;
+
+    /**
+     * Starts zoning for a new scheduling iteration.  Sources that have stopped playing leave their zones, and zones
+     * that are empty or idle are dropped.  A dropped zone remains valid for any stragglers still working with it.
+     */
+    void begin() {
+        this.lastShared = this.shared.getAndSet(0);
+        this.totalShared += this.lastShared;
+        this.totalTraced += this.traced.getAndSet(0);
+        this.iteration++;
+
+        final ObjectIterator<Long2ObjectMap.Entry<Zone>> itr = this.zones.long2ObjectEntrySet().fastIterator();
+        while (itr.hasNext()) {
+            final Zone zone = itr.next().getValue();
+            zone.prune();
+            if (zone.isEmpty() || this.iteration - zone.lastPlaced > IDLE_ITERATIONS)
+                itr.remove();
+        }
+    }
+
+    /**
+     * Places the source in the zone for its position.  Called from the scheduler thread only.
+     *
+     * @param ctx      Source to place
+     * @param listener Position of the listener
+     * @param load     Load of the sound processor used to pick the level of detail
+     */
+    void assign(@Nonnull final SourceContext ctx, @Nonnull final Vector3d listener, final double load) {
+        final Vector3d pos = ctx.getPosition();
+        final double distanceSq = pos.squareDistanceTo(listener);
+        final ReverbDetail detail = ReverbDetail.select(distanceSq, ctx.getCategory(), load);
+
+        int shift = MIN_CELL_SHIFT;
+        for (final double threshold : DISTANCE_THRESHOLDS_SQ)
+            if (distanceSq >= threshold)
+                shift++;
+
+        final long key = key(MathStuff.floor(pos.x) >> shift, MathStuff.floor(pos.y) >> shift, MathStuff.floor(pos.z) >> shift, shift, detail.tier);
+        Zone zone = this.zones.get(key);
+        if (zone == null) {
+            zone = new Zone(detail);
+            this.zones.put(key, zone);
+        }
+        zone.lastPlaced = this.iteration;
+
+        final Zone current = ctx.getZone();
+        if (current == zone) {
+            // A source refreshing in the zone it already belongs to only moves within it
+            zone.move(ctx.getZonePosition(), pos);
+        } else {
+            if (current != null)
+                current.remove(ctx);
+            zone.add(ctx, pos);
+        }
+        ctx.setZone(zone, pos);
+    }
+
+    /**
+     * Completes zoning for the iteration, counting the zones that are shared.
+     */
+    void end() {
+        int count = 0;
+        for (final Zone zone : this.zones.values())
+            if (zone.isShared())
+                count++;
+        this.lastZones = count;
+    }
+
+    private static long key(final int x, final int y, final int z, final int shift, final int tier) {
+        return ((long) (x & 0xFFFFF) << 44) | ((long) (z & 0xFFFFF) << 24) | ((long) (y & 0xFFF) << 12) | ((long) shift << 4) | tier;
+    }
+
+    @Nonnull
+    String getDiagnosticString() {
+        return String.format("Acoustic Zones: %d shared, %d sources sharing (%d traced, %d shared total)",
+                this.lastZones, this.lastShared, this.totalTraced, this.totalShared);
+    }
+
+    /**
+     * A group of nearby sources that share a reverb calculation.  Membership is changed by the scheduler thread only;
+     * the workers read the member count and the centroid.
+     */
+    final class Zone {
+
+        private final ReverbDetail detail;
+        private final ReferenceArrayList<SourceContext> members = new ReferenceArrayList<>(4);
+        // Iteration a source was last placed in the zone
+        private int lastPlaced;
+        private volatile int count;
+        private double sumX;
+        private double sumY;
+        private double sumZ;
+        // Reverb of the zone, which may still be being traced, and the conditions it was traced under
+        @Nullable
+        private CompletableFuture<SoundFXUtils.Reverb> reverb;
+        @Nullable
+        private IWorldReader world;
+        private int epoch;
+        private long listener;
+
+        Zone(@Nonnull final ReverbDetail detail) {
+            this.detail = detail;
+        }
+
+        private void add(@Nonnull final SourceContext ctx, @Nonnull final Vector3d pos) {
+            this.members.add(ctx);
+            synchronized (this) {
+                this.count = this.members.size();
+                this.sumX += pos.x;
+                this.sumY += pos.y;
+                this.sumZ += pos.z;
+            }
+        }
+
+        private void remove(@Nonnull final SourceContext ctx) {
+            final Vector3d pos = ctx.getZonePosition();
+            if (pos == null || !this.members.rem(ctx))
+                return;
+            synchronized (this) {
+                this.count = this.members.size();
+                this.sumX -= pos.x;
+                this.sumY -= pos.y;
+                this.sumZ -= pos.z;
+            }
+        }
+
+        private synchronized void move(@Nullable final Vector3d from, @Nonnull final Vector3d to) {
+            if (from == null)
+                return;
+            this.sumX += to.x - from.x;
+            this.sumY += to.y - from.y;
+            this.sumZ += to.z - from.z;
+        }
+
+        /**
+         * Takes out the members that have stopped playing.
+         */
+        private void prune() {
+            for (int i = this.members.size() - 1; i >= 0; i--) {
+                final SourceContext ctx = this.members.get(i);
+                if (!ctx.isActive()) {
+                    remove(ctx);
+                    ctx.setZone(null, null);
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return this.count == 0;
+        }
+
+        /**
+         * Indicates there is more than one source in the zone.  A zone of one gains nothing from sharing.
+         */
+        boolean isShared() {
+            return this.count > 1;
+        }
+
+        @Nonnull
+        ReverbDetail getDetail() {
+            return this.detail;
+        }
+
+        @Nonnull
+        private Vector3d getCentroid() {
+            final double scale = 1D / Math.max(this.count, 1);
+            return new Vector3d(this.sumX * scale, this.sumY * scale, this.sumZ * scale);
+        }
+
+        /**
+         * Gets the reverb for the zone.  The first member to ask traces it with its own calculator, outside of the
+         * lock, and members that ask while the trace is running wait for it.  It is traced again if the world, the
+         * blocks near the player, or the block the listener is in have changed since.  Called from the worker threads.
+         *
+         * @param fx  Calculator of the member asking
+         * @param ctx World context to trace against
+         * @return Reverb of the zone
+         */
+        @Nonnull
+        SoundFXUtils.Reverb getReverb(@Nonnull final SoundFXUtils fx, @Nonnull final WorldContext ctx) {
+            final long listener = ctx.playerEyePos.toLong();
+            final CompletableFuture<SoundFXUtils.Reverb> result;
+            final Vector3d centroid;
+            synchronized (this) {
+                if (this.reverb != null && this.world == ctx.world && this.epoch == ctx.changeEpoch && this.listener == listener) {
+                    result = this.reverb;
+                    centroid = null;
+                } else {
+                    result = this.reverb = new CompletableFuture<>();
+                    this.world = ctx.world;
+                    this.epoch = ctx.changeEpoch;
+                    this.listener = listener;
+                    centroid = getCentroid();
+                }
+            }
+
+            if (centroid == null) {
+                AcousticZones.this.shared.incrementAndGet();
+                return result.join();
+            }
+
+            try {
+                // The centroid can land inside a block even though none of the members are
+                final Vector3d pos = SoundFXUtils.offsetPositionIfSolid(ctx.snapshot, centroid, ctx.playerEyePosition);
+                final SoundFXUtils.Reverb traced = fx.traceReverb(ctx, pos, this.detail);
+                AcousticZones.this.traced.incrementAndGet();
+                result.complete(traced);
+                return traced;
+            } catch (@Nonnull final Throwable t) {
+                // Let the next member to ask try again
+                synchronized (this) {
+                    if (this.reverb == result)
+                        this.reverb = null;
+                }
+                result.completeExceptionally(t);
+                throw t;
+            }
+        }
+    }
+}
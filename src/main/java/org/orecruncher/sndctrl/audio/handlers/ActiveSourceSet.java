@@ -0,0 +1,192 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.EMA;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free set of the SourceContexts for the sounds that are playing.  The set is intrusive: each context holds the
+ * index of its slot, and keeps it for as long as it is in the set.  An add claims the lowest free slot so the live
+ * contexts stay near the bottom, and a remove empties the slot of the context.  Readers walk the slots below limit(),
+ * skipping empty ones, without locking or allocating.  A reader may or may not see a context that is added or removed
+ * during its pass, but a context in the set for the whole pass is always seen, exactly once.
+ * <p>
+ * Slots are allocated in fixed size segments that are never moved, so the set grows when it fills up rather than
+ * turning contexts away.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ActiveSourceSet {
+
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int MAX_SEGMENTS = 256;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<SourceContext>> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    // One past the highest slot that may be occupied
+    private final AtomicInteger limit = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong adds = new AtomicLong();
+    private final AtomicLong removes = new AtomicLong();
+
+    private final EMA churn = new EMA("Churn", 20);
+    private long lastChurnCount;
+    private long lastChurnSample;
+    private int peak;
+
+    /**
+     * @param capacity Number of slots to allocate up front
+     */
+    ActiveSourceSet(final int capacity) {
+        final int count = Math.min(Math.max((capacity + SEGMENT_MASK) >> SEGMENT_SHIFT, 1), MAX_SEGMENTS);
+        for (int i = 0; i < count; i++)
+            this.segments.set(i, new AtomicReferenceArray<>(SEGMENT_SIZE));
+    }
+
+    /**
+     * Adds the context to the set.  The set grows if every slot is in use.
+     *
+     * @param ctx Context to add
+     * @return true if the context was added, false if the set cannot grow any further
+     */
+    boolean add(@Nonnull final SourceContext ctx) {
+        for (int s = 0; s < MAX_SEGMENTS; s++) {
+            AtomicReferenceArray<SourceContext> segment = this.segments.get(s);
+            if (segment == null) {
+                this.segments.compareAndSet(s, null, new AtomicReferenceArray<>(SEGMENT_SIZE));
+                segment = this.segments.get(s);
+            }
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                if (segment.get(i) != null)
+                    continue;
+                // The slot is recorded first so the context is never seen in the set without it
+                final int slot = (s << SEGMENT_SHIFT) | i;
+                ctx.setActiveSlot(slot);
+                if (segment.compareAndSet(i, null, ctx)) {
+                    raiseLimit(slot + 1);
+                    this.size.incrementAndGet();
+                    this.adds.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        ctx.setActiveSlot(-1);
+        return false;
+    }
+
+    /**
+     * Removes the context from the set.  Has no effect if the context is not in the set.
+     *
+     * @param ctx Context to remove
+     */
+    void remove(@Nonnull final SourceContext ctx) {
+        final int slot = ctx.getActiveSlot();
+        if (slot < 0 || !this.segments.get(slot >> SEGMENT_SHIFT).compareAndSet(slot & SEGMENT_MASK, ctx, null))
+            return;
+        ctx.setActiveSlot(-1);
+        this.size.decrementAndGet();
+        this.removes.incrementAndGet();
+        lowerLimit();
+    }
+
+    void clear() {
+        final int end = this.limit.get();
+        for (int slot = 0; slot < end; slot++) {
+            final SourceContext ctx = get(slot);
+            if (ctx != null)
+                remove(ctx);
+        }
+    }
+
+    /**
+     * Upper bound, exclusive, of the slots that need to be examined when iterating.
+     */
+    int limit() {
+        return this.limit.get();
+    }
+
+    /**
+     * Gets the context held in the specified slot, or null if the slot is empty.
+     */
+    @Nullable
+    SourceContext get(final int slot) {
+        final AtomicReferenceArray<SourceContext> segment = this.segments.get(slot >> SEGMENT_SHIFT);
+        return segment != null ? segment.get(slot & SEGMENT_MASK) : null;
+    }
+
+    int size() {
+        return this.size.get();
+    }
+
+    int capacity() {
+        int count = 0;
+        while (count < MAX_SEGMENTS && this.segments.get(count) != null)
+            count++;
+        return count << SEGMENT_SHIFT;
+    }
+
+    private void raiseLimit(final int end) {
+        int current;
+        while ((current = this.limit.get()) < end)
+            if (this.limit.compareAndSet(current, end))
+                break;
+    }
+
+    /**
+     * Drops the limit past the empty slots at the top.  A context added to a slot while the limit is being dropped
+     * past it is noticed on the recheck, and the limit is raised back over it.
+     */
+    private void lowerLimit() {
+        int current;
+        while ((current = this.limit.get()) > 0 && get(current - 1) == null) {
+            if (this.limit.compareAndSet(current, current - 1) && get(current - 1) != null) {
+                raiseLimit(current);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the churn of the set since the last sample.  Called once per sound processor iteration.
+     */
+    void sample() {
+        final long now = System.nanoTime();
+        final long count = this.adds.get() + this.removes.get();
+        if (this.lastChurnSample != 0 && now > this.lastChurnSample)
+            this.churn.update((count - this.lastChurnCount) * 1e9D / (now - this.lastChurnSample));
+        this.lastChurnSample = now;
+        this.lastChurnCount = count;
+        this.peak = Math.max(this.peak, size());
+    }
+
+    @Nonnull
+    String getDiagnosticString() {
+        final double rate = this.churn.get();
+        return String.format("Active Sources: %d/%d (peak %d, limit %d), churn %.1f/s",
+                size(), capacity(), this.peak, limit(), Double.isNaN(rate) ? 0 : rate);
+    }
+}
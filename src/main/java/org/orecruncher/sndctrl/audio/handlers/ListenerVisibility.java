@@ -0,0 +1,136 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.lib.math.VoxelRayCaster;
+import org.orecruncher.lib.world.VoxelSnapshot;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Records which air cells around the listener have line of sight to the listener's eyes.  The field is shared by all
+ * sound calculations of a processor iteration.  A cell is traced the first time it is asked about and the answer is
+ * remembered, so the many reverb bounces that land near each other only cost a lookup.  The remembered answers carry
+ * over to the next iteration as long as the listener stays within the same block and the snapshot does not change.
+ * When either changes the whole field is dropped rather than refreshed a piece at a time: every answer is a ray to
+ * the listener's eyes, so moving the eyes can change any of them, and a block change can cut any ray that passes by
+ * it.  Dropping the field is only a generation bump, and cells are traced again lazily as they are asked about.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class ListenerVisibility {
+
+    // Number of blocks from the listener covered by the field in each direction
+    private static final int RADIUS = 24;
+    private static final int SIZE = RADIUS * 2;
+
+    private static final int UNKNOWN = 0;
+    private static final int VISIBLE = 1;
+    private static final int BLOCKED = 2;
+
+    // Each entry is the generation it was recorded in shifted left 2, or'd with the state.  Entries from older
+    // generations read as unknown, so moving to a new generation does not require clearing the field.
+    private static final int[] field = new int[SIZE * SIZE * SIZE];
+    private static int currentGeneration = 1;
+    private static VoxelSnapshot lastSnapshot;
+    private static BlockPos lastListener = BlockPos.ZERO;
+
+    public static final ListenerVisibility EMPTY = new ListenerVisibility(VoxelSnapshot.EMPTY, Vector3d.ZERO, BlockPos.ZERO, 0);
+
+    private final VoxelSnapshot snapshot;
+    private final double eyeX;
+    private final double eyeY;
+    private final double eyeZ;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int generation;
+
+    private ListenerVisibility(@Nonnull final VoxelSnapshot snapshot, @Nonnull final Vector3d eye, @Nonnull final BlockPos eyePos, final int generation) {
+        this.snapshot = snapshot;
+        this.eyeX = eye.x;
+        this.eyeY = eye.y;
+        this.eyeZ = eye.z;
+        this.minX = eyePos.getX() - RADIUS;
+        this.minY = eyePos.getY() - RADIUS;
+        this.minZ = eyePos.getZ() - RADIUS;
+        this.generation = generation;
+    }
+
+    /**
+     * Creates the visibility field for the current iteration.  Must be called from the client thread.
+     *
+     * @param snapshot Snapshot the sound calculations trace against
+     * @param eye      Position of the listener's eyes
+     * @param eyePos   Block position of the listener's eyes
+     * @return Visibility field for the iteration
+     */
+    @Nonnull
+    static ListenerVisibility create(@Nonnull final VoxelSnapshot snapshot, @Nonnull final Vector3d eye, @Nonnull final BlockPos eyePos) {
+        if (snapshot != lastSnapshot || !eyePos.equals(lastListener)) {
+            lastSnapshot = snapshot;
+            lastListener = eyePos;
+            // Wrap around before the generation overflows the bits available in an entry
+            currentGeneration = (currentGeneration + 1) & 0x3FFFFFFF;
+            if (currentGeneration == 0)
+                currentGeneration = 1;
+        }
+        return new ListenerVisibility(snapshot, eye, eyePos, currentGeneration);
+    }
+
+    /**
+     * Determines if there is a clear path from the specified point to the listener.  If the point is in an air cell
+     * within the field the answer is shared with every other point in that cell.
+     *
+     * @param caster Caster to use if the cell needs to be traced
+     * @param x      X coordinate of the point
+     * @param y      Y coordinate of the point
+     * @param z      Z coordinate of the point
+     * @return true if the listener can be seen from the point, false otherwise
+     */
+    public boolean isVisible(@Nonnull final VoxelRayCaster caster, final double x, final double y, final double z) {
+        final int cx = MathStuff.floor(x);
+        final int cy = MathStuff.floor(y);
+        final int cz = MathStuff.floor(z);
+        final int ix = cx - this.minX;
+        final int iy = cy - this.minY;
+        final int iz = cz - this.minZ;
+
+        // Points outside of the field, or inside a block where the exact position matters, are traced directly
+        if (ix < 0 || iy < 0 || iz < 0 || ix >= SIZE || iy >= SIZE || iz >= SIZE
+                || !this.snapshot.getBlockState(cx, cy, cz).isAir()) {
+            return !caster.trace(this.snapshot, x, y, z, this.eyeX, this.eyeY, this.eyeZ);
+        }
+
+        final int idx = (iy * SIZE + iz) * SIZE + ix;
+        final int entry = field[idx];
+        final int state = (entry >>> 2) == this.generation ? entry & 3 : UNKNOWN;
+        if (state != UNKNOWN)
+            return state == VISIBLE;
+
+        // Racing threads may trace the same cell; they arrive at the same answer
+        final boolean visible = !caster.trace(this.snapshot, cx + 0.5D, cy + 0.5D, cz + 0.5D, this.eyeX, this.eyeY, this.eyeZ);
+        field[idx] = (this.generation << 2) | (visible ? VISIBLE : BLOCKED);
+        return visible;
+    }
+}
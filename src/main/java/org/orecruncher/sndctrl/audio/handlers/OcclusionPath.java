@@ -0,0 +1,133 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.lib.world.ClientBlockUpdateHandler;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Remembers the result of the last occlusion trace of a sound along with the voxel cells the path between the sound
+ * and the listener crossed.  The result stays good until either end of the path moves past a threshold, or a block
+ * within one of the cells changes.
+ */
+@OnlyIn(Dist.CLIENT)
+final class OcclusionPath {
+
+    // How far either end of the path can move before the occlusion is traced again
+    private static final double MOVE_THRESHOLD_SQ = 0.5D * 0.5D;
+
+    private final LongOpenHashSet cells = new LongOpenHashSet();
+    private boolean isValid;
+    private double sourceX;
+    private double sourceY;
+    private double sourceZ;
+    private double listenerX;
+    private double listenerY;
+    private double listenerZ;
+    private int epoch;
+    private float occlusion;
+
+    /**
+     * Determines if the remembered occlusion can be used for the given path.
+     */
+    boolean matches(@Nonnull final Vector3d source, @Nonnull final Vector3d listener) {
+        return this.isValid
+                && source.squareDistanceTo(this.sourceX, this.sourceY, this.sourceZ) < MOVE_THRESHOLD_SQ
+                && listener.squareDistanceTo(this.listenerX, this.listenerY, this.listenerZ) < MOVE_THRESHOLD_SQ
+                && !ClientBlockUpdateHandler.hasChangedSince(this.epoch, this.cells::contains);
+    }
+
+    float getOcclusion() {
+        return this.occlusion;
+    }
+
+    /**
+     * Records the occlusion of a path.
+     *
+     * @param source    Position of the sound
+     * @param listener  Position of the listener
+     * @param occlusion Calculated occlusion for the path
+     * @param epoch     Block change epoch captured before the calculation was made
+     */
+    void update(@Nonnull final Vector3d source, @Nonnull final Vector3d listener, final float occlusion, final int epoch) {
+        this.sourceX = source.x;
+        this.sourceY = source.y;
+        this.sourceZ = source.z;
+        this.listenerX = listener.x;
+        this.listenerY = listener.y;
+        this.listenerZ = listener.z;
+        this.occlusion = occlusion;
+        this.epoch = epoch;
+        this.isValid = true;
+        gatherCells(source, listener);
+    }
+
+    void invalidate() {
+        this.isValid = false;
+        this.cells.clear();
+    }
+
+    // Walks the cells between the two points in the same order a ray trace would
+    private void gatherCells(@Nonnull final Vector3d start, @Nonnull final Vector3d end) {
+        this.cells.clear();
+
+        final double dx = end.x - start.x;
+        final double dy = end.y - start.y;
+        final double dz = end.z - start.z;
+
+        int x = MathStuff.floor(start.x);
+        int y = MathStuff.floor(start.y);
+        int z = MathStuff.floor(start.z);
+
+        final int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        final int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        final int stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+
+        final double tDeltaX = stepX == 0 ? Double.MAX_VALUE : 1D / Math.abs(dx);
+        final double tDeltaY = stepY == 0 ? Double.MAX_VALUE : 1D / Math.abs(dy);
+        final double tDeltaZ = stepZ == 0 ? Double.MAX_VALUE : 1D / Math.abs(dz);
+
+        double tMaxX = stepX > 0 ? (x + 1 - start.x) * tDeltaX : (stepX < 0 ? (start.x - x) * tDeltaX : Double.MAX_VALUE);
+        double tMaxY = stepY > 0 ? (y + 1 - start.y) * tDeltaY : (stepY < 0 ? (start.y - y) * tDeltaY : Double.MAX_VALUE);
+        double tMaxZ = stepZ > 0 ? (z + 1 - start.z) * tDeltaZ : (stepZ < 0 ? (start.z - z) * tDeltaZ : Double.MAX_VALUE);
+
+        int remaining = Math.abs(MathStuff.floor(end.x) - x) + Math.abs(MathStuff.floor(end.y) - y) + Math.abs(MathStuff.floor(end.z) - z) + 1;
+
+        while (remaining-- > 0) {
+            this.cells.add(BlockPos.pack(x, y, z));
+            if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxZ) {
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.sndctrl.api.sound.Category;
+import org.orecruncher.sndctrl.api.sound.ISoundCategory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Level of detail tiers for reverb calculations.  Each tier has a precomputed set of ray directions distributed
+ * over a sphere using the golden angle (Fibonacci sphere) along with the energy constants for the tier's ray budget.
+ * Sounds that are far from the listener, of less important categories, or that are being processed while the sound
+ * processor is running out of time get a cheaper tier.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ReverbDetail {
+
+    /**
+     * Maximum number of bounces of any tier.
+     */
+    static final int MAX_BOUNCES = 4;
+    /**
+     * Maximum number of rays of any tier.
+     */
+    static final int MAX_RAYS = 32;
+
+    private static final ReverbDetail[] TIERS = {
+            new ReverbDetail(0, 32, 4),
+            new ReverbDetail(1, 24, 4),
+            new ReverbDetail(2, 16, 3),
+            new ReverbDetail(3, 8, 2)
+    };
+
+    // Squared distance thresholds at which the tier drops
+    private static final double[] DISTANCE_THRESHOLDS_SQ = {8 * 8, 16 * 16, 32 * 32};
+
+    // Scheduler load at which the tier drops.  Heavy is most of the iteration budget in use; overload is the whole
+    // budget used with a tenth of the due sounds left undone.
+    private static final double HEAVY_LOAD = 0.75D;
+    private static final double OVERLOAD = 1.1D;
+
+    // Categories that get less detail than normal.  They tend to be diffuse background sounds.
+    private static final Reference2IntOpenHashMap<ISoundCategory> CATEGORY_BIAS = new Reference2IntOpenHashMap<>();
+
+    static {
+        CATEGORY_BIAS.defaultReturnValue(0);
+        CATEGORY_BIAS.put(Category.AMBIENT, 1);
+        CATEGORY_BIAS.put(Category.WEATHER, 1);
+    }
+
+    final int tier;
+    final int rays;
+    final int bounces;
+    final float recipRays;
+    final float recipTotalRays;
+    final float energyCoeff;
+    final float energyConst;
+    final double[] normalX;
+    final double[] normalY;
+    final double[] normalZ;
+
+    private ReverbDetail(final int tier, final int rays, final int bounces) {
+        this.tier = tier;
+        this.rays = rays;
+        this.bounces = bounces;
+        this.recipRays = 1F / rays;
+        this.recipTotalRays = 1F / (rays * bounces);
+        this.energyCoeff = 0.75F * 0.25F * this.recipTotalRays;
+        this.energyConst = 0.25F * 0.25F * this.recipTotalRays;
+        this.normalX = new double[rays];
+        this.normalY = new double[rays];
+        this.normalZ = new double[rays];
+
+        // Pre-calculate the known vectors that will be projected off a sound source when casting about to establish
+        // reverb effects.
+        for (int i = 0; i < rays; i++) {
+            final double longitude = MathStuff.ANGLE * i;
+            final double latitude = Math.asin(((double) i / rays) * 2.0D - 1.0D);
+
+            final Vector3d normal = new Vector3d(
+                    Math.cos(latitude) * Math.cos(longitude),
+                    Math.cos(latitude) * Math.sin(longitude),
+                    Math.sin(latitude)
+            ).normalize();
+
+            this.normalX[i] = normal.x;
+            this.normalY[i] = normal.y;
+            this.normalZ[i] = normal.z;
+        }
+    }
+
+    /**
+     * Selects the level of detail to use for a sound.
+     *
+     * @param distanceSq Squared distance between the sound and the listener
+     * @param category   Category of the sound
+     * @param load       Load of the sound processor scheduler; see SoundFXScheduler.getLoad()
+     * @return Level of detail to use when calculating reverb
+     */
+    @Nonnull
+    static ReverbDetail select(final double distanceSq, @Nonnull final ISoundCategory category, final double load) {
+        int tier = 0;
+        while (tier < DISTANCE_THRESHOLDS_SQ.length && distanceSq >= DISTANCE_THRESHOLDS_SQ[tier])
+            tier++;
+
+        tier += CATEGORY_BIAS.getInt(category);
+
+        if (load >= OVERLOAD)
+            tier += 2;
+        else if (load >= HEAVY_LOAD)
+            tier++;
+
+        return TIERS[MathStuff.min(tier, TIERS.length - 1)];
+    }
+}
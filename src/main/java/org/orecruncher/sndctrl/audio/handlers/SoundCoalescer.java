@@ -0,0 +1,235 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.client.audio.ISound;
+import net.minecraft.client.audio.ITickableSound;
+import net.minecraft.client.audio.LocatableSound;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.fml.common.Mod;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.TickCounter;
+import org.orecruncher.lib.events.DiagnosticEvent;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.math.EMA;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.api.sound.ISoundInstance;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+
+/**
+ * Combines plays of the same sound that happen close together in time and space.  Farms and redstone clocks can
+ * fire dozens of the same sound within a few blocks of each other in a single tick, each needing a sound source and
+ * its own effects calculation.  Plays of sounds marked MERGE are held for the merge window; plays that land within
+ * the merge radius of each other are played as a single sound at their volume weighted centroid with the volumes
+ * summed.  Only plain positional sounds are merged.  Sounds tracked through the AudioEngine, moving sounds, and
+ * repeating sounds pass through untouched.  Plays are offered before the sound engine has picked the Sound for them,
+ * so the raw volume and pitch of the play are used; the Sound's own multipliers are applied once when the merged
+ * play is made.
+ */
+@Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class SoundCoalescer {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SoundCoalescer.class);
+
+    private static final Object2ObjectOpenHashMap<ResourceLocation, ObjectArrayList<Pending>> pending = new Object2ObjectOpenHashMap<>();
+    private static final EMA mergeRate = new EMA("Merged", 20);
+    private static boolean flushing;
+    private static int pendingCount;
+    private static int mergedThisTick;
+    private static long totalMerged;
+
+    private SoundCoalescer() {
+    }
+
+    /**
+     * Offers a sound play to be merged.  Called from the client thread when a sound marked MERGE is played.
+     *
+     * @param sound The sound being played
+     * @return true if the play is being held, false if it should proceed
+     */
+    static boolean offer(@Nonnull final ISound sound) {
+        if (flushing
+                || !(sound instanceof LocatableSound)
+                || sound instanceof ISoundInstance
+                || sound instanceof ITickableSound
+                || sound.canRepeat()
+                || sound.isGlobal()
+                || sound.getAttenuationType() == ISound.AttenuationType.NONE)
+            return false;
+
+        final double radius = Config.CLIENT.sound.mergeRadius.get();
+        final double radiusSq = radius * radius;
+        final ObjectArrayList<Pending> list = pending.computeIfAbsent(sound.getSoundLocation(), k -> new ObjectArrayList<>());
+        for (final Pending p : list) {
+            if (p.category == sound.getCategory() && p.distanceSq(sound) <= radiusSq) {
+                p.add((LocatableSound) sound);
+                pendingCount++;
+                return true;
+            }
+        }
+
+        list.add(new Pending((LocatableSound) sound, TickCounter.getTickCount()));
+        pendingCount++;
+        return true;
+    }
+
+    /**
+     * Indicates that the plays being made are the result of merging and should not be processed again.
+     */
+    static boolean isFlushing() {
+        return flushing;
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(@Nonnull final TickEvent.ClientTickEvent event) {
+        if (event.side != LogicalSide.CLIENT || event.phase != TickEvent.Phase.END)
+            return;
+
+        mergeRate.update(mergedThisTick * 20);
+        mergedThisTick = 0;
+
+        if (pendingCount == 0)
+            return;
+
+        final long tick = TickCounter.getTickCount();
+        final int window = Config.CLIENT.sound.mergeWindow.get();
+
+        flushing = true;
+        try {
+            for (final ObjectArrayList<Pending> list : pending.values()) {
+                final Iterator<Pending> itr = list.iterator();
+                while (itr.hasNext()) {
+                    final Pending p = itr.next();
+                    if (tick - p.firstTick >= window - 1) {
+                        itr.remove();
+                        pendingCount -= p.count;
+                        mergedThisTick += p.count - 1;
+                        totalMerged += p.count - 1;
+                        play(p);
+                    }
+                }
+            }
+        } finally {
+            flushing = false;
+        }
+    }
+
+    private static void play(@Nonnull final Pending p) {
+        try {
+            if (p.count == 1)
+                GameUtils.getSoundHander().play(p.template);
+            else
+                GameUtils.getSoundHander().play(new MergedSound(p));
+        } catch (@Nonnull final Throwable t) {
+            LOGGER.error(t, "Unable to play merged sound '%s'", p.template.getSoundLocation());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onGatherText(@Nonnull final DiagnosticEvent event) {
+        final double rate = mergeRate.get();
+        event.getLeft().add(TextFormatting.GREEN + String.format("Sound Merge: %.1f/s (%d total), %d pending",
+                Double.isNaN(rate) ? 0 : rate, totalMerged, pendingCount));
+    }
+
+    /**
+     * Plays of a sound gathered within the merge window.
+     */
+    private static final class Pending {
+
+        final LocatableSound template;
+        final net.minecraft.util.SoundCategory category;
+        final long firstTick;
+        int count;
+        float volume;
+        float loudest;
+        double weight;
+        double x;
+        double y;
+        double z;
+
+        Pending(@Nonnull final LocatableSound sound, final long tick) {
+            this.template = sound;
+            this.category = sound.getCategory();
+            this.firstTick = tick;
+            add(sound);
+        }
+
+        void add(@Nonnull final LocatableSound sound) {
+            // getVolume() needs the Sound the engine has not picked yet, and would include its multiplier
+            final float v = Math.max(sound.volume, 0F);
+            // Silent plays still count toward the position
+            final double w = Math.max(v, 0.01F);
+            this.count++;
+            this.volume += v;
+            this.loudest = Math.max(this.loudest, v);
+            this.weight += w;
+            this.x += sound.getX() * w;
+            this.y += sound.getY() * w;
+            this.z += sound.getZ() * w;
+        }
+
+        double getX() {
+            return this.x / this.weight;
+        }
+
+        double getY() {
+            return this.y / this.weight;
+        }
+
+        double getZ() {
+            return this.z / this.weight;
+        }
+
+        double distanceSq(@Nonnull final ISound sound) {
+            final double dx = sound.getX() - getX();
+            final double dy = sound.getY() - getY();
+            final double dz = sound.getZ() - getZ();
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * The single play standing in for the plays that were merged.
+     */
+    private static final class MergedSound extends LocatableSound {
+
+        MergedSound(@Nonnull final Pending p) {
+            super(p.template.getSoundLocation(), p.category);
+            // Louder than any one of the plays, but not without bound
+            this.volume = MathStuff.clamp(p.volume, 0F, Math.max(1F, p.loudest));
+            this.pitch = p.template.pitch;
+            this.x = p.getX();
+            this.y = p.getY();
+            this.z = p.getZ();
+            this.attenuationType = p.template.getAttenuationType();
+        }
+    }
+}
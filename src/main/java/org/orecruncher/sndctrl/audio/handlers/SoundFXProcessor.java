@@ -18,9 +18,11 @@
 
 package org.orecruncher.sndctrl.audio.handlers;
 
+import it.unimi.dsi.fastutil.objects.Reference2FloatMap;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.client.audio.AudioStreamBuffer;
 import net.minecraft.client.audio.ChannelManager;
+import net.minecraft.client.audio.IAudioStream;
 import net.minecraft.client.audio.ISound;
 import net.minecraft.client.audio.SoundSource;
 import net.minecraft.util.text.TextFormatting;
@@ -33,11 +35,10 @@ import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.openal.AL10;
-import org.orecruncher.lib.Singleton;
 import org.orecruncher.lib.Utilities;
-import org.orecruncher.lib.collections.ObjectArray;
 import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.math.TimerEMA;
 import org.orecruncher.lib.threading.Worker;
 import org.orecruncher.sndctrl.api.sound.Category;
 import org.orecruncher.sndctrl.api.sound.ISoundCategory;
@@ -49,10 +50,8 @@ import org.orecruncher.sndctrl.misc.IMixinSoundContext;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Arrays;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.*;
 import java.util.function.Supplier;
 
 @Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
@@ -60,6 +59,7 @@ public final class SoundFXProcessor {
 
     private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SoundFXProcessor.class);
     private static final int SOUND_PROCESS_ITERATION = 1000 / 20;   // Match MC client tick rate
+    private static final int ACOUSTIC_CACHE_SIZE = 512;
 
     /**
      * Sound categories that are ignored when determining special effects.  Things like MASTER, and MUSIC.
@@ -67,22 +67,25 @@ public final class SoundFXProcessor {
     private static final Set<ISoundCategory> IGNORE_CATEGORIES = new ReferenceOpenHashSet<>(4);
 
     static boolean isAvailable;
-    // Sparse array to hold references to the SoundContexts of playing sounds
-    private static SourceContext[] sources;
+    // SoundContexts of the sounds that are playing
+    private static ActiveSourceSet sources;
     private static Worker soundProcessor;
+    // Set by the sound engine thread when source ticks made OpenAL calls that have not been validated
+    private static boolean validatePending;
+    // Time from a sound being queued to play until it starts, and the portion of that spent estimating effects.
+    // Updated by the sound engine thread.
+    private static final TimerEMA playStart = new TimerEMA("Play Start");
+    private static final TimerEMA estimateTime = new TimerEMA("Estimate");
 
     // Use our own thread pool avoiding the common pool.  Thread allocation is better controlled, and we won't run
-    // into/cause any problems with other tasks in the common pool.
-    private static final Singleton<ExecutorService> threadPool = new Singleton<>(() ->{
-        int threads = Config.CLIENT.sound.backgroundThreadWorkers.get();
-        if (threads == 0)
-            threads = 2;
-        LOGGER.info("Threads allocated to SoundControl sound processor: %d", threads);
-        return Executors.newFixedThreadPool(threads);
-    });
+    // into/cause any problems with other tasks in the common pool.  The pool is torn down with the sound engine.
+    private static SoundFXScheduler scheduler;
 
     private static WorldContext worldContext = new WorldContext();
 
+    // Results of prior reverb/occlusion calculations that can be reused
+    private static final AcousticCache acousticCache = new AcousticCache(ACOUSTIC_CACHE_SIZE);
+
     static {
         MinecraftForge.EVENT_BUS.register(SoundFXProcessor.class);
     }
@@ -95,6 +98,19 @@ public final class SoundFXProcessor {
         return worldContext;
     }
 
+    @Nonnull
+    static AcousticCache getAcousticCache() {
+        return acousticCache;
+    }
+
+    /**
+     * Gets the load of the sound processor as reported by its scheduler.
+     */
+    static double getProcessorLoad() {
+        final SoundFXScheduler sched = scheduler;
+        return sched != null ? sched.getLoad() : 0D;
+    }
+
     /**
      * Indicates if the SoundFX feature is available.
      *
@@ -107,7 +123,15 @@ public final class SoundFXProcessor {
     public static void initialize() {
         Effects.initialize();
 
-        sources = new SourceContext[SoundUtils.getMaxSounds()];
+        sources = new ActiveSourceSet(SoundUtils.getMaxSounds());
+
+        if (scheduler == null) {
+            int threads = Config.CLIENT.sound.backgroundThreadWorkers.get();
+            if (threads == 0)
+                threads = 2;
+            LOGGER.info("Threads allocated to SoundControl sound processor: %d", threads);
+            scheduler = new SoundFXScheduler(threads, SOUND_PROCESS_ITERATION);
+        }
 
         if (soundProcessor == null) {
             soundProcessor = new Worker(
@@ -136,10 +160,15 @@ public final class SoundFXProcessor {
                 soundProcessor.stop();
                 soundProcessor = null;
             }
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
             if (sources != null) {
-                Arrays.fill(sources, null);
+                sources.clear();
                 sources = null;
             }
+            acousticCache.clear();
             Effects.deinitialize();
         }
     }
@@ -161,15 +190,20 @@ public final class SoundFXProcessor {
             return;
 
         // Double suplex!  Queue the operation on the sound executor to do the config work.  This should queue in
-        // behind any attempt at getting a sound source.
+        // behind any attempt at getting a sound source.  Only a quick estimate is made here so the sound is not held
+        // up; the full calculation is picked up by the sound processor.
+        final long queued = System.nanoTime();
         entry.runOnSoundExecutor(source -> {
             if (source.id > 0) {
                 final SourceContext ctx = new SourceContext();
                 ctx.attachSound(sound);
                 ctx.enable();
-                ctx.exec();
+                ctx.setPlayQueued(queued);
+                final long start = System.nanoTime();
+                ctx.estimate();
+                estimateTime.update(System.nanoTime() - start);
                 ((IMixinSoundContext) source).setData(ctx);
-                sources[source.id - 1] = ctx;
+                sources.add(ctx);
             }
         });
     }
@@ -182,8 +216,39 @@ public final class SoundFXProcessor {
      */
     public static void tick(@Nonnull final SoundSource source) {
         final SourceContext ctx = ((IMixinSoundContext)source).getData();
-        if (ctx != null)
-            ctx.tick(source.id);
+        if (ctx != null && ctx.tick(source.id))
+            validatePending = true;
+    }
+
+    /**
+     * Callback hook from an injection.  Invoked by the sound processing thread when a sound source is about to start
+     * playing.
+     *
+     * @param source SoundSource being started
+     */
+    public static void play(@Nonnull final SoundSource source) {
+        tick(source);
+        final SourceContext ctx = ((IMixinSoundContext)source).getData();
+        if (ctx != null) {
+            final long queued = ctx.takePlayQueued();
+            if (queued != 0)
+                playStart.update(System.nanoTime() - queued);
+        }
+    }
+
+    /**
+     * Invoked on the sound engine thread after a batch of sound sources have been ticked.  The OpenAL calls made
+     * for the batch are validated once rather than after each call.
+     */
+    public static void endTickBatch() {
+        if (validatePending) {
+            validatePending = false;
+            try {
+                validate("SoundFXProcessor::endTickBatch");
+            } catch (@Nonnull final Throwable t) {
+                LOGGER.error(t, "Error applying sound effects");
+            }
+        }
     }
 
     /**
@@ -193,8 +258,29 @@ public final class SoundFXProcessor {
      */
     public static void stopSoundPlay(@Nonnull final SoundSource source) {
         final SourceContext ctx = ((IMixinSoundContext)source).getData();
-        if (ctx != null)
-            sources[source.id - 1] = null;
+        if (ctx != null && sources != null)
+            sources.remove(ctx);
+    }
+
+    /**
+     * Collects the gain of the direct path of the sounds that are being processed.  Sounds not being processed are
+     * not added.  Called from the client thread.
+     *
+     * @param dest Map to receive the gain of each sound
+     */
+    public static void gatherDirectGain(@Nonnull final Reference2FloatMap<ISound> dest) {
+        final ActiveSourceSet contexts = sources;
+        if (contexts == null)
+            return;
+        final int limit = contexts.limit();
+        for (int i = 0; i < limit; i++) {
+            final SourceContext ctx = contexts.get(i);
+            if (ctx != null) {
+                final ISound sound = ctx.getSound();
+                if (sound != null)
+                    dest.put(sound, ctx.getDirectGain());
+            }
+        }
     }
 
     /**
@@ -223,6 +309,31 @@ public final class SoundFXProcessor {
         return buffer;
     }
 
+    /**
+     * Injected into SoundSource and will be invoked when a streaming sound is attached to the SoundSource.  Take the
+     * opportunity to have the stream downmixed into mono format as it is read if needed.
+     *
+     * @param source SoundSource for which the stream is being attached
+     * @param stream The stream in question
+     */
+    @Nonnull
+    public static IAudioStream playStream(@Nonnull final SoundSource source, @Nonnull final IAudioStream stream) {
+
+        // If disabled return
+        if (!Config.CLIENT.sound.enableMonoConversion.get())
+            return stream;
+
+        final SourceContext ctx = ((IMixinSoundContext) source).getData();
+
+        // Same rules as for buffers
+        boolean doConversion = ctx == null || (ctx.getSound() != null && ctx.getSound().getAttenuationType() != ISound.AttenuationType.NONE);
+
+        if (doConversion)
+            return Conversion.convert(stream);
+
+        return stream;
+    }
+
     /**
      * Invoked on a client tick. Establishes the current world context for further computation..
      *
@@ -238,28 +349,18 @@ public final class SoundFXProcessor {
     /**
      * Separate thread for evaluating the environment for the sound play.  These routines can get a little heavy
      * so offloading to a separate thread to keep it out of either the client tick or sound engine makes sense.
+     * The scheduler does not wait past the iteration deadline; unfinished work carries into the next iteration.
      */
     private static void processSounds() {
         try {
-            final ExecutorService pool = threadPool.get();
-            assert pool != null;
-            final ObjectArray<Future<?>> tasks = new ObjectArray<>(256);
-            for (int i = 0; i < SoundUtils.getMaxSounds(); i++) {
-                final SourceContext ctx = sources[i];
-                if (ctx != null && ctx.shouldExecute()) {
-                    tasks.add(pool.submit(ctx));
-                }
+            final ActiveSourceSet contexts = sources;
+            final SoundFXScheduler sched = scheduler;
+            if (contexts != null && sched != null) {
+                contexts.sample();
+                sched.process(contexts, worldContext.playerEyePosition);
             }
-
-            if (tasks.size() > 0)
-                tasks.forEach(t -> {
-                    try {
-                        t.get();
-                    } catch (InterruptedException | ExecutionException ignored) {
-                    }
-                });
         } catch (@Nonnull final Throwable t) {
-            LOGGER.error(t, "Error in SoundContext ForkJoinPool");
+            LOGGER.error(t, "Error in SoundContext scheduler");
         }
     }
 
@@ -269,9 +370,23 @@ public final class SoundFXProcessor {
             final String msg = soundProcessor.getDiagnosticString();
             if (!StringUtils.isEmpty(msg))
                 event.getLeft().add(TextFormatting.GREEN + msg);
+            if (sources != null)
+                event.getLeft().add(TextFormatting.GREEN + sources.getDiagnosticString());
+            final SoundFXScheduler sched = scheduler;
+            if (sched != null) {
+                event.getLeft().add(TextFormatting.GREEN + sched.getDiagnosticString());
+                event.getLeft().add(TextFormatting.GREEN + sched.getZoneDiagnosticString());
+            }
+            event.getLeft().add(TextFormatting.GREEN + String.format("SoundFX Play: start %.3fms, estimate %.3fms", msecs(playStart), msecs(estimateTime)));
+            event.getLeft().add(TextFormatting.GREEN + acousticCache.getDiagnosticString());
         }
     }
 
+    private static double msecs(@Nonnull final TimerEMA timer) {
+        final double ms = timer.getMSecs();
+        return Double.isNaN(ms) ? 0 : ms;
+    }
+
     /**
      * Validates that the current OpenAL state is not in error.  If in an error state an exception will be thrown.
      *
@@ -0,0 +1,382 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Reference2FloatOpenHashMap;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.math.EMA;
+import org.orecruncher.lib.math.TimerEMA;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.api.sound.Category;
+import org.orecruncher.sndctrl.api.sound.ISoundCategory;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Schedules SourceContext calculations against the deadline of a sound processor iteration.  Contexts that are due
+ * are ordered by priority (distance to the listener, category, and how long since their last update) and admitted
+ * until the estimated cost of the work fills the iteration budget of the worker threads.  Whatever does not fit, or
+ * has not started by the deadline, is carried into the next iteration where its staleness moves it up the queue.
+ * Calculations still running at the deadline are not waited on; they finish in the background and their context is
+ * skipped until they do.  Admitted contexts are placed in a queue that a fixed set of worker tasks on a dedicated
+ * ForkJoinPool claim from, so idle workers pick up what busy ones have not reached.  A worker still finishing a
+ * calculation from a prior iteration joins in on the current queue when it is done.  The queue and the worker tasks
+ * are reused between iterations, so scheduling does not allocate once the queue has grown to fit.
+ */
+@OnlyIn(Dist.CLIENT)
+final class SoundFXScheduler {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SoundFXScheduler.class);
+
+    // Portion of the iteration that is given to calculations.  The rest is slack for the dispatcher.
+    private static final double BUDGET_RATIO = 0.8D;
+    // Distance, in blocks, at which a sound's priority is halved
+    private static final float DISTANCE_SCALE = 16F;
+    // Priority boost for each iteration since the last update
+    private static final float STALENESS_WEIGHT = 0.25F;
+    // Staleness is capped so that brand new contexts do not swamp everything else
+    private static final int MAX_STALENESS = 20;
+
+    // Categories that are less important than normal.  They tend to be diffuse background sounds.
+    private static final Reference2FloatOpenHashMap<ISoundCategory> CATEGORY_WEIGHT = new Reference2FloatOpenHashMap<>();
+
+    private static final Comparator<SourceContext> PRIORITY_ORDER = (c1, c2) -> Float.compare(c2.getPriority(), c1.getPriority());
+
+    static {
+        CATEGORY_WEIGHT.defaultReturnValue(1F);
+        CATEGORY_WEIGHT.put(Category.AMBIENT, 0.5F);
+        CATEGORY_WEIGHT.put(Category.WEATHER, 0.5F);
+    }
+
+    private final ForkJoinPool pool;
+    private final Consumer<SourceContext> task;
+    private final int parallelism;
+    private final long budgetNanos;
+
+    private final TimerEMA latency = new TimerEMA("Latency");
+    private final EMA queueDepth = new EMA("Queue Depth");
+    private final EMA loadAverage = new EMA("Load", 20);
+    private volatile double load;
+    private final AtomicInteger missed = new AtomicInteger();
+    private final AcousticZones zones = new AcousticZones();
+    private long totalMissed;
+    private int lastMissed;
+    private int lastOverrun;
+    private int lastDeferred;
+    private int lastInFlight;
+
+    private SourceContext[] ready = new SourceContext[64];
+    private long iteration;
+
+    // Contexts admitted in the current iteration.  A worker claims one by swapping it out of the queue, so each is
+    // handed out exactly once even to a worker that is running late.
+    private volatile AtomicReferenceArray<SourceContext> queue = new AtomicReferenceArray<>(64);
+    private final AtomicInteger cursor = new AtomicInteger();
+    private volatile int queueEnd;
+    // Iteration in the high 32 bits and the number of admitted contexts that have not finished in the low 32
+    private final AtomicLong outstanding = new AtomicLong();
+    private final Drain[] drains;
+    private volatile Thread waiter;
+
+    SoundFXScheduler(final int threads, final int iterationMsecs) {
+        this(threads, iterationMsecs, SourceContext::exec);
+    }
+
+    /**
+     * Creates a scheduler that performs the specified task for each context it admits.
+     *
+     * @param threads        Number of worker threads
+     * @param iterationMsecs Length of a processing iteration
+     * @param task           Work to perform for a context
+     */
+    SoundFXScheduler(final int threads, final int iterationMsecs, @Nonnull final Consumer<SourceContext> task) {
+        final AtomicInteger count = new AtomicInteger();
+        this.parallelism = threads;
+        this.task = task;
+        this.budgetNanos = (long) (TimeUnit.MILLISECONDS.toNanos(iterationMsecs) * BUDGET_RATIO);
+        this.pool = new ForkJoinPool(threads, p -> {
+            final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("SoundControl FX Worker " + count.incrementAndGet());
+            return t;
+        }, null, false);
+        this.drains = new Drain[threads];
+        for (int i = 0; i < threads; i++)
+            this.drains[i] = new Drain();
+    }
+
+    /**
+     * Performs an iteration of scheduling.  Returns when the admitted work has completed or the deadline has been
+     * reached, whichever comes first.
+     *
+     * @param sources  Contexts for the sounds that are playing
+     * @param listener Position of the listener
+     */
+    void process(@Nonnull final ActiveSourceSet sources, @Nonnull final Vector3d listener) {
+        final long start = System.nanoTime();
+        final long deadline = start + this.budgetNanos;
+        final double load = this.load;
+        final long current = ++this.iteration;
+
+        // Gather the contexts that are due along with those carried over from prior iterations
+        int count = 0;
+        int inFlight = 0;
+        final int limit = sources.limit();
+        for (int i = 0; i < limit; i++) {
+            final SourceContext ctx = sources.get(i);
+            if (ctx == null)
+                continue;
+            if (ctx.isInFlight()) {
+                inFlight++;
+                continue;
+            }
+            if (ctx.shouldExecute() || ctx.isDeferred()) {
+                if (count == this.ready.length)
+                    this.ready = Arrays.copyOf(this.ready, count * 2);
+                ctx.setPriority(priority(ctx, listener, current));
+                this.ready[count++] = ctx;
+            }
+        }
+
+        this.queueDepth.update(count);
+        this.lastInFlight = inFlight;
+
+        int deferred = 0;
+        int overrun = 0;
+        if (count > 0) {
+            Arrays.sort(this.ready, 0, count, PRIORITY_ORDER);
+
+            // Admit contexts in priority order until their estimated cost fills the budget of the workers.  The
+            // first is always admitted so that a slow context does not starve; it is sliced across iterations by
+            // being the only expensive one admitted in an iteration.
+            final long capacity = this.budgetNanos * this.parallelism;
+            long committed = 0;
+            int admitted = 0;
+            this.zones.begin();
+            for (int i = 0; i < count; i++) {
+                final SourceContext ctx = this.ready[i];
+                this.ready[i] = null;
+                final long cost = ctx.getCost();
+                if (admitted > 0 && committed + cost > capacity) {
+                    ctx.setDeferred(true);
+                    deferred++;
+                } else {
+                    committed += cost;
+                    ctx.setInFlight(true);
+                    this.zones.assign(ctx, listener, load);
+                    this.ready[admitted++] = ctx;
+                }
+            }
+            this.zones.end();
+
+            publish(admitted, deadline, current);
+
+            // Wait for the admitted work or the deadline
+            long remaining;
+            while ((int) this.outstanding.get() != 0 && (remaining = deadline - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, remaining);
+
+            // Whatever has not been claimed is carried into the next iteration
+            final AtomicReferenceArray<SourceContext> q = this.queue;
+            for (int i = 0; i < admitted; i++) {
+                final SourceContext ctx = q.getAndSet(i, null);
+                if (ctx != null) {
+                    this.missed.incrementAndGet();
+                    ctx.setDeferred(true);
+                    ctx.setInFlight(false);
+                }
+            }
+
+            // Whatever is still running is not waited on
+            for (int i = 0; i < admitted; i++) {
+                if (this.ready[i].isInFlight())
+                    overrun++;
+                this.ready[i] = null;
+            }
+        }
+
+        this.lastDeferred = deferred;
+        this.lastOverrun = overrun;
+        this.lastMissed = this.missed.getAndSet(0);
+        this.totalMissed += this.lastMissed;
+
+        // The share of the budget used tops out at 1 since the iteration does not wait past its deadline.  Past that
+        // the share of the due contexts that were left undone is what shows how far behind the workers are.
+        final double busy = Math.min((double) (System.nanoTime() - start) / this.budgetNanos, 1D);
+        final double late = count > 0 ? (double) (deferred + overrun + this.lastMissed) / count : 0D;
+        this.load = this.loadAverage.update(busy + Math.min(late, 1D));
+    }
+
+    /**
+     * Gets the load of the scheduler, averaged over recent iterations.  Up to 1 it is the share of the iteration
+     * budget the work took.  Above 1 the workers are not keeping up and the excess is the share of the due contexts
+     * that were deferred, missed, or still running at the deadline.  Can be called from any thread.
+     */
+    double getLoad() {
+        return this.load;
+    }
+
+    /**
+     * Places the admitted contexts in the queue and makes sure every worker task is running to claim them.
+     */
+    private void publish(final int admitted, final long deadline, final long current) {
+        this.waiter = Thread.currentThread();
+        if (this.queue.length() < admitted)
+            this.queue = new AtomicReferenceArray<>(Math.max(admitted, this.queue.length() * 2));
+
+        // The count is set before anything can be claimed so that no completion is lost
+        this.outstanding.set(((current & 0xFFFFFFFFL) << 32) | admitted);
+        final AtomicReferenceArray<SourceContext> q = this.queue;
+        for (int i = 0; i < admitted; i++) {
+            this.ready[i].setAdmission(current, deadline);
+            q.set(i, this.ready[i]);
+        }
+        this.queueEnd = admitted;
+        this.cursor.set(0);
+
+        for (final Drain drain : this.drains) {
+            if (drain.submitted && !drain.isDone()) {
+                // Still working.  It will see the new queue when it checks for more.
+                if (!drain.idle.compareAndSet(true, false))
+                    continue;
+                // On its way out having found nothing to do.  Taking the idle flag makes sure it leaves.
+                drain.quietlyJoin();
+            }
+            drain.submitted = true;
+            drain.reinitialize();
+            this.pool.execute(drain);
+        }
+    }
+
+    /**
+     * Claims and performs queued contexts until the queue is empty.
+     */
+    private void drain(@Nonnull final Drain drain) {
+        for (;;) {
+            final int i = this.cursor.getAndIncrement();
+            if (i >= this.queueEnd) {
+                // Announce the intent to stop, then look again in case work was published in the meantime.  If the
+                // scheduler took the idle flag first it is going to submit the task again, so leave.
+                drain.idle.set(true);
+                if (this.cursor.get() >= this.queueEnd || !drain.idle.compareAndSet(true, false))
+                    return;
+                continue;
+            }
+            final SourceContext ctx = this.queue.getAndSet(i, null);
+            if (ctx != null) {
+                // Read before the work is done; once out of flight the context can be admitted again
+                final long current = ctx.getAdmissionIteration();
+                execute(ctx, ctx.getAdmissionDeadline(), current);
+                finished(current);
+            }
+        }
+    }
+
+    private void finished(final long current) {
+        final long tag = current & 0xFFFFFFFFL;
+        long state;
+        do {
+            state = this.outstanding.get();
+            // Work from an iteration that has already ended is not counted
+            if ((state >>> 32) != tag || (int) state == 0)
+                return;
+        } while (!this.outstanding.compareAndSet(state, state - 1));
+        if ((int) (state - 1) == 0)
+            LockSupport.unpark(this.waiter);
+    }
+
+    private static float priority(@Nonnull final SourceContext ctx, @Nonnull final Vector3d listener, final long current) {
+        final float distance = (float) Math.sqrt(ctx.getPosition().squareDistanceTo(listener));
+        final long staleness = Math.min(current - ctx.getLastUpdate(), MAX_STALENESS);
+        return CATEGORY_WEIGHT.getFloat(ctx.getCategory()) * (1F + staleness * STALENESS_WEIGHT) / (1F + distance / DISTANCE_SCALE);
+    }
+
+    private void execute(@Nonnull final SourceContext ctx, final long deadline, final long current) {
+        final long start = System.nanoTime();
+        if (start > deadline) {
+            // Missed the deadline for this iteration.  Try again next time.
+            this.missed.incrementAndGet();
+            ctx.setDeferred(true);
+            ctx.setInFlight(false);
+            return;
+        }
+
+        try {
+            this.task.accept(ctx);
+        } catch (@Nonnull final Throwable t) {
+            // Keep going so the rest of the queue is not stranded in flight
+            LOGGER.error(t, "Error processing SoundContext %s", ctx.toString());
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            synchronized (this.latency) {
+                this.latency.update(elapsed);
+            }
+            ctx.completed(elapsed, current);
+        }
+    }
+
+    /**
+     * Stops the worker threads.  Calculations that are running are abandoned.
+     */
+    void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    @Nonnull
+    String getDiagnosticString() {
+        final double ms;
+        synchronized (this.latency) {
+            ms = this.latency.getMSecs();
+        }
+        return String.format("SoundFX Scheduler: queue %.1f, deferred %d, in flight %d, overrun %d, missed %d (%d total), latency %.3fms",
+                this.queueDepth.get(), this.lastDeferred, this.lastInFlight, this.lastOverrun, this.lastMissed, this.totalMissed, Double.isNaN(ms) ? 0 : ms);
+    }
+
+    @Nonnull
+    String getZoneDiagnosticString() {
+        return this.zones.getDiagnosticString();
+    }
+
+    /**
+     * Worker task that drains the queue.  One per worker thread, reused between iterations.
+     */
+    private final class Drain extends RecursiveAction {
+
+        // Only touched by the scheduling thread
+        boolean submitted;
+        final AtomicBoolean idle = new AtomicBoolean();
+
+        @Override
+        protected void compute() {
+            this.idle.set(false);
+            drain(this);
+        }
+    }
+}
@@ -25,33 +25,42 @@
  * - Added effect of rain on sound dampening
  * - Listener head in various fluids support
  * - Precache frequently used world information
+ * - Trace against an immutable snapshot of the world rather than the live client world
+ * - Allocation free primitive ray casting
+ * - Cache results by source/listener location
+ * - Scale the reverb ray budget by distance, category, and processor load
+ * - Trace reverb rays in packets
+ * - Only retrace occlusion when the path moves or a block along it changes
+ * - Shared listener visibility field in place of rays cast back to the player
+ * - Publish results to the sound engine thread without locking
+ * - Quick occlusion only estimate when a sound starts
+ * - Cached precipitation lookups for weather absorption
+ * - Share the reverb trace between sources that are close together
  */
 
 package org.orecruncher.sndctrl.audio.handlers;
 
-import net.minecraft.block.BlockState;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.*;
 import net.minecraft.util.math.vector.Vector3d;
-import net.minecraft.util.math.vector.Vector3i;
-import net.minecraft.world.IWorldReader;
 import net.minecraft.world.biome.Biome;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.lib.WorldUtils;
-import org.orecruncher.lib.math.BlockRayTrace;
 import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.lib.math.RayTraceIterator;
+import org.orecruncher.lib.math.VoxelHit;
+import org.orecruncher.lib.math.VoxelRayCaster;
+import org.orecruncher.lib.math.VoxelRayPacket;
+import org.orecruncher.lib.world.PrecipitationCache;
+import org.orecruncher.lib.world.VoxelSnapshot;
 import org.orecruncher.mobeffects.library.Constants;
 import org.orecruncher.sndctrl.audio.SoundUtils;
 import org.orecruncher.sndctrl.config.Config;
-import org.orecruncher.sndctrl.audio.handlers.effects.LowPassData;
-import org.orecruncher.sndctrl.audio.handlers.effects.SourcePropertyFloat;
 import org.orecruncher.sndctrl.library.AudioEffectLibrary;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
-import java.util.Iterator;
+import java.util.Arrays;
 
 @OnlyIn(Dist.CLIENT)
 public final class SoundFXUtils {
@@ -60,76 +69,81 @@ public final class SoundFXUtils {
      * Maximum number of segments to check when ray tracing for occlusion.
      */
     private static final int OCCLUSION_SEGMENTS = 5;
-    /**
-     * Number of rays to project when doing reverb calculations.
-     */
-    private static final int REVERB_RAYS = 32;
-    /**
-     * Number of bounces a sound wave will make when projecting.
-     */
-    private static final int REVERB_RAY_BOUNCES = 4;
     /**
      * Maximum distance to trace a reverb ray segment before stopping.
      */
     private static final float MAX_REVERB_DISTANCE = 256;
-    /**
-     * Reciprocal of the total number of rays cast.
-     */
-    private static final float RECIP_TOTAL_RAYS = 1F / (REVERB_RAYS * REVERB_RAY_BOUNCES);
-    /**
-     * Reciprocal of the total primary rays.
-     */
-    private static final float RECIP_PRIMARY_RAYS = 1F / REVERB_RAYS;
-    /**
-     * Sound reflection energy coefficient
-     */
-    private static final float ENERGY_COEFF = 0.75F * 0.25F * RECIP_TOTAL_RAYS;
-    /**
-     * Sound reflection energy constant
-     */
-    private static final float ENERGY_CONST = 0.25F * 0.25F * RECIP_TOTAL_RAYS;
-    /**
-     * Normals for the direction of each of the rays to be cast.
-     */
-    private static final Vector3d[] REVERB_RAY_NORMALS = new Vector3d[REVERB_RAYS];
-    /**
-     * Precalculated vectors to determine end targets relative to an origin.
-     */
-    private static final Vector3d[] REVERB_RAY_PROJECTED = new Vector3d[REVERB_RAYS];
-    /**
-     * Precaluclated direction surface normals as Vec3d instead of Vec3i
-     */
-    private static final Vector3d[] SURFACE_DIRECTION_NORMALS = new Vector3d[Direction.values().length];
-
-    static {
 
-        // Would have been cool to have a direction vec as a 3d as well as 3i.
-        for (final Direction d : Direction.values()) {
-            Vector3i v = d.getDirectionVec();
-            SURFACE_DIRECTION_NORMALS[d.ordinal()] = new Vector3d(v.getX(), v.getY(), v.getZ());
-        }
+    private final SourceContext source;
+    private final RayTraceIterator occlusionIterator;
+    private final VoxelRayPacket rayPacket;
+    private final VoxelRayCaster visibilityCaster;
+    private final float[] bounceRatio = new float[ReverbDetail.MAX_BOUNCES];
+    private final TracedSections traced = new TracedSections();
+
+    // Per ray state while tracing reverb bounces
+    private final int[] liveRays = new int[ReverbDetail.MAX_RAYS];
+    private final double[] lastHitX = new double[ReverbDetail.MAX_RAYS];
+    private final double[] lastHitY = new double[ReverbDetail.MAX_RAYS];
+    private final double[] lastHitZ = new double[ReverbDetail.MAX_RAYS];
+    private final Direction[] lastHitFace = new Direction[ReverbDetail.MAX_RAYS];
+    private final int[] lastHitState = new int[ReverbDetail.MAX_RAYS];
+    private final double[] rayDirX = new double[ReverbDetail.MAX_RAYS];
+    private final double[] rayDirY = new double[ReverbDetail.MAX_RAYS];
+    private final double[] rayDirZ = new double[ReverbDetail.MAX_RAYS];
+    private final double[] rayDistance = new double[ReverbDetail.MAX_RAYS];
+    private final float[] reflectivity = new float[ReverbDetail.MAX_RAYS];
 
-        // Pre-calculate the known vectors that will be projected off a sound source when casting about to establish
-        // reverb effects.
-        for (int i = 0; i < REVERB_RAYS; i++) {
-            final double longitude = MathStuff.ANGLE * i;
-            final double latitude = Math.asin(((double) i / REVERB_RAYS) * 2.0D - 1.0D);
+    public SoundFXUtils(@Nonnull final SourceContext source) {
+        this.source = source;
+        this.occlusionIterator = new RayTraceIterator(new VoxelRayCaster(RayTraceContext.BlockMode.VISUAL, RayTraceContext.FluidMode.SOURCE_ONLY));
+        this.rayPacket = new VoxelRayPacket(ReverbDetail.MAX_RAYS, RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
+        this.visibilityCaster = new VoxelRayCaster(RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
+    }
 
-            REVERB_RAY_NORMALS[i] = new Vector3d(
-                    Math.cos(latitude) * Math.cos(longitude),
-                    Math.cos(latitude) * Math.sin(longitude),
-                    Math.sin(latitude)
-            ).normalize();
+    /**
+     * Makes a quick first pass at the effects for a sound that is about to start so it does not have to wait on a
+     * full calculation.  A cached result for the sound and listener location is used if there is one.  Otherwise the
+     * estimate is occlusion only, with reverb filled in when the full calculation runs on the processor pool.
+     *
+     * @param ctx Context of the world to evaluate against
+     * @return true if a full calculation is still needed, false otherwise
+     */
+    public boolean estimate(@Nonnull final WorldContext ctx) {
 
-            REVERB_RAY_PROJECTED[i] = REVERB_RAY_NORMALS[i].scale(MAX_REVERB_DISTANCE);
+        if (ctx.isNotValid()
+                || !this.source.isEnabled()
+                || this.source.getSound() == null
+                || !SoundUtils.inRange(ctx.playerEyePosition, this.source.getSound())
+                || this.source.getPosition().equals(Vector3d.ZERO)) {
+            this.clearSettings();
+            return false;
         }
 
-    }
-
-    private final SourceContext source;
+        final Vector3d soundPos = offsetPositionIfSolid(ctx.snapshot, this.source.getPosition(), ctx.playerEyePosition);
+        final float airAbsorptionFactor = calculateWeatherAbsorption(ctx, soundPos, ctx.playerEyePosition);
+        final ReverbDetail detail = ReverbDetail.select(
+                soundPos.squareDistanceTo(ctx.playerEyePosition),
+                this.source.getCategory(),
+                SoundFXProcessor.getProcessorLoad());
+        final boolean occlusion = doOcclusion();
+        final AcousticCache.Result cached = SoundFXProcessor.getAcousticCache().get(new AcousticCache.Key(ctx, soundPos, occlusion, detail.tier));
+        if (cached != null) {
+            this.source.publish(cached, airAbsorptionFactor, false);
+            return false;
+        }
 
-    public SoundFXUtils(@Nonnull final SourceContext source) {
-        this.source = source;
+        final float occlusionAccumulation = calculateOcclusion(ctx, soundPos, ctx.playerEyePosition, occlusion);
+        final float directCutoff = (float) MathStuff.exp(-occlusionAccumulation * Effects.GLOBAL_BLOCK_ABSORPTION * 3.0F) * (1F - ctx.auralDampening);
+        final float directGain = (float) MathStuff.pow(directCutoff, 0.1);
+        final AcousticCache.Result result = new AcousticCache.Result(
+                0F, directCutoff,
+                0F, directCutoff,
+                0F, directCutoff,
+                0F, directCutoff,
+                directGain, directCutoff);
+        this.source.publish(result, airAbsorptionFactor, true);
+        return true;
     }
 
     public void calculate(@Nonnull final WorldContext ctx) {
@@ -151,17 +165,53 @@ public final class SoundFXUtils {
         }
 
         // Need to offset sound toward player if it is in a solid block
-        final Vector3d soundPos = offsetPositionIfSolid(ctx.world, this.source.getPosition(), ctx.playerEyePosition);
+        final Vector3d soundPos = offsetPositionIfSolid(ctx.snapshot, this.source.getPosition(), ctx.playerEyePosition);
 
-        final float absorptionCoeff = Effects.GLOBAL_BLOCK_ABSORPTION * 3.0F;
         final float airAbsorptionFactor = calculateWeatherAbsorption(ctx, soundPos, ctx.playerEyePosition);
-        final float occlusionAccumulation = calculateOcclusion(ctx, soundPos, ctx.playerEyePosition);
-        final float sendCoeff = -occlusionAccumulation * absorptionCoeff;
 
-        float directCutoff = (float) MathStuff.exp(sendCoeff);
+        // If the acoustics for this source and listener location have been calculated recently, and nothing has
+        // changed in the area, reuse the result.
+        final AcousticCache cache = SoundFXProcessor.getAcousticCache();
+        final ReverbDetail detail = ReverbDetail.select(
+                soundPos.squareDistanceTo(ctx.playerEyePosition),
+                this.source.getCategory(),
+                SoundFXProcessor.getProcessorLoad());
+        final boolean occlusion = doOcclusion();
+        final AcousticCache.Key key = new AcousticCache.Key(ctx, soundPos, occlusion, detail.tier);
+        AcousticCache.Result result = cache.get(key);
+        if (result == null) {
+            // Sources near each other share the reverb traced for their zone; only the direct path is their own
+            final AcousticZones.Zone zone = this.source.getZone();
+            final float occlusionAccumulation = calculateOcclusion(ctx, soundPos, ctx.playerEyePosition, occlusion);
+            final Reverb reverb = zone != null && zone.isShared() ? zone.getReverb(this, ctx) : traceReverb(ctx, soundPos, detail);
+            result = finish(ctx, reverb, occlusionAccumulation);
+
+            // The result holds until a block changes in a section that either the reverb or the direct path crossed
+            this.traced.clear();
+            this.traced.addAll(reverb.sections);
+            this.traced.addSegment(soundPos.x, soundPos.y, soundPos.z, ctx.playerEyePosition.x, ctx.playerEyePosition.y, ctx.playerEyePosition.z);
+            cache.put(key, result, ctx.changeEpoch, this.traced.toArray());
+        }
 
-        // Handle any dampening effects from the player - like head in water
-        directCutoff *= 1F - ctx.auralDampening;
+        apply(result, airAbsorptionFactor);
+    }
+
+    /**
+     * Traces the occlusion and reverb of the sound at the given position.  Package visible so that the calculation
+     * can be benchmarked against a synthetic world.
+     */
+    @Nonnull
+    AcousticCache.Result compute(@Nonnull final WorldContext ctx, @Nonnull final Vector3d soundPos, @Nonnull final ReverbDetail detail, final boolean occlusion) {
+        final float occlusionAccumulation = calculateOcclusion(ctx, soundPos, ctx.playerEyePosition, occlusion);
+        return finish(ctx, traceReverb(ctx, soundPos, detail), occlusionAccumulation);
+    }
+
+    /**
+     * Traces the reverb of a sound at the given position.  The result does not depend on the occlusion of the direct
+     * path so it can be shared by sounds that are close together.
+     */
+    @Nonnull
+    Reverb traceReverb(@Nonnull final WorldContext ctx, @Nonnull final Vector3d soundPos, @Nonnull final ReverbDetail detail) {
 
         // Calculate reverb parameters for this sound
         float sendGain0 = 0F;
@@ -169,69 +219,117 @@ public final class SoundFXUtils {
         float sendGain2 = 0F;
         float sendGain3 = 0F;
 
-        float sendCutoff0;
-        float sendCutoff1;
-        float sendCutoff2;
-        float sendCutoff3;
-
         // Shoot rays around sound
-        final float[] bounceRatio = new float[REVERB_RAY_BOUNCES];
+        final float[] bounceRatio = this.bounceRatio;
+        Arrays.fill(bounceRatio, 0F);
 
         float sharedAirspace = 0F;
 
-        final BlockRayTrace traceContext = new BlockRayTrace(ctx.world, RayTraceContext.BlockMode.COLLIDER, RayTraceContext.FluidMode.SOURCE_ONLY);
-
-        for (int i = 0; i < REVERB_RAYS; i++) {
-
-            Vector3d origin = soundPos;
-            Vector3d target = origin.add(REVERB_RAY_PROJECTED[i]);
-
-            BlockRayTraceResult rayHit = traceContext.trace(origin, target);
-
-            if (isMiss(rayHit))
-                continue;
-
-            // Additional bounces
-            BlockPos lastHitBlock = rayHit.getPos();
-            Vector3d lastHitPos = rayHit.getHitVec();
-            Vector3d lastHitNormal = surfaceNormal(rayHit.getFace());
-            Vector3d lastRayDir = REVERB_RAY_NORMALS[i];
-
-            double totalRayDistance = origin.distanceTo(rayHit.getHitVec());
-
-            // Secondary ray bounces
-            for (int j = 0; j < REVERB_RAY_BOUNCES; j++) {
-
-                final float blockReflectivity = AudioEffectLibrary.getReflectivity(ctx.world.getBlockState(lastHitBlock));
-                final float energyTowardsPlayer = blockReflectivity * ENERGY_COEFF + ENERGY_CONST;
-
-                final Vector3d newRayDir = MathStuff.reflection(lastRayDir, lastHitNormal);
-                origin = MathStuff.addScaled(lastHitPos, newRayDir, 0.01F);
-                target = MathStuff.addScaled(origin, newRayDir, MAX_REVERB_DISTANCE);
-
-                rayHit = traceContext.trace(origin, target);
+        final VoxelSnapshot world = ctx.snapshot;
+        final VoxelRayPacket packet = this.rayPacket;
+        final TracedSections traced = this.traced;
+        traced.clear();
+        final ListenerVisibility visibility = ctx.visibility;
+        final int[] liveRays = this.liveRays;
+
+        final double eyeX = ctx.playerEyePosition.x;
+        final double eyeY = ctx.playerEyePosition.y;
+        final double eyeZ = ctx.playerEyePosition.z;
+
+        // Primary rays all originate at the sound position, so trace them together
+        packet.clear();
+        for (int i = 0; i < detail.rays; i++) {
+            packet.add(soundPos.x, soundPos.y, soundPos.z,
+                    soundPos.x + detail.normalX[i] * MAX_REVERB_DISTANCE,
+                    soundPos.y + detail.normalY[i] * MAX_REVERB_DISTANCE,
+                    soundPos.z + detail.normalZ[i] * MAX_REVERB_DISTANCE);
+        }
+        packet.trace(world);
+
+        int live = 0;
+        for (int i = 0; i < detail.rays; i++) {
+            addTraced(world, soundPos.x, soundPos.y, soundPos.z, detail.normalX[i], detail.normalY[i], detail.normalZ[i], packet, i);
+            if (packet.isHit(i)) {
+                liveRays[live++] = i;
+                this.lastHitX[i] = packet.getHitX(i);
+                this.lastHitY[i] = packet.getHitY(i);
+                this.lastHitZ[i] = packet.getHitZ(i);
+                this.lastHitFace[i] = packet.getFace(i);
+                this.lastHitState[i] = packet.getStateId(i);
+                this.rayDirX[i] = detail.normalX[i];
+                this.rayDirY[i] = detail.normalY[i];
+                this.rayDirZ[i] = detail.normalZ[i];
+                this.rayDistance[i] = packet.getDistance(i);
+            }
+        }
 
-                if (isMiss(rayHit)) {
-                    totalRayDistance += lastHitPos.distanceTo(ctx.playerEyePosition);
+        // Secondary ray bounces.  Each level of bounce is traced as a packet.
+        for (int j = 0; j < detail.bounces && live > 0; j++) {
+
+            packet.clear();
+            for (int k = 0; k < live; k++) {
+                final int i = liveRays[k];
+                this.reflectivity[i] = AudioEffectLibrary.getReflectivity(this.lastHitState[i]);
+
+                // Reflect the ray off the surface that was hit
+                final Direction face = this.lastHitFace[i];
+                final int normalX = face.getXOffset();
+                final int normalY = face.getYOffset();
+                final int normalZ = face.getZOffset();
+                final double dot2 = (this.rayDirX[i] * normalX + this.rayDirY[i] * normalY + this.rayDirZ[i] * normalZ) * 2;
+                final double newRayDirX = this.rayDirX[i] - dot2 * normalX;
+                final double newRayDirY = this.rayDirY[i] - dot2 * normalY;
+                final double newRayDirZ = this.rayDirZ[i] - dot2 * normalZ;
+                this.rayDirX[i] = newRayDirX;
+                this.rayDirY[i] = newRayDirY;
+                this.rayDirZ[i] = newRayDirZ;
+
+                final double originX = this.lastHitX[i] + newRayDirX * 0.01F;
+                final double originY = this.lastHitY[i] + newRayDirY * 0.01F;
+                final double originZ = this.lastHitZ[i] + newRayDirZ * 0.01F;
+
+                packet.add(originX, originY, originZ,
+                        originX + newRayDirX * MAX_REVERB_DISTANCE,
+                        originY + newRayDirY * MAX_REVERB_DISTANCE,
+                        originZ + newRayDirZ * MAX_REVERB_DISTANCE);
+            }
+            packet.trace(world);
+
+            int next = 0;
+            for (int k = 0; k < live; k++) {
+                final int i = liveRays[k];
+                final float blockReflectivity = this.reflectivity[i];
+                final float energyTowardsPlayer = blockReflectivity * detail.energyCoeff + detail.energyConst;
+                addTraced(world, this.lastHitX[i], this.lastHitY[i], this.lastHitZ[i], this.rayDirX[i], this.rayDirY[i], this.rayDirZ[i], packet, k);
+
+                if (!packet.isHit(k)) {
+                    // Nowhere to bounce off of, stop bouncing!
+                    this.rayDistance[i] += distance(this.lastHitX[i], this.lastHitY[i], this.lastHitZ[i], eyeX, eyeY, eyeZ);
                 } else {
 
                     bounceRatio[j] += blockReflectivity;
-                    totalRayDistance += lastHitPos.distanceTo(rayHit.getHitVec());
-
-                    lastHitPos = rayHit.getHitVec();
-                    lastHitNormal = surfaceNormal(rayHit.getFace());
-                    lastRayDir = newRayDir;
-                    lastHitBlock = rayHit.getPos();
-
-                    // Cast a ray back at the player.  If it is a miss there is a path back from the reflection
-                    // point to the player meaning they share the same airspace.
-                    final Vector3d finalRayStart = MathStuff.addScaled(lastHitPos, lastHitNormal, 0.01F);
-                    final BlockRayTraceResult finalRayHit = traceContext.trace(finalRayStart, ctx.playerEyePosition);
-                    if (isMiss(finalRayHit)) {
+                    this.rayDistance[i] += distance(this.lastHitX[i], this.lastHitY[i], this.lastHitZ[i], packet.getHitX(k), packet.getHitY(k), packet.getHitZ(k));
+
+                    this.lastHitX[i] = packet.getHitX(k);
+                    this.lastHitY[i] = packet.getHitY(k);
+                    this.lastHitZ[i] = packet.getHitZ(k);
+                    this.lastHitFace[i] = packet.getFace(k);
+                    this.lastHitState[i] = packet.getStateId(k);
+
+                    // Check for a path back from the reflection point to the player.  If there is one they share
+                    // the same airspace.
+                    final Direction face = this.lastHitFace[i];
+                    if (visibility.isVisible(this.visibilityCaster,
+                            this.lastHitX[i] + face.getXOffset() * 0.01F,
+                            this.lastHitY[i] + face.getYOffset() * 0.01F,
+                            this.lastHitZ[i] + face.getZOffset() * 0.01F))
                         sharedAirspace += 1.0F;
-                    }
+                    traced.addSegment(this.lastHitX[i], this.lastHitY[i], this.lastHitZ[i], eyeX, eyeY, eyeZ);
+
+                    liveRays[next++] = i;
                 }
 
+                final double totalRayDistance = this.rayDistance[i];
                 assert totalRayDistance >= 0;
                 final float reflectionDelay = (float) totalRayDistance * 0.12F * blockReflectivity;
 
@@ -244,25 +342,75 @@ public final class SoundFXUtils {
                 sendGain1 += cross1 * energyTowardsPlayer * 12.8F;
                 sendGain2 += cross2 * energyTowardsPlayer * 12.8F;
                 sendGain3 += cross3 * energyTowardsPlayer * 12.8F;
-
-                // Nowhere to bounce off of, stop bouncing!
-                if (isMiss(rayHit)) {
-                    break;
-                }
             }
+
+            live = next;
         }
 
-        bounceRatio[0] = bounceRatio[0] / REVERB_RAYS;
-        bounceRatio[1] = bounceRatio[1] / REVERB_RAYS;
-        bounceRatio[2] = bounceRatio[2] / REVERB_RAYS;
-        bounceRatio[3] = bounceRatio[3] / REVERB_RAYS;
+        for (int j = 0; j < detail.bounces; j++)
+            bounceRatio[j] *= detail.recipRays;
+
+        // Lower detail tiers do not trace as deep.  Assume the deeper bounces reflect like the last one traced.
+        for (int j = detail.bounces; j < bounceRatio.length; j++)
+            bounceRatio[j] = bounceRatio[detail.bounces - 1];
+
+        sharedAirspace *= detail.recipTotalRays * 64F;
 
-        sharedAirspace *= RECIP_TOTAL_RAYS * 64F;
+        sendGain1 *= bounceRatio[1];
+        sendGain2 *= (float) MathStuff.pow(bounceRatio[2], 3.0);
+        sendGain3 *= (float) MathStuff.pow(bounceRatio[3], 4.0);
+
+        return new Reverb(
+                MathStuff.clamp1(sendGain0),
+                MathStuff.clamp1(sendGain1),
+                MathStuff.clamp1(sendGain2 * 1.05F - 0.05F),
+                MathStuff.clamp1(sendGain3 * 1.05F - 0.05F),
+                MathStuff.clamp1(sharedAirspace / 20.0F),
+                MathStuff.clamp1(sharedAirspace / 15.0F),
+                MathStuff.clamp1(sharedAirspace / 10.0F),
+                MathStuff.clamp1(sharedAirspace / 10.0F),
+                traced.toArray());
+    }
+
+    /**
+     * Records the sections crossed by a reverb ray: up to where it hit, or up to where it left the snapshot if it did
+     * not hit anything.
+     */
+    private void addTraced(@Nonnull final VoxelSnapshot world, final double x, final double y, final double z,
+                           final double dirX, final double dirY, final double dirZ, @Nonnull final VoxelRayPacket packet, final int lane) {
+        if (packet.isHit(lane)) {
+            this.traced.addSegment(x, y, z, packet.getHitX(lane), packet.getHitY(lane), packet.getHitZ(lane));
+        } else {
+            final double length = MAX_REVERB_DISTANCE * world.clip(x, y, z, dirX * MAX_REVERB_DISTANCE, dirY * MAX_REVERB_DISTANCE, dirZ * MAX_REVERB_DISTANCE);
+            this.traced.addSegment(x, y, z, x + dirX * length, y + dirY * length, z + dirZ * length);
+        }
+    }
+
+    /**
+     * Combines reverb with the occlusion of the direct path of a sound to get the filter parameters for the sound.
+     */
+    @Nonnull
+    private static AcousticCache.Result finish(@Nonnull final WorldContext ctx, @Nonnull final Reverb reverb, final float occlusionAccumulation) {
+
+        assert ctx.player != null;
+
+        final float absorptionCoeff = Effects.GLOBAL_BLOCK_ABSORPTION * 3.0F;
+        final float sendCoeff = -occlusionAccumulation * absorptionCoeff;
+
+        float directCutoff = (float) MathStuff.exp(sendCoeff);
+
+        // Handle any dampening effects from the player - like head in water
+        directCutoff *= 1F - ctx.auralDampening;
 
-        final float sharedAirspaceWeight0 = MathStuff.clamp1(sharedAirspace / 20.0F);
-        final float sharedAirspaceWeight1 = MathStuff.clamp1(sharedAirspace / 15.0F);
-        final float sharedAirspaceWeight2 = MathStuff.clamp1(sharedAirspace / 10.0F);
-        final float sharedAirspaceWeight3 = MathStuff.clamp1(sharedAirspace / 10.0F);
+        final float sharedAirspaceWeight0 = reverb.weight0;
+        final float sharedAirspaceWeight1 = reverb.weight1;
+        final float sharedAirspaceWeight2 = reverb.weight2;
+        final float sharedAirspaceWeight3 = reverb.weight3;
+
+        final float sendCutoff0;
+        final float sendCutoff1;
+        final float sendCutoff2;
+        final float sendCutoff3;
 
         final float exp1 = (float) MathStuff.exp(sendCoeff);
         final float exp2 = (float) MathStuff.exp(sendCoeff * 1.5F);
@@ -275,105 +423,79 @@ public final class SoundFXUtils {
                 + sharedAirspaceWeight3) * 0.25F;
         directCutoff = Math.max((float) Math.sqrt(averageSharedAirspace) * 0.2F, directCutoff);
 
-        float directGain = (float) MathStuff.pow(directCutoff, 0.1);
-
-        sendGain1 *= bounceRatio[1];
-        sendGain2 *= (float) MathStuff.pow(bounceRatio[2], 3.0);
-        sendGain3 *= (float) MathStuff.pow(bounceRatio[3], 4.0);
-
-        sendGain0 = MathStuff.clamp1(sendGain0);
-        sendGain1 = MathStuff.clamp1(sendGain1);
-        sendGain2 = MathStuff.clamp1(sendGain2 * 1.05F - 0.05F);
-        sendGain3 = MathStuff.clamp1(sendGain3 * 1.05F - 0.05F);
-
-        sendGain0 *= (float) MathStuff.pow(sendCutoff0, 0.1);
-        sendGain1 *= (float) MathStuff.pow(sendCutoff1, 0.1);
-        sendGain2 *= (float) MathStuff.pow(sendCutoff2, 0.1);
-        sendGain3 *= (float) MathStuff.pow(sendCutoff3, 0.1);
-
-        if (ctx.player.isInWater()) {
-            sendCutoff0 *= 0.4F;
-            sendCutoff1 *= 0.4F;
-            sendCutoff2 *= 0.4F;
-            sendCutoff3 *= 0.4F;
-        }
-
-        final LowPassData lp0 = this.source.getLowPass0();
-        final LowPassData lp1 = this.source.getLowPass1();
-        final LowPassData lp2 = this.source.getLowPass2();
-        final LowPassData lp3 = this.source.getLowPass3();
-        final LowPassData direct = this.source.getDirect();
-        final SourcePropertyFloat prop = this.source.getAirAbsorb();
+        final float directGain = (float) MathStuff.pow(directCutoff, 0.1);
 
-        synchronized (this.source.sync()) {
-            lp0.gain = sendGain0;
-            lp0.gainHF = sendCutoff0;
-            lp0.setProcess(true);
+        final float sendGain0 = reverb.gain0 * (float) MathStuff.pow(sendCutoff0, 0.1);
+        final float sendGain1 = reverb.gain1 * (float) MathStuff.pow(sendCutoff1, 0.1);
+        final float sendGain2 = reverb.gain2 * (float) MathStuff.pow(sendCutoff2, 0.1);
+        final float sendGain3 = reverb.gain3 * (float) MathStuff.pow(sendCutoff3, 0.1);
 
-            lp1.gain = sendGain1;
-            lp1.gainHF = sendCutoff1;
-            lp1.setProcess(true);
+        // Sends are muffled with the player's head in water
+        final float water = ctx.isInWater ? 0.4F : 1F;
 
-            lp2.gain = sendGain2;
-            lp2.gainHF = sendCutoff2;
-            lp2.setProcess(true);
-
-            lp3.gain = sendGain3;
-            lp3.gainHF = sendCutoff3;
-            lp3.setProcess(true);
-
-            direct.gain = directGain;
-            direct.gainHF = directCutoff;
-            direct.setProcess(true);
+        return new AcousticCache.Result(
+                sendGain0, sendCutoff0 * water,
+                sendGain1, sendCutoff1 * water,
+                sendGain2, sendCutoff2 * water,
+                sendGain3, sendCutoff3 * water,
+                directGain, directCutoff);
+    }
 
-            prop.setValue(airAbsorptionFactor);
-            prop.setProcess(true);
-        }
+    private void apply(@Nonnull final AcousticCache.Result result, final float airAbsorptionFactor) {
+        this.source.publish(result, airAbsorptionFactor, false);
     }
 
     private void clearSettings() {
-        synchronized (this.source.sync()) {
-            source.getLowPass0().setProcess(false);
-            source.getLowPass1().setProcess(false);
-            source.getLowPass2().setProcess(false);
-            source.getLowPass3().setProcess(false);
-            source.getDirect().setProcess(false);
-            source.getAirAbsorb().setProcess(false);
-        }
+        this.source.publishClear();
+    }
+
+    private boolean doOcclusion() {
+        return Config.CLIENT.sound.enableOcclusionCalcs.get() && this.source.getCategory().doOcclusion();
     }
 
-    private float calculateOcclusion(@Nonnull final WorldContext ctx, @Nonnull final Vector3d origin, @Nonnull final Vector3d target) {
+    private float calculateOcclusion(@Nonnull final WorldContext ctx, @Nonnull final Vector3d origin, @Nonnull final Vector3d target, final boolean occlusion) {
 
         assert ctx.world != null;
         assert ctx.player != null;
 
-        // If occlusion is not enabled, short cut
-        if (!Config.CLIENT.sound.enableOcclusionCalcs.get())
-            return 0F;
+        final OcclusionPath path = this.source.getOcclusionPath();
 
-        // See if the category is eligible for occlusion
-        if (!this.source.getCategory().doOcclusion())
+        // If occlusion is not enabled, or the category is not eligible, short cut
+        if (!occlusion) {
+            path.invalidate();
             return 0F;
+        }
 
-        float factor = 0F;
+        // If nothing along the path has changed since it was last traced the prior result still holds
+        if (path.matches(origin, target))
+            return path.getOcclusion();
 
-        if (Config.CLIENT.sound.enableOcclusionCalcs.get()) {
-            Vector3d lastHit = origin;
-            BlockState lastState = ctx.world.getBlockState(new BlockPos(lastHit.getX(), lastHit.getY(), lastHit.getZ()));
-            final BlockRayTrace traceContext = new BlockRayTrace(ctx.world, origin, target, RayTraceContext.BlockMode.VISUAL, RayTraceContext.FluidMode.SOURCE_ONLY);
-            final Iterator<BlockRayTraceResult> itr = new RayTraceIterator(traceContext);
-            for (int i = 0; i < OCCLUSION_SEGMENTS; i++) {
-                if (itr.hasNext()) {
-                    final BlockRayTraceResult result = itr.next();
-                    final float occlusion = AudioEffectLibrary.getOcclusion(lastState);
-                    final double distance = lastHit.distanceTo(result.getHitVec());
-                    // Occlusion is scaled by the distance travelled through the block.
-                    factor += occlusion * distance;
-                    lastHit = result.getHitVec();
-                    lastState = ctx.world.getBlockState(result.getPos());
-                } else {
-                    break;
-                }
+        final float factor = traceOcclusion(ctx, origin, target);
+        path.update(origin, target, factor, ctx.changeEpoch);
+        return factor;
+    }
+
+    private float traceOcclusion(@Nonnull final WorldContext ctx, @Nonnull final Vector3d origin, @Nonnull final Vector3d target) {
+        float factor = 0F;
+        double lastHitX = origin.x;
+        double lastHitY = origin.y;
+        double lastHitZ = origin.z;
+        int lastState = ctx.snapshot.getStateId(MathStuff.floor(lastHitX), MathStuff.floor(lastHitY), MathStuff.floor(lastHitZ));
+        final RayTraceIterator itr = this.occlusionIterator;
+        itr.reset(ctx.snapshot, origin.x, origin.y, origin.z, target.x, target.y, target.z);
+        for (int i = 0; i < OCCLUSION_SEGMENTS; i++) {
+            if (itr.hasNext()) {
+                final VoxelHit result = itr.next();
+                final float occlusion = AudioEffectLibrary.getOcclusion(lastState);
+                final double distance = distance(lastHitX, lastHitY, lastHitZ, result.getHitX(), result.getHitY(), result.getHitZ());
+                // Occlusion is scaled by the distance travelled through the block.
+                factor += occlusion * distance;
+                lastHitX = result.getHitX();
+                lastHitY = result.getHitY();
+                lastHitZ = result.getHitZ();
+                lastState = result.getStateId();
+            } else {
+                break;
             }
         }
 
@@ -381,19 +503,14 @@ public final class SoundFXUtils {
     }
 
     private static float calculateWeatherAbsorption(@Nonnull final WorldContext ctx, @Nonnull final Vector3d pt1, @Nonnull final Vector3d pt2) {
-        assert ctx.world != null;
-
         if (!ctx.isPrecipitating)
             return 1F;
 
-        final BlockPos low = new BlockPos(pt1);
-        final BlockPos mid = new BlockPos(MathStuff.addScaled(pt1, pt2, 0.5F));
-        final BlockPos high = new BlockPos(pt2);
-
-        // Determine the precipitation type at each point
-        final Biome.RainType rt1 = WorldUtils.getCurrentPrecipitationAt(ctx.world, low);
-        final Biome.RainType rt2 = WorldUtils.getCurrentPrecipitationAt(ctx.world, mid);
-        final Biome.RainType rt3 = WorldUtils.getCurrentPrecipitationAt(ctx.world, high);
+        // Determine the precipitation type at the ends of the path and at its true midpoint.  This used to sample
+        // pt1 + pt2 / 2, which is off the path entirely.
+        final Biome.RainType rt1 = PrecipitationCache.getCachedPrecipitationAt(MathStuff.floor(pt1.x), MathStuff.floor(pt1.y), MathStuff.floor(pt1.z));
+        final Biome.RainType rt2 = PrecipitationCache.getCachedPrecipitationAt(MathStuff.floor((pt1.x + pt2.x) * 0.5D), MathStuff.floor((pt1.y + pt2.y) * 0.5D), MathStuff.floor((pt1.z + pt2.z) * 0.5D));
+        final Biome.RainType rt3 = PrecipitationCache.getCachedPrecipitationAt(MathStuff.floor(pt2.x), MathStuff.floor(pt2.y), MathStuff.floor(pt2.z));
 
         // Calculate the impact of weather on dampening
         float factor = calcFactor(rt1, 0.25F);
@@ -404,13 +521,15 @@ public final class SoundFXUtils {
         return factor;
     }
 
-    @Nonnull
-    private static Vector3d surfaceNormal(@Nonnull final Direction d) {
-        return SURFACE_DIRECTION_NORMALS[d.ordinal()];
+    private static double distance(final double x1, final double y1, final double z1, final double x2, final double y2, final double z2) {
+        final double dX = x2 - x1;
+        final double dY = y2 - y1;
+        final double dZ = z2 - z1;
+        return Math.sqrt(dX * dX + dY * dY + dZ * dZ);
     }
 
-    private static Vector3d offsetPositionIfSolid(@Nonnull final IWorldReader world, @Nonnull final Vector3d origin, @Nonnull final Vector3d target) {
-        if (!WorldUtils.isAirBlock(world, new BlockPos(origin))) {
+    static Vector3d offsetPositionIfSolid(@Nonnull final VoxelSnapshot world, @Nonnull final Vector3d origin, @Nonnull final Vector3d target) {
+        if (!WorldUtils.isAirBlock(world.getBlockState(MathStuff.floor(origin.x), MathStuff.floor(origin.y), MathStuff.floor(origin.z)))) {
             return MathStuff.addScaled(origin, MathStuff.normalize(origin, target), 0.876F);
         }
         return origin;
@@ -420,8 +539,33 @@ public final class SoundFXUtils {
         return type == Biome.RainType.NONE ? base : base * (type == Biome.RainType.SNOW ? Effects.SNOW_AIR_ABSORPTION_FACTOR : Effects.RAIN_AIR_ABSORPTION_FACTOR);
     }
 
-    private static boolean isMiss(@Nullable final BlockRayTraceResult result) {
-        return result == null || result.getType() == RayTraceResult.Type.MISS;
+    /**
+     * Reverb traced for a sound position: the gain of each send before it is scaled by the occlusion of the sound, and
+     * how much of each send's airspace is shared with the listener.
+     */
+    static final class Reverb {
+        final float gain0;
+        final float gain1;
+        final float gain2;
+        final float gain3;
+        final float weight0;
+        final float weight1;
+        final float weight2;
+        final float weight3;
+        // Sorted chunk sections the trace passed through
+        final long[] sections;
+
+        Reverb(final float gain0, final float gain1, final float gain2, final float gain3,
+               final float weight0, final float weight1, final float weight2, final float weight3, @Nonnull final long[] sections) {
+            this.gain0 = gain0;
+            this.gain1 = gain1;
+            this.gain2 = gain2;
+            this.gain3 = gain3;
+            this.weight0 = weight0;
+            this.weight1 = weight1;
+            this.weight2 = weight2;
+            this.weight3 = weight3;
+            this.sections = sections;
+        }
     }
-
 }
@@ -18,9 +18,6 @@
 
 package org.orecruncher.sndctrl.audio.handlers;
 
-import it.unimi.dsi.fastutil.objects.Object2FloatOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.client.audio.ISound;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.api.distmarker.Dist;
@@ -31,30 +28,21 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig;
 import org.orecruncher.lib.TickCounter;
-import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.sndctrl.config.Config;
 import org.orecruncher.sndctrl.SoundControl;
 import org.orecruncher.sndctrl.audio.SoundUtils;
-import org.orecruncher.sndctrl.library.IndividualSoundConfig;
+import org.orecruncher.sndctrl.library.SoundLibrary;
+import org.orecruncher.sndctrl.library.SoundPolicy;
 
 import javax.annotation.Nonnull;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 @Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.MOD)
 public final class SoundProcessor {
 
-    private static final float MIN_SOUNDFACTOR = 0F;
-    private static final float MAX_SOUNDFACTOR = 4F;
-    private static final float DEFAULT_SOUNDFACTOR = 1F;
-
-    private static final Set<ResourceLocation> blockedSounds = new ObjectOpenHashSet<>(32);
-    private static final Object2LongOpenHashMap<ResourceLocation> soundCull = new Object2LongOpenHashMap<>(32);
-    private static final Object2FloatOpenHashMap<ResourceLocation> volumeControl = new Object2FloatOpenHashMap<>(32);
     private static int cullInterval = 20;
 
     static {
-        volumeControl.defaultReturnValue(DEFAULT_SOUNDFACTOR);
         MinecraftForge.EVENT_BUS.addListener(EventPriority.HIGHEST, SoundProcessor::soundPlay);
     }
 
@@ -72,60 +60,28 @@ public final class SoundProcessor {
     }
 
     public static void applyConfig() {
-        soundCull.clear();
-        blockedSounds.clear();
-        volumeControl.clear();
-
         cullInterval = Config.CLIENT.sound.cullInterval.get();
-
-        final List<IndividualSoundConfig> configs = Config.CLIENT.sound.individualSounds.get()
-                .stream()
-                .map(IndividualSoundConfig::createFrom)
-                .filter(Objects::nonNull)
-                .filter(cfg -> !cfg.isDefault())
-                .collect(Collectors.toList());
-
-        for (final IndividualSoundConfig cfg : configs) {
-            if (cfg.isBlocked())
-                blockedSounds.add(cfg.getLocation());
-            if (cfg.isCulled())
-                soundCull.put(cfg.getLocation(), -cullInterval);
-            if (cfg.getVolumeScaleInt() != 100)
-                volumeControl.put(cfg.getLocation(), MathStuff.clamp(cfg.getVolumeScale(), MIN_SOUNDFACTOR, MAX_SOUNDFACTOR));
-        }
+        SoundLibrary.compilePolicies();
     }
 
     public static boolean isSoundBlocked(@Nonnull final ResourceLocation sound) {
-        return blockedSounds.contains(Objects.requireNonNull(sound));
+        return SoundLibrary.getPolicy(sound).isBlocked();
     }
 
-    public static float getVolumeScale(@Nonnull final ResourceLocation sound) {
-        return volumeControl.getFloat(Objects.requireNonNull(sound));
+    public static boolean isSoundMerged(@Nonnull final ResourceLocation sound) {
+        return SoundLibrary.getPolicy(sound).isMerged();
     }
 
-    public static float getVolumeScale(@Nonnull final ISound sound) {
-        return getVolumeScale(Objects.requireNonNull(sound).getSoundLocation());
+    public static float getVolumeScale(@Nonnull final ResourceLocation sound) {
+        return SoundLibrary.getPolicy(sound).getVolumeScale();
     }
 
-    private static boolean isSoundCulledLogical(@Nonnull final ResourceLocation sound) {
-        if (cullInterval > 0) {
-            // Get the last time the sound was seen
-            final long lastOccurance = soundCull.getLong(Objects.requireNonNull(sound));
-            if (lastOccurance != 0) {
-                final long currentTick = TickCounter.getTickCount();
-                if ((currentTick - lastOccurance) < cullInterval) {
-                    return true;
-                } else {
-                    // Set when it happened and fall through for remapping and stuff
-                    soundCull.put(sound, currentTick);
-                }
-            }
-        }
-        return false;
+    public static float getVolumeScale(@Nonnull final ISound sound) {
+        return SoundLibrary.getPolicy(Objects.requireNonNull(sound)).getVolumeScale();
     }
 
-    private static boolean blockSoundProcess(@Nonnull final ResourceLocation res) {
-        return isSoundBlocked(res) || isSoundCulledLogical(res);
+    private static boolean blockSoundProcess(@Nonnull final SoundPolicy policy) {
+        return policy.isBlocked() || policy.cull(TickCounter.getTickCount(), cullInterval);
     }
 
     // Event handler for sound plays - hooked in static class initializer
@@ -141,9 +97,17 @@ public final class SoundProcessor {
         if (MusicFader.isConfigSoundInstance(theSound))
             return;
 
+        // Plays made by the coalescer were checked when they were first made
+        if (SoundCoalescer.isFlushing())
+            return;
+
         // Check to see if we need to block sound processing
-        final ResourceLocation soundResource = theSound.getSoundLocation();
-        if (blockSoundProcess(soundResource)) {
+        final SoundPolicy policy = SoundLibrary.getPolicy(theSound);
+        if (blockSoundProcess(policy)) {
+            e.setResultSound(null);
+        } else if (policy.isMerged() && SoundCoalescer.offer(theSound)) {
+            // Held to be combined with other plays of the same sound.  The merged play is made at the end of the
+            // merge window.
             e.setResultSound(null);
         }
     }
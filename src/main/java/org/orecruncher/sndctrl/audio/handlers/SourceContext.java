@@ -30,7 +30,6 @@ import org.orecruncher.sndctrl.SoundControl;
 import org.orecruncher.sndctrl.api.sound.Category;
 import org.orecruncher.sndctrl.api.sound.ISoundCategory;
 import org.orecruncher.sndctrl.audio.SoundUtils;
-import org.orecruncher.sndctrl.audio.handlers.effects.LowPassData;
 import org.orecruncher.sndctrl.audio.handlers.effects.SourcePropertyFloat;
 
 import javax.annotation.Nonnull;
@@ -50,14 +49,26 @@ public final class SourceContext implements Callable<Void> {
     // Frequency of sound effect updates in thread schedule ticks.  Works out to be 3 times a second.
     private static final int UPDATE_FEQUENCY_TICKS = 7;
 
-    private final Object sync = new Object();
-    private final LowPassData lowPass0;
-    private final LowPassData lowPass1;
-    private final LowPassData lowPass2;
-    private final LowPassData lowPass3;
-    private final LowPassData direct;
+    // Changes smaller than this are not worth the OpenAL calls to apply
+    private static final float EPSILON = 0.005F;
+    // Portion of the remaining distance covered each tick when easing from an estimate to the full calculation
+    private static final float BLEND_RATE = 0.5F;
+
+    // Parameter blocks written by the sound processor.  The one indexed by front holds the latest published set.
+    private final AcousticParams[] params = {new AcousticParams(), new AcousticParams()};
+    private volatile int front;
+    private long version;
+    // Latest set picked up, and what has been uploaded to the sound source.  Only touched by the sound engine thread.
+    private final AcousticParams pending = new AcousticParams();
+    private final AcousticParams applied = new AcousticParams();
+    // Intermediate values while easing from an estimate into the full calculation
+    private final AcousticParams step = new AcousticParams();
+    private boolean blending;
+    // When the sound was queued to play, or 0 once it has started
+    private long playQueued;
     private final SourcePropertyFloat airAbsorb;
     private final SoundFXUtils fxProcessor;
+    private final OcclusionPath occlusionPath = new OcclusionPath();
 
     private ISound sound;
     private Vector3d pos;
@@ -65,22 +76,28 @@ public final class SourceContext implements Callable<Void> {
 
     private boolean isEnabled;
     private int updateCount;
+    // Slot held in the set of active sources, or -1 if not in the set
+    private volatile int activeSlot = -1;
+
+    // Scheduling state maintained by SoundFXScheduler
+    private volatile boolean inFlight;
+    private volatile boolean deferred;
+    private volatile long cost;
+    private volatile long lastUpdate;
+    private float priority;
+    // Iteration and deadline the context was last admitted for.  Published to workers through the scheduler queue.
+    private long admissionIteration;
+    private long admissionDeadline;
+    // Zone the context was placed in when last admitted for an update, and the position it was placed at
+    private volatile AcousticZones.Zone zone;
+    private Vector3d zonePosition;
 
     public SourceContext() {
-        this.lowPass0 = new LowPassData();
-        this.lowPass1 = new LowPassData();
-        this.lowPass2 = new LowPassData();
-        this.lowPass3 = new LowPassData();
-        this.direct = new LowPassData();
         this.airAbsorb = new SourcePropertyFloat(EXTEfx.AL_AIR_ABSORPTION_FACTOR, EXTEfx.AL_DEFAULT_AIR_ABSORPTION_FACTOR, EXTEfx.AL_MIN_AIR_ABSORPTION_FACTOR, EXTEfx.AL_MAX_AIR_ABSORPTION_FACTOR);
         this.pos = Vector3d.ZERO;
         this.fxProcessor = new SoundFXUtils(this);
     }
 
-    public Object sync() {
-        return this.sync;
-    }
-
     public boolean isEnabled() {
         return this.isEnabled;
     }
@@ -89,39 +106,26 @@ public final class SourceContext implements Callable<Void> {
         this.isEnabled = true;
     }
 
-    @Nonnull
-    public LowPassData getLowPass0() {
-        return this.lowPass0;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass1() {
-        return this.lowPass1;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass2() {
-        return this.lowPass2;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass3() {
-        return this.lowPass3;
-    }
-
-    @Nonnull
-    public LowPassData getDirect() {
-        return this.direct;
+    /**
+     * Gain of the direct path from the sound to the listener as of the latest published calculation.  Can be called
+     * from any thread; the value may be slightly out of date.
+     */
+    public float getDirectGain() {
+        final AcousticParams latest = this.params[this.front];
+        return latest.process ? latest.directGain : 1F;
     }
 
     @Nonnull
-    public SourcePropertyFloat getAirAbsorb() {
-        return this.airAbsorb;
+    public Vector3d getPosition() {
+        return this.pos;
     }
 
+    /**
+     * Occlusion of the path between the sound and the listener as of the last calculation.
+     */
     @Nonnull
-    public Vector3d getPosition() {
-        return this.pos;
+    OcclusionPath getOcclusionPath() {
+        return this.occlusionPath;
     }
 
     @Nonnull
@@ -140,25 +144,129 @@ public final class SourceContext implements Callable<Void> {
         return this.sound;
     }
 
+    /**
+     * Publishes the results of an acoustic calculation for the sound engine thread to pick up on its next tick.
+     * Called by the thread performing the calculation; calculations for a context never run concurrently.
+     *
+     * @param result              Reverb and occlusion parameters
+     * @param airAbsorptionFactor Air absorption factor for the source
+     * @param estimate            Whether the parameters are a quick estimate made as the sound started
+     */
+    void publish(@Nonnull final AcousticCache.Result result, final float airAbsorptionFactor, final boolean estimate) {
+        final AcousticParams back = beginPublish();
+        back.set(result, airAbsorptionFactor, estimate);
+        endPublish(back);
+    }
+
+    /**
+     * Publishes that no effects are to be applied to the sound source.
+     */
+    void publishClear() {
+        final AcousticParams back = beginPublish();
+        back.clear();
+        endPublish(back);
+    }
+
+    @Nonnull
+    private AcousticParams beginPublish() {
+        final AcousticParams back = this.params[this.front ^ 1];
+        back.beginWrite();
+        back.version = ++this.version;
+        return back;
+    }
+
+    private void endPublish(@Nonnull final AcousticParams back) {
+        back.endWrite();
+        this.front ^= 1;
+    }
+
     /**
      * Called on the SoundSource update thread when updating status.  Do not call from the client thread or bad things
-     * can happen.
+     * can happen.  Only the parameters that changed since the last upload are sent to OpenAL.  Errors are not checked
+     * here; the caller is expected to validate once after ticking a batch of sources.
+     *
+     * @param sourceId OpenAL id of the sound source
+     * @return true if OpenAL calls were made, false otherwise
      */
-    public void tick(final int sourceId) {
-        if (isEnabled()) {
-            synchronized (this.sync()) {
-                // Upload the data
-                Effects.filter0.apply(sourceId, this.lowPass0, 0, Effects.auxSlot0);
-                Effects.filter1.apply(sourceId, this.lowPass1, 1, Effects.auxSlot1);
-                Effects.filter2.apply(sourceId, this.lowPass2, 2, Effects.auxSlot2);
-                Effects.filter3.apply(sourceId, this.lowPass3, 3, Effects.auxSlot3);
-                Effects.direct.apply(sourceId, this.direct);
-
-                this.airAbsorb.apply(sourceId);
-
-                SoundFXProcessor.validate("SourceHandler::tick");
+    public boolean tick(final int sourceId) {
+        if (!isEnabled())
+            return false;
+
+        final AcousticParams latest = this.params[this.front];
+        final AcousticParams a = this.applied;
+        if (latest.version != this.pending.version) {
+            if (!latest.copyTo(this.pending))
+                return false;
+            // Ease from the estimate made at play time into the first full calculation rather than jumping
+            this.blending = (this.blending || a.estimate) && a.process && this.pending.process && !this.pending.estimate;
+        } else if (!this.blending) {
+            return false;
+        }
+
+        AcousticParams p = this.pending;
+        if (this.blending && !this.step.blend(a, p, BLEND_RATE, EPSILON))
+            p = this.step;
+        else
+            this.blending = false;
+
+        // The very first upload, or a switch between processing and not, has to touch everything
+        final boolean all = a.version == 0 || p.process != a.process;
+
+        boolean uploaded = false;
+        if (p.process) {
+            if (all || changed(p.sendGain0, a.sendGain0) || changed(p.sendCutoff0, a.sendCutoff0)) {
+                Effects.filter0.upload(sourceId, p.sendGain0, p.sendCutoff0, 0, Effects.auxSlot0);
+                a.sendGain0 = p.sendGain0;
+                a.sendCutoff0 = p.sendCutoff0;
+                uploaded = true;
+            }
+            if (all || changed(p.sendGain1, a.sendGain1) || changed(p.sendCutoff1, a.sendCutoff1)) {
+                Effects.filter1.upload(sourceId, p.sendGain1, p.sendCutoff1, 1, Effects.auxSlot1);
+                a.sendGain1 = p.sendGain1;
+                a.sendCutoff1 = p.sendCutoff1;
+                uploaded = true;
+            }
+            if (all || changed(p.sendGain2, a.sendGain2) || changed(p.sendCutoff2, a.sendCutoff2)) {
+                Effects.filter2.upload(sourceId, p.sendGain2, p.sendCutoff2, 2, Effects.auxSlot2);
+                a.sendGain2 = p.sendGain2;
+                a.sendCutoff2 = p.sendCutoff2;
+                uploaded = true;
             }
+            if (all || changed(p.sendGain3, a.sendGain3) || changed(p.sendCutoff3, a.sendCutoff3)) {
+                Effects.filter3.upload(sourceId, p.sendGain3, p.sendCutoff3, 3, Effects.auxSlot3);
+                a.sendGain3 = p.sendGain3;
+                a.sendCutoff3 = p.sendCutoff3;
+                uploaded = true;
+            }
+            if (all || changed(p.directGain, a.directGain) || changed(p.directCutoff, a.directCutoff)) {
+                Effects.direct.upload(sourceId, p.directGain, p.directCutoff);
+                a.directGain = p.directGain;
+                a.directCutoff = p.directCutoff;
+                uploaded = true;
+            }
+            if (all || changed(p.airAbsorb, a.airAbsorb)) {
+                this.airAbsorb.upload(sourceId, p.airAbsorb);
+                a.airAbsorb = p.airAbsorb;
+                uploaded = true;
+            }
+        } else if (all) {
+            Effects.filter0.detach(sourceId, 0);
+            Effects.filter1.detach(sourceId, 1);
+            Effects.filter2.detach(sourceId, 2);
+            Effects.filter3.detach(sourceId, 3);
+            Effects.direct.detach(sourceId);
+            uploaded = true;
         }
+
+        // Values that were not uploaded are left as they were so small drifts accumulate until they are worth sending
+        a.version = p.version;
+        a.process = p.process;
+        a.estimate = p.estimate;
+        return uploaded;
+    }
+
+    private static boolean changed(final float value, final float prior) {
+        return Math.abs(value - prior) > EPSILON;
     }
 
     /**
@@ -175,6 +283,97 @@ public final class SourceContext implements Callable<Void> {
         return (this.updateCount++ % UPDATE_FEQUENCY_TICKS) == 0;
     }
 
+    int getActiveSlot() {
+        return this.activeSlot;
+    }
+
+    void setActiveSlot(final int slot) {
+        this.activeSlot = slot;
+    }
+
+    /**
+     * Indicates the context is in the set of playing sounds.
+     */
+    boolean isActive() {
+        return this.activeSlot >= 0;
+    }
+
+    @Nullable
+    AcousticZones.Zone getZone() {
+        return this.zone;
+    }
+
+    @Nullable
+    Vector3d getZonePosition() {
+        return this.zonePosition;
+    }
+
+    void setZone(@Nullable final AcousticZones.Zone zone, @Nullable final Vector3d position) {
+        this.zonePosition = position;
+        this.zone = zone;
+    }
+
+    boolean isInFlight() {
+        return this.inFlight;
+    }
+
+    void setInFlight(final boolean flag) {
+        this.inFlight = flag;
+    }
+
+    /**
+     * Indicates that the context was due for an update but was carried over into the next scheduling iteration.
+     */
+    boolean isDeferred() {
+        return this.deferred;
+    }
+
+    void setDeferred(final boolean flag) {
+        this.deferred = flag;
+    }
+
+    void setAdmission(final long iteration, final long deadline) {
+        this.admissionIteration = iteration;
+        this.admissionDeadline = deadline;
+    }
+
+    long getAdmissionIteration() {
+        return this.admissionIteration;
+    }
+
+    long getAdmissionDeadline() {
+        return this.admissionDeadline;
+    }
+
+    float getPriority() {
+        return this.priority;
+    }
+
+    void setPriority(final float priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Estimated cost, in nanoseconds, of updating the context based on prior updates.
+     */
+    long getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Scheduling iteration in which the context was last updated.
+     */
+    long getLastUpdate() {
+        return this.lastUpdate;
+    }
+
+    void completed(final long elapsedNanos, final long iteration) {
+        this.cost = this.cost == 0 ? elapsedNanos : (this.cost + elapsedNanos) / 2;
+        this.lastUpdate = iteration;
+        this.deferred = false;
+        this.inFlight = false;
+    }
+
     @Override
     public Void call() throws Exception {
         captureState();
@@ -182,6 +381,38 @@ public final class SourceContext implements Callable<Void> {
         return null;
     }
 
+    /**
+     * Makes a quick estimate of the sound effects as the sound is starting.  If the estimate is rough the context is
+     * flagged so the scheduler runs the full calculation at its next opportunity.  Called on the sound engine thread.
+     */
+    public void estimate() {
+        captureState();
+        try {
+            if (this.fxProcessor.estimate(SoundFXProcessor.getWorldContext()))
+                setDeferred(true);
+        } catch(@Nonnull final Throwable t) {
+            LOGGER.error(t, "Error estimating SoundContext %s", toString());
+        }
+    }
+
+    /**
+     * Records when the sound was queued to play so the delay until it starts can be measured.
+     */
+    void setPlayQueued(final long nanos) {
+        this.playQueued = nanos;
+    }
+
+    /**
+     * Gets the time the sound was queued to play, clearing it so it is only reported once.
+     *
+     * @return Time queued in nanoseconds, or 0 if already reported
+     */
+    long takePlayQueued() {
+        final long result = this.playQueued;
+        this.playQueued = 0;
+        return result;
+    }
+
     /**
      * Called by the thread pool when executing the task
      *
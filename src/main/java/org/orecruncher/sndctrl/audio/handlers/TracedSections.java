@@ -0,0 +1,121 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.SectionPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.lib.world.ClientBlockUpdateHandler;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Collects the chunk sections the segments of an acoustic trace passed through.  A result traced through a set of
+ * sections holds until a block within one of them changes.  Sections are coarse enough that the set for a full reverb
+ * trace stays small, while a block change far from every ray of the trace does not invalidate it.  Not thread safe;
+ * each calculator has its own.
+ */
+@OnlyIn(Dist.CLIENT)
+final class TracedSections {
+
+    static final long[] NONE = new long[0];
+
+    private final LongOpenHashSet sections = new LongOpenHashSet();
+
+    void clear() {
+        this.sections.clear();
+    }
+
+    void addAll(@Nonnull final long[] other) {
+        for (final long section : other)
+            this.sections.add(section);
+    }
+
+    /**
+     * Adds the sections crossed by the segment, walked in the same order a ray trace would.
+     */
+    void addSegment(final double x0, final double y0, final double z0, final double x1, final double y1, final double z1) {
+        final double sx = x0 / 16D;
+        final double sy = y0 / 16D;
+        final double sz = z0 / 16D;
+        final double dx = (x1 - x0) / 16D;
+        final double dy = (y1 - y0) / 16D;
+        final double dz = (z1 - z0) / 16D;
+
+        int x = MathStuff.floor(sx);
+        int y = MathStuff.floor(sy);
+        int z = MathStuff.floor(sz);
+
+        final int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        final int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        final int stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+
+        final double tDeltaX = stepX == 0 ? Double.MAX_VALUE : 1D / Math.abs(dx);
+        final double tDeltaY = stepY == 0 ? Double.MAX_VALUE : 1D / Math.abs(dy);
+        final double tDeltaZ = stepZ == 0 ? Double.MAX_VALUE : 1D / Math.abs(dz);
+
+        double tMaxX = stepX > 0 ? (x + 1 - sx) * tDeltaX : (stepX < 0 ? (sx - x) * tDeltaX : Double.MAX_VALUE);
+        double tMaxY = stepY > 0 ? (y + 1 - sy) * tDeltaY : (stepY < 0 ? (sy - y) * tDeltaY : Double.MAX_VALUE);
+        double tMaxZ = stepZ > 0 ? (z + 1 - sz) * tDeltaZ : (stepZ < 0 ? (sz - z) * tDeltaZ : Double.MAX_VALUE);
+
+        int remaining = Math.abs(MathStuff.floor(sx + dx) - x) + Math.abs(MathStuff.floor(sy + dy) - y) + Math.abs(MathStuff.floor(sz + dz) - z) + 1;
+
+        while (remaining-- > 0) {
+            this.sections.add(SectionPos.asLong(x, y, z));
+            if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxZ) {
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+    }
+
+    /**
+     * Gets the collected sections sorted so they can be searched.
+     */
+    @Nonnull
+    long[] toArray() {
+        if (this.sections.isEmpty())
+            return NONE;
+        final long[] result = this.sections.toLongArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Determines if a block within any of the sections has changed since the epoch.
+     *
+     * @param epoch    Block change epoch captured before the trace was made
+     * @param sections Sorted sections of the trace
+     * @return true if a block in one of the sections changed
+     */
+    static boolean hasChangedSince(final int epoch, @Nonnull final long[] sections) {
+        return ClientBlockUpdateHandler.hasChangedSince(epoch, pos -> Arrays.binarySearch(sections,
+                SectionPos.asLong(BlockPos.unpackX(pos) >> 4, BlockPos.unpackY(pos) >> 4, BlockPos.unpackZ(pos) >> 4)) >= 0);
+    }
+}
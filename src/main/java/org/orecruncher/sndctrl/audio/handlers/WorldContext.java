@@ -20,8 +20,6 @@ package org.orecruncher.sndctrl.audio.handlers;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.fluid.Fluid;
-import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.IWorldReader;
@@ -30,8 +28,13 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.lib.GameUtils;
 import org.orecruncher.lib.WorldUtils;
+import org.orecruncher.lib.world.ClientBlockUpdateHandler;
+import org.orecruncher.lib.world.VoxelSnapshot;
+import org.orecruncher.lib.world.VoxelSnapshotCache;
 import org.orecruncher.sndctrl.library.AudioEffectLibrary;
 
+import javax.annotation.Nonnull;
+
 @OnlyIn(Dist.CLIENT)
 public final class WorldContext {
 
@@ -47,6 +50,18 @@ public final class WorldContext {
      * Reference to the player's world
      */
     public final IWorldReader world;
+    /**
+     * Read only copy of the blocks around the player.  Safe to access from the sound processing threads.
+     */
+    public final VoxelSnapshot snapshot;
+    /**
+     * Block change epoch at the time the snapshot was taken.
+     */
+    public final int changeEpoch;
+    /**
+     * Which cells around the player have line of sight to the player's eyes.
+     */
+    public final ListenerVisibility visibility;
     /**
      * Position of the player.
      */
@@ -71,6 +86,10 @@ public final class WorldContext {
      * Current strength of precipitation.
      */
     public final float precipitationStrength;
+    /**
+     * Flag indicating if the player is in water.
+     */
+    public final boolean isInWater;
     /**
      * Coefficient used for dampening sound.  Usually caused by the player's head being in lava or water.
      */
@@ -90,13 +109,12 @@ public final class WorldContext {
             this.playerEyePosition = this.player.getEyePosition(1F);
             this.playerPos = new BlockPos(this.playerPosition);
             this.playerEyePos = new BlockPos(this.playerEyePosition);
+            this.changeEpoch = ClientBlockUpdateHandler.getChangeEpoch();
+            this.snapshot = VoxelSnapshotCache.capture(w, this.playerEyePos);
+            this.visibility = ListenerVisibility.create(this.snapshot, this.playerEyePosition, this.playerEyePos);
 
-            final Fluid fs = this.player.world.getFluidState(this.playerEyePos).getFluid();
-            final ResourceLocation name = fs.getRegistryName();
-            if (name != null)
-                this.auralDampening = AudioEffectLibrary.getFluidCoeffcient(name);
-            else
-                this.auralDampening = 0;
+            this.isInWater = this.player.isInWater();
+            this.auralDampening = AudioEffectLibrary.getFluidCoefficient(w.getBlockState(this.playerEyePos));
 
             // Get our current rain strength.
             this.precipitationStrength = WorldUtils.getRainStrength(w, 1F);
@@ -105,16 +123,44 @@ public final class WorldContext {
             this.mc = null;
             this.player = null;
             this.world = null;
+            this.snapshot = VoxelSnapshot.EMPTY;
+            this.changeEpoch = ClientBlockUpdateHandler.getChangeEpoch();
+            this.visibility = ListenerVisibility.EMPTY;
             this.isPrecipitating = false;
             this.playerPosition = Vector3d.ZERO;
             this.playerEyePosition = Vector3d.ZERO;
             this.playerPos = BlockPos.ZERO;
             this.playerEyePos = BlockPos.ZERO;
+            this.isInWater = false;
             this.auralDampening = 0;
             this.precipitationStrength = 0F;
         }
     }
 
+    /**
+     * Creates a context around a listener in a synthetic snapshot rather than the client world.  The context is not
+     * valid for normal sound processing; it exists so the acoustic calculations can be benchmarked.
+     *
+     * @param snapshot    Blocks around the listener
+     * @param eyePosition Position of the listener's eyes
+     */
+    WorldContext(@Nonnull final VoxelSnapshot snapshot, @Nonnull final Vector3d eyePosition) {
+        this.mc = null;
+        this.player = null;
+        this.world = null;
+        this.snapshot = snapshot;
+        this.changeEpoch = ClientBlockUpdateHandler.getChangeEpoch();
+        this.isPrecipitating = false;
+        this.playerPosition = eyePosition;
+        this.playerEyePosition = eyePosition;
+        this.playerPos = new BlockPos(eyePosition);
+        this.playerEyePos = this.playerPos;
+        this.visibility = ListenerVisibility.create(snapshot, eyePosition, this.playerEyePos);
+        this.isInWater = false;
+        this.auralDampening = 0;
+        this.precipitationStrength = 0F;
+    }
+
     public boolean isNotValid() {
         return this.mc == null;
     }
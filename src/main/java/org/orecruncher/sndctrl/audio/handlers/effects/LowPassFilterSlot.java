@@ -37,29 +37,43 @@ public class LowPassFilterSlot extends Slot {
         EXTEfx.alFilteri(getSlot(), EXTEfx.AL_FILTER_TYPE, EXTEfx.AL_FILTER_LOWPASS);
     }
 
-    public void apply(final int sourceId, @Nonnull final LowPassData data) {
+    /**
+     * Uploads the filter settings as the direct filter of the source.  Unlike apply() OpenAL errors are not checked;
+     * the caller is responsible for validating after a batch of uploads.
+     */
+    public void upload(final int sourceId, final float gain, final float gainHF) {
         if (isInitialized()) {
-            if (data.doProcess()) {
-                data.clamp();
-                execute(() -> EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAIN, data.gain), () -> "LowPassFilterSlot EXTEfx.AL_DIRECT_FILTER gain");
-                execute(() -> EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAINHF, data.gainHF), () -> "LowPassFilterSlot EXTEfx.AL_DIRECT_FILTER gainHF");
-                execute(() -> AL11.alSourcei(sourceId, EXTEfx.AL_DIRECT_FILTER, getSlot()), () -> "LowPassFilterSlot EXTEfx.AL_DIRECT_FILTER upload");
-            } else {
-                execute(() -> AL11.alSourcei(sourceId, EXTEfx.AL_DIRECT_FILTER, EXTEfx.AL_EFFECTSLOT_NULL), () -> "LowPassFilterSlot EXTEfx.AL_DIRECT_FILTER null");
-            }
+            EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAIN, gain);
+            EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAINHF, gainHF);
+            AL11.alSourcei(sourceId, EXTEfx.AL_DIRECT_FILTER, getSlot());
         }
     }
 
-    public void apply(final int sourceId, @Nonnull final LowPassData data, final int auxSend, @Nonnull final AuxSlot aux) {
+    /**
+     * Uploads the filter settings as the filter of the specified auxiliary send of the source.  OpenAL errors are not
+     * checked.
+     */
+    public void upload(final int sourceId, final float gain, final float gainHF, final int auxSend, @Nonnull final AuxSlot aux) {
         if (isInitialized()) {
-            if (data.doProcess()) {
-                data.clamp();
-                execute(() -> EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAIN, data.gain), () -> "LowPassFilterSlot EXTEfx.AL_AUXILIARY_SEND_FILTER gain");
-                execute(() -> EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAINHF, data.gainHF), () -> "LowPassFilterSlot EXTEfx.AL_AUXILIARY_SEND_FILTER gainHF");
-                execute(() -> AL11.alSource3i(sourceId, EXTEfx.AL_AUXILIARY_SEND_FILTER, aux.getSlot(), auxSend, getSlot()), () -> "LowPassFilterSlot EXTEfx.AL_AUXILIARY_SEND_FILTER upload");
-            } else {
-                execute(() -> AL11.alSource3i(sourceId, EXTEfx.AL_AUXILIARY_SEND_FILTER, EXTEfx.AL_EFFECTSLOT_NULL, auxSend, EXTEfx.AL_FILTER_NULL), () -> "LowPassFilterSlot EXTEfx.AL_AUXILIARY_SEND_FILTER null");
-            }
+            EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAIN, gain);
+            EXTEfx.alFilterf(getSlot(), EXTEfx.AL_LOWPASS_GAINHF, gainHF);
+            AL11.alSource3i(sourceId, EXTEfx.AL_AUXILIARY_SEND_FILTER, aux.getSlot(), auxSend, getSlot());
         }
     }
+
+    /**
+     * Removes the direct filter from the source.  OpenAL errors are not checked.
+     */
+    public void detach(final int sourceId) {
+        if (isInitialized())
+            AL11.alSourcei(sourceId, EXTEfx.AL_DIRECT_FILTER, EXTEfx.AL_FILTER_NULL);
+    }
+
+    /**
+     * Removes the effect and filter from the specified auxiliary send of the source.  OpenAL errors are not checked.
+     */
+    public void detach(final int sourceId, final int auxSend) {
+        if (isInitialized())
+            AL11.alSource3i(sourceId, EXTEfx.AL_AUXILIARY_SEND_FILTER, EXTEfx.AL_EFFECTSLOT_NULL, auxSend, EXTEfx.AL_FILTER_NULL);
+    }
 }
@@ -63,4 +63,13 @@ public final class SourcePropertyFloat {
             SoundFXProcessor.validate("SourcePropertyFloat apply");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Uploads the specified value for the property to the source.  OpenAL errors are not checked; the caller is
+     * responsible for validating after a batch of uploads.
+     */
+    public void upload(final int sourceId, final float value) {
+        this.value = MathStuff.clamp(value, this.min, this.max);
+        AL11.alSourcef(sourceId, this.property, this.value);
+    }
+}
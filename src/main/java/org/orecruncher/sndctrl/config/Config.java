@@ -113,7 +113,10 @@ public final class Config {
             public final BooleanValue enableHRTF;
             public final BooleanValue enableOcclusionCalcs;
             public final BooleanValue enableMonoConversion;
+            public final BooleanValue enableVoiceManagement;
             public final IntValue cullInterval;
+            public final IntValue mergeRadius;
+            public final IntValue mergeWindow;
             public final IntValue backgroundThreadWorkers;
             public final IntValue streamingSoundCount;
             public final BooleanValue occludeWeather;
@@ -142,6 +145,11 @@ public final class Config {
                         .translation("sndctrl.cfg.sound.MonoConversion")
                         .define("Enable Stereo to Mono Conversion", true);
 
+                this.enableVoiceManagement = builder
+                        .comment("Enable prioritizing sounds when the sound engine runs out of sources, holding the losers until there is room")
+                        .translation("sndctrl.cfg.sound.VoiceManagement")
+                        .define("Enable Voice Management", true);
+
                 this.enableOcclusionCalcs = builder
                         .comment("Enable sound occlusion calculations (sound muffling when positioned behind blocks)")
                         .translation("sndctrl.cfg.sound.Occlusion")
@@ -178,6 +186,16 @@ public final class Config {
                         .translation("sndctrl.cfg.sound.CullInterval")
                         .defineInRange("Sound Culling Interval", 20, 0, 6000);
 
+                this.mergeRadius = builder
+                        .comment("Distance in blocks within which plays of a sound marked MERGE are combined")
+                        .translation("sndctrl.cfg.sound.MergeRadius")
+                        .defineInRange("Sound Merge Radius", 4, 1, 16);
+
+                this.mergeWindow = builder
+                        .comment("Ticks over which plays of a sound marked MERGE are gathered before being combined")
+                        .translation("sndctrl.cfg.sound.MergeWindow")
+                        .defineInRange("Sound Merge Window", 1, 1, 10);
+
                 this.backgroundThreadWorkers = builder
                         .worldRestart()
                         .comment("Number of background threads to handle sound effect calculations (0 is default)")
@@ -62,6 +62,8 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
     private static final Button.IPressable NULL_PRESSABLE = (b) -> {};
     private static final ITextComponent CULL_ON = new TranslationTextComponent("sndctrl.text.soundconfig.cull");
     private static final ITextComponent CULL_OFF = new TranslationTextComponent("sndctrl.text.soundconfig.nocull");
+    private static final ITextComponent MERGE_ON = new TranslationTextComponent("sndctrl.text.soundconfig.merge");
+    private static final ITextComponent MERGE_OFF = new TranslationTextComponent("sndctrl.text.soundconfig.nomerge");
     private static final ITextComponent BLOCK_ON = new TranslationTextComponent("sndctrl.text.soundconfig.block");
     private static final ITextComponent BLOCK_OFF = new TranslationTextComponent("sndctrl.text.soundconfig.noblock");
     private static final ITextComponent PLAY = new TranslationTextComponent("sndctrl.text.soundconfig.play");
@@ -73,6 +75,7 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
     private static final Collection<ITextComponent> VOLUME_HELP = GuiHelpers.getTrimmedTextCollection("sndctrl.text.soundconfig.volume.help", TOOLTIP_WIDTH, CODING);
     private static final Collection<ITextComponent> PLAY_HELP = GuiHelpers.getTrimmedTextCollection("sndctrl.text.soundconfig.play.help", TOOLTIP_WIDTH, CODING);
     private static final Collection<ITextComponent> CULL_HELP = GuiHelpers.getTrimmedTextCollection("sndctrl.text.soundconfig.cull.help", TOOLTIP_WIDTH, CODING);
+    private static final Collection<ITextComponent> MERGE_HELP = GuiHelpers.getTrimmedTextCollection("sndctrl.text.soundconfig.merge.help", TOOLTIP_WIDTH, CODING);
     private static final Collection<ITextComponent> BLOCK_HELP = GuiHelpers.getTrimmedTextCollection("sndctrl.text.soundconfig.block.help", TOOLTIP_WIDTH, CODING);
 
     private static final int CONTROL_SPACING = 3;
@@ -81,6 +84,7 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
     private final Slider volume;
     private final Button blockButton;
     private final Button cullButton;
+    private final Button mergeButton;
     private final Button playButton;
 
     private final List<Widget> children = new ArrayList<>();
@@ -126,6 +130,15 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
                 this::toggleCull);
         this.children.add(this.cullButton);
 
+        this.mergeButton = new Button(
+                0,
+                0,
+                BUTTON_WIDTH,
+                0,
+                this.config.isMerged() ? MERGE_ON : MERGE_OFF,
+                this::toggleMerge);
+        this.children.add(this.mergeButton);
+
         this.playButton = new Button(
                 0,
                 0,
@@ -177,6 +190,11 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
         this.cullButton.x = rightMargin - this.cullButton.getWidth();
         this.cullButton.setHeight(rowHeight);
         this.cullButton.y = rowTop;
+        rightMargin -= this.cullButton.getWidth() + CONTROL_SPACING;
+
+        this.mergeButton.x = rightMargin - this.mergeButton.getWidth();
+        this.mergeButton.setHeight(rowHeight);
+        this.mergeButton.y = rowTop;
 
         for (final Widget w : this.children)
             w.render(matrixStack, mouseX, mouseY, partialTick_);
@@ -192,6 +210,11 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
         button.setMessage(this.config.isCulled() ? CULL_ON : CULL_OFF);
     }
 
+    protected void toggleMerge(@Nonnull final Button button) {
+        this.config.setIsMerged(!this.config.isMerged());
+        button.setMessage(this.config.isMerged() ? MERGE_ON : MERGE_OFF);
+    }
+
     @Override
     public void onChangeSliderValue(@Nonnull final Slider slider) {
         this.config.setVolumeScaleInt(slider.getValueInt());
@@ -266,6 +289,8 @@ public class IndividualSoundControlListEntry extends AbstractOptionList.Entry<In
             result.addAll(BLOCK_HELP);
         } else if (this.cullButton.isMouseOver(mouseX, mouseY)) {
             result.addAll(CULL_HELP);
+        } else if (this.mergeButton.isMouseOver(mouseX, mouseY)) {
+            result.addAll(MERGE_HELP);
         } else if (this.playButton.isMouseOver(mouseX, mouseY)) {
             result.addAll(PLAY_HELP);
         }
@@ -25,6 +25,7 @@ import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.material.Material;
+import net.minecraft.fluid.Fluid;
 import net.minecraft.tags.ITag;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.api.distmarker.Dist;
@@ -41,9 +42,9 @@ import org.orecruncher.lib.resource.ResourceUtils;
 import org.orecruncher.lib.service.ModuleServiceManager;
 import org.orecruncher.lib.service.IModuleService;
 import org.orecruncher.sndctrl.SoundControl;
-import org.orecruncher.sndctrl.misc.IMixinAudioEffectData;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
@@ -69,6 +70,9 @@ public final class AudioEffectLibrary {
     // Lowpass Data
     private static final Object2FloatOpenHashMap<ResourceLocation> fluidCoefficient = new Object2FloatOpenHashMap<>();
 
+    // Compiled values indexed by block state id.  Replaced as a whole when the library reloads.
+    private static volatile EffectTables tables = EffectTables.EMPTY;
+
     public static void initialize() {
         // Currently does nothing.  Called during startup which triggers the class init.
         ModuleServiceManager.instance().add(new AudioEffectLibraryService());
@@ -82,7 +86,18 @@ public final class AudioEffectLibrary {
      * @return The coeeficient that has been configured, or default of 1 for opaque blocks, and 0.15F for non-solid.
      */
     public static float getOcclusion(@Nonnull final BlockState state) {
-        return resolve(state).occlusion;
+        return getOcclusion(Block.getStateId(state));
+    }
+
+    /**
+     * Gets the occlusion value for the BlockState with the given state id.
+     *
+     * @param stateId Id of the BlockState as returned by Block.getStateId()
+     * @return The occlusion coefficient of the BlockState
+     */
+    public static float getOcclusion(final int stateId) {
+        final float[] table = tables.occlusion;
+        return stateId >= 0 && stateId < table.length ? table[stateId] : DEFAULT_TRANSLUCENT_OCCLUSION;
     }
 
     /**
@@ -93,19 +108,18 @@ public final class AudioEffectLibrary {
      * @return The coefficient that has been configured, or the default value of 0.5 if it hasn't
      */
     public static float getReflectivity(@Nonnull final BlockState state) {
-        return resolve(state).reflectivity;
+        return getReflectivity(Block.getStateId(state));
     }
 
-    private static EffectData resolve(@Nonnull final BlockState state) {
-        IMixinAudioEffectData accessor = (IMixinAudioEffectData)state;
-        EffectData data = accessor.getData();
-        if (data == null) {
-            final float o = resolveOcclusion(state);
-            final float r = resolveReflectivity(state);
-            data = new EffectData(o, r);
-            accessor.setData(data);
-        }
-        return data;
+    /**
+     * Gets the reflectivity value for the BlockState with the given state id.
+     *
+     * @param stateId Id of the BlockState as returned by Block.getStateId()
+     * @return The reflectivity coefficient of the BlockState
+     */
+    public static float getReflectivity(final int stateId) {
+        final float[] table = tables.reflectivity;
+        return stateId >= 0 && stateId < table.length ? table[stateId] : DEFAULT_REFLECTION;
     }
 
     private static float resolveReflectivity(@Nonnull final BlockState state) {
@@ -139,6 +153,48 @@ public final class AudioEffectLibrary {
         return fluidCoefficient.getFloat(res);
     }
 
+    /**
+     * Gets the low pass filter coefficient for the fluid contained in the given BlockState.
+     *
+     * @param state BlockState to lookup
+     * @return Coefficient for dampening sounds when the listener's head is inside the BlockState
+     */
+    public static float getFluidCoefficient(@Nonnull final BlockState state) {
+        final float[] table = tables.fluid;
+        final int stateId = Block.getStateId(state);
+        return stateId >= 0 && stateId < table.length ? table[stateId] : 0;
+    }
+
+    private static float resolveFluidCoefficient(@Nonnull final BlockState state) {
+        final Fluid fluid = state.getFluidState().getFluid();
+        final ResourceLocation name = fluid.getRegistryName();
+        return name != null ? fluidCoefficient.getFloat(name) : 0;
+    }
+
+    /**
+     * Compiles the configured values of every BlockState into tables indexed by state id and publishes them.  Lookups
+     * during sound processing become a single array read.
+     */
+    private static void compile() {
+        final int size = Block.BLOCK_STATE_IDS.size();
+        final float[] occlusion = new float[size];
+        final float[] reflectivity = new float[size];
+        final float[] fluid = new float[size];
+        Arrays.fill(occlusion, DEFAULT_TRANSLUCENT_OCCLUSION);
+        Arrays.fill(reflectivity, DEFAULT_REFLECTION);
+
+        for (final BlockState state : ForgeUtils.getBlockStates()) {
+            final int id = Block.getStateId(state);
+            if (id < 0 || id >= size)
+                continue;
+            occlusion[id] = resolveOcclusion(state);
+            reflectivity[id] = resolveReflectivity(state);
+            fluid[id] = resolveFluidCoefficient(state);
+        }
+
+        tables = new EffectTables(occlusion, reflectivity, fluid);
+    }
+
     private static void processOcclusions(@Nonnull final EffectOptions options) {
 
         for (final Map.Entry<String, Float> kvp : options.occlusions.entrySet()) {
@@ -235,14 +291,18 @@ public final class AudioEffectLibrary {
         public Map<String, Float> fluid = ImmutableMap.of();
     }
 
-    public static class EffectData {
+    private static final class EffectTables {
+
+        static final EffectTables EMPTY = new EffectTables(new float[0], new float[0], new float[0]);
 
-        public final float occlusion;
-        public final float reflectivity;
+        final float[] occlusion;
+        final float[] reflectivity;
+        final float[] fluid;
 
-        public EffectData(final float o, final float r) {
-            this.occlusion = o;
-            this.reflectivity = r;
+        EffectTables(@Nonnull final float[] occlusion, @Nonnull final float[] reflectivity, @Nonnull final float[] fluid) {
+            this.occlusion = occlusion;
+            this.reflectivity = reflectivity;
+            this.fluid = fluid;
         }
     }
 
@@ -280,26 +340,28 @@ public final class AudioEffectLibrary {
                 // Lowpass filter gets applied when a player head is inside the block - think fluids.
                 processLowpass(cfg);
             });
+
+            compile();
         }
 
         @Override
         public void stop() {
+            clear();
+            tables = EffectTables.EMPTY;
+        }
+
+        private void clear() {
             materialOcclusion.clear();
             materialReflect.clear();
             blockStateOcclusionMap.clear();
             blockStateReflectMap.clear();
             fluidCoefficient.clear();
-
-            // Clear out cached data
-            ForgeUtils.getBlockStates().forEach(state -> {
-                IMixinAudioEffectData accessor = (IMixinAudioEffectData) state;
-                accessor.setData(null);
-            });
         }
 
         @Override
         public void reload() {
-            stop();
+            // The current tables stay in place while the new ones are built
+            clear();
             start();
         }
     }
@@ -33,6 +33,7 @@ public final class IndividualSoundConfig {
 
     private static final String BLOCK_TOKEN = "block";
     private static final String CULL_TOKEN = "cull";
+    private static final String MERGE_TOKEN = "merge";
     private static final String DELIMITER = " ";
 
     public static final int DEFAULT_VOLUME_SCALE = 100;
@@ -42,12 +43,14 @@ public final class IndividualSoundConfig {
     private final ResourceLocation location;
     private boolean isBocked;
     private boolean isCulled;
+    private boolean isMerged;
     private int volumeScale;
 
     public IndividualSoundConfig(@Nonnull final SoundEvent soundEvent) {
         this.location = soundEvent.getName();
         this.isBocked = false;
         this.isCulled = false;
+        this.isMerged = false;
         this.volumeScale = DEFAULT_VOLUME_SCALE;
     }
 
@@ -55,6 +58,7 @@ public final class IndividualSoundConfig {
         this.location = source.location;
         this.isBocked = source.isBocked;
         this.isCulled = source.isCulled;
+        this.isMerged = source.isMerged;
         this.volumeScale = source.volumeScale;
     }
 
@@ -77,7 +81,7 @@ public final class IndividualSoundConfig {
     public static IndividualSoundConfig createFrom(@Nonnull final String entry) {
         IndividualSoundConfig result = null;
         final String[] parts = entry.split(DELIMITER);
-        if (parts.length == 0 || parts.length > 4) {
+        if (parts.length == 0 || parts.length > 5) {
             return null;
         } else {
             if (isResourceNameValid(parts[0])) {
@@ -86,6 +90,7 @@ public final class IndividualSoundConfig {
                 if (event.isPresent()) {
                     boolean isCulled = false;
                     boolean isBlocked = false;
+                    boolean isMerged = false;
                     int volumeControl = DEFAULT_VOLUME_SCALE;
 
                     for (int i = 1; i < parts.length; i++) {
@@ -93,6 +98,8 @@ public final class IndividualSoundConfig {
                             isCulled = true;
                         } else if (BLOCK_TOKEN.compareToIgnoreCase(parts[i]) == 0) {
                             isBlocked = true;
+                        } else if (MERGE_TOKEN.compareToIgnoreCase(parts[i]) == 0) {
+                            isMerged = true;
                         } else {
                             try {
                                 volumeControl = Integer.parseInt(parts[i]);
@@ -106,6 +113,7 @@ public final class IndividualSoundConfig {
                     result = new IndividualSoundConfig(event.get());
                     result.isBocked = isBlocked;
                     result.isCulled = isCulled;
+                    result.isMerged = isMerged;
                     result.volumeScale = MathStuff.clamp(volumeControl, VOLUME_SCALE_MIN, VOLUME_SCALE_MAX);
                 }
             }
@@ -120,7 +128,7 @@ public final class IndividualSoundConfig {
     }
 
     public boolean isDefault() {
-        return !(this.isBocked || this.isCulled || volumeScale != DEFAULT_VOLUME_SCALE);
+        return !(this.isBocked || this.isCulled || this.isMerged || volumeScale != DEFAULT_VOLUME_SCALE);
     }
 
     public boolean isBlocked() {
@@ -139,6 +147,17 @@ public final class IndividualSoundConfig {
         this.isCulled = flag;
     }
 
+    /**
+     * Indicates if plays of the sound that happen close together in time and space are merged into a single play.
+     */
+    public boolean isMerged() {
+        return this.isMerged;
+    }
+
+    public void setIsMerged(final boolean flag) {
+        this.isMerged = flag;
+    }
+
     public float getVolumeScale() {
         return this.volumeScale / 100F;
     }
@@ -159,6 +178,8 @@ public final class IndividualSoundConfig {
             builder.append(DELIMITER).append(BLOCK_TOKEN);
         if (this.isCulled)
             builder.append(DELIMITER).append(CULL_TOKEN);
+        if (this.isMerged)
+            builder.append(DELIMITER).append(MERGE_TOKEN);
         if (this.volumeScale != DEFAULT_VOLUME_SCALE)
             builder.append(DELIMITER).append(this.volumeScale);
         return builder.toString();
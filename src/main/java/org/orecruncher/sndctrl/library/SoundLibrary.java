@@ -20,6 +20,8 @@ package org.orecruncher.sndctrl.library;
 
 import com.google.gson.reflect.TypeToken;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.client.audio.ISound;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.SoundEvent;
 import net.minecraftforge.api.distmarker.Dist;
@@ -38,6 +40,7 @@ import org.orecruncher.sndctrl.audio.SoundMetadata;
 import org.orecruncher.sndctrl.audio.handlers.SoundProcessor;
 import org.orecruncher.sndctrl.config.Config;
 import org.orecruncher.sndctrl.library.config.SoundMetadataConfig;
+import org.orecruncher.sndctrl.misc.IMixinSoundPolicy;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Type;
@@ -58,11 +61,19 @@ public final class SoundLibrary {
     private static final Object2ObjectOpenHashMap<ResourceLocation, SoundMetadata> soundMetadata = new Object2ObjectOpenHashMap<>();
     private static final Type SOUND_FILE_TYPE = TypeToken.getParameterized(Map.class, String.class, SoundMetadataConfig.class).getType();
 
+    // Rules other modules have placed on sounds.  Folded into the compiled sound policies.
+    private static final Set<ResourceLocation> blockedSounds = new ObjectOpenHashSet<>();
+    private static final Object2ObjectOpenHashMap<ResourceLocation, SoundEvent> replacedSounds = new Object2ObjectOpenHashMap<>();
+
+    private static volatile Object2ObjectOpenHashMap<ResourceLocation, SoundPolicy> policies = new Object2ObjectOpenHashMap<>();
+    private static volatile int policyGeneration;
+
     public static final SoundEvent MISSING = new SoundEvent(MISSING_RESOURCE);
 
     static {
         myRegistry.defaultReturnValue(SoundLibrary.MISSING);
         soundMetadata.defaultReturnValue(new SoundMetadata());
+        policies.defaultReturnValue(new SoundPolicy(MISSING_RESOURCE, 0));
 
         Validators.registerValidator(SOUND_FILE_TYPE, new MapValidator<String, SoundMetadataConfig>());
     }
@@ -163,6 +174,80 @@ public final class SoundLibrary {
         return Optional.of(se);
     }
 
+    /**
+     * Blocks plays of the sound.  Takes effect the next time the sound policies are compiled.
+     */
+    public static synchronized void blockSound(@Nonnull final ResourceLocation sound) {
+        blockedSounds.add(Objects.requireNonNull(sound));
+    }
+
+    /**
+     * Replaces plays of a sound with another.  Takes effect the next time the sound policies are compiled.
+     */
+    public static synchronized void replaceSound(@Nonnull final ResourceLocation sound, @Nonnull final SoundEvent replacement) {
+        replacedSounds.put(Objects.requireNonNull(sound), Objects.requireNonNull(replacement));
+    }
+
+    /**
+     * Removes the blocks and replacements placed on sounds.  Takes effect the next time the sound policies are
+     * compiled.
+     */
+    public static synchronized void clearSoundOverrides() {
+        blockedSounds.clear();
+        replacedSounds.clear();
+    }
+
+    /**
+     * Compiles the rules that apply to sound plays into a policy for each sound.  Sounds without any rules share a
+     * default policy.  Needs to be called when the individual sound configuration changes, or when a module changes
+     * the sounds it blocks or replaces.
+     */
+    public static synchronized void compilePolicies() {
+        final int generation = policyGeneration + 1;
+        final Object2ObjectOpenHashMap<ResourceLocation, SoundPolicy> result = new Object2ObjectOpenHashMap<>();
+        result.defaultReturnValue(new SoundPolicy(MISSING_RESOURCE, generation));
+
+        for (final ResourceLocation loc : blockedSounds)
+            result.computeIfAbsent(loc, k -> new SoundPolicy(k, generation)).blocked = true;
+
+        for (final Map.Entry<ResourceLocation, SoundEvent> kvp : replacedSounds.entrySet())
+            result.computeIfAbsent(kvp.getKey(), k -> new SoundPolicy(k, generation)).replacement = kvp.getValue();
+
+        for (final IndividualSoundConfig cfg : getIndividualSoundConfig())
+            result.computeIfAbsent(cfg.getLocation(), k -> new SoundPolicy(k, generation)).apply(cfg);
+
+        policies = result;
+        policyGeneration = generation;
+
+        LOGGER.debug("Compiled %d sound policies", result.size());
+    }
+
+    /**
+     * Gets the policy for plays of the specified sound.
+     */
+    @Nonnull
+    public static SoundPolicy getPolicy(@Nonnull final ResourceLocation sound) {
+        return policies.get(Objects.requireNonNull(sound));
+    }
+
+    /**
+     * Gets the policy for a sound play.  The policy is cached on the sound instance so later calls for the same play
+     * do not need a lookup.  Should only be called from the client thread.
+     */
+    @Nonnull
+    public static SoundPolicy getPolicy(@Nonnull final ISound sound) {
+        if (sound instanceof IMixinSoundPolicy) {
+            final IMixinSoundPolicy holder = (IMixinSoundPolicy) sound;
+            SoundPolicy policy = holder.getPolicy();
+            if (policy == null || policy.getGeneration() != policyGeneration) {
+                policy = getPolicy(sound.getSoundLocation());
+                holder.setPolicy(policy);
+            }
+            return policy;
+        }
+        return getPolicy(sound.getSoundLocation());
+    }
+
     @SuppressWarnings("unused")
     @Nonnull
     public static SoundMetadata getSoundMetadata(@Nonnull final ResourceLocation sound) {
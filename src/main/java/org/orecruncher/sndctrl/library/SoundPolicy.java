@@ -0,0 +1,130 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.library;
+
+import com.google.common.base.MoreObjects;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.SoundEvent;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * How plays of a sound are to be handled: whether it is blocked, culled, or merged, the volume scale to apply, and
+ * what it is to be replaced with.  The rules that apply to a sound come from several places (individual sound
+ * configuration, other modules) and are compiled into a single policy by the SoundLibrary so a sound play needs one
+ * lookup rather than one per rule.  Policies are rebuilt when any of the rules change; the generation is used to
+ * tell a policy cached on a sound instance is out of date.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SoundPolicy {
+
+    private static final float MIN_VOLUME_SCALE = 0F;
+    private static final float MAX_VOLUME_SCALE = 4F;
+
+    private final ResourceLocation location;
+    private final int generation;
+    boolean blocked;
+    boolean culled;
+    boolean merged;
+    float volumeScale = 1F;
+    @Nullable
+    SoundEvent replacement;
+
+    // Tick the sound last made it past culling.  Only touched from the client thread.
+    private long lastPlayed = Long.MIN_VALUE / 2;
+
+    SoundPolicy(@Nonnull final ResourceLocation location, final int generation) {
+        this.location = location;
+        this.generation = generation;
+    }
+
+    void apply(@Nonnull final IndividualSoundConfig cfg) {
+        this.blocked |= cfg.isBlocked();
+        this.culled = cfg.isCulled();
+        this.merged = cfg.isMerged();
+        this.volumeScale = MathStuff.clamp(cfg.getVolumeScale(), MIN_VOLUME_SCALE, MAX_VOLUME_SCALE);
+    }
+
+    @Nonnull
+    public ResourceLocation getLocation() {
+        return this.location;
+    }
+
+    int getGeneration() {
+        return this.generation;
+    }
+
+    public boolean isBlocked() {
+        return this.blocked;
+    }
+
+    public boolean isCulled() {
+        return this.culled;
+    }
+
+    public boolean isMerged() {
+        return this.merged;
+    }
+
+    public float getVolumeScale() {
+        return this.volumeScale;
+    }
+
+    /**
+     * Sound to play in place of this one, or null if it plays as is.
+     */
+    @Nullable
+    public SoundEvent getReplacement() {
+        return this.replacement;
+    }
+
+    /**
+     * Determines if a play of the sound is to be culled because it was played too recently.  A play that is not
+     * culled starts a new interval.  Called from the client thread.
+     *
+     * @param currentTick The current client tick
+     * @param interval    Minimum number of ticks between plays
+     * @return true if the play should be culled, false otherwise
+     */
+    public boolean cull(final long currentTick, final int interval) {
+        if (!this.culled || interval <= 0)
+            return false;
+        if (currentTick - this.lastPlayed < interval)
+            return true;
+        this.lastPlayed = currentTick;
+        return false;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .addValue(this.location)
+                .add("blocked", this.blocked)
+                .add("culled", this.culled)
+                .add("merged", this.merged)
+                .add("volumeScale", this.volumeScale)
+                .add("replacement", this.replacement != null ? this.replacement.getName() : null)
+                .toString();
+    }
+}
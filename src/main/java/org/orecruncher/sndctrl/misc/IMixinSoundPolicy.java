@@ -17,13 +17,13 @@
  */
 package org.orecruncher.sndctrl.misc;
 
-import org.orecruncher.sndctrl.library.AudioEffectLibrary;
+import org.orecruncher.sndctrl.library.SoundPolicy;
 
 import javax.annotation.Nullable;
 
-public interface IMixinAudioEffectData {
+public interface IMixinSoundPolicy {
     @Nullable
-    AudioEffectLibrary.EffectData getData();
+    SoundPolicy getPolicy();
 
-    void setData(@Nullable AudioEffectLibrary.EffectData data);
+    void setPolicy(@Nullable SoundPolicy policy);
 }
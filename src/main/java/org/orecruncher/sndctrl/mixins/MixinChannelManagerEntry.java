@@ -0,0 +1,47 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020 OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.mixins;
+
+import net.minecraft.client.audio.ChannelManager;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.audio.AudioEngine;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import javax.annotation.Nonnull;
+
+@Mixin(ChannelManager.Entry.class)
+public class MixinChannelManagerEntry {
+
+    /**
+     * Called when the channel is released by the sound engine, either because the sound finished or it was stopped.
+     * Lets the AudioEngine know which channel to look at rather than having it poll all of them.
+     * @param ci Ignored
+     */
+    @Inject(method = "release()V", at = @At("HEAD"))
+    public void onRelease(CallbackInfo ci) {
+        try {
+            AudioEngine.onChannelReleased((ChannelManager.Entry) ((Object) this));
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onRelease()!");
+        }
+    }
+}
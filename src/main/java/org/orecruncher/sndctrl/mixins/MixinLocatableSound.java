@@ -1,5 +1,5 @@
 /*
- * Dynamic Surroundings: Sound Control
+ * Dynamic Surroundings
  * Copyright (C) 2020 OreCruncher
  *
  * This program is free software: you can redistribute it and/or modify
@@ -18,29 +18,30 @@
 
 package org.orecruncher.sndctrl.mixins;
 
-import net.minecraft.block.BlockState;
-import org.orecruncher.sndctrl.library.AudioEffectLibrary;
-import org.orecruncher.sndctrl.misc.IMixinAudioEffectData;
+import net.minecraft.client.audio.LocatableSound;
+import org.orecruncher.sndctrl.library.SoundPolicy;
+import org.orecruncher.sndctrl.misc.IMixinSoundPolicy;
 import org.spongepowered.asm.mixin.Mixin;
 
 import javax.annotation.Nullable;
 
 /**
- * Simple mixin that adds a context field to BlockState where effect information for the block can be stored.
+ * Holds the SoundPolicy looked up for the sound so the handlers that look at a sound play do not have to look it up
+ * again.
  */
-@Mixin(BlockState.class)
-public class MixinBlockState implements IMixinAudioEffectData {
+@Mixin(LocatableSound.class)
+public class MixinLocatableSound implements IMixinSoundPolicy {
 
-    private AudioEffectLibrary.EffectData sndctrl_data = null;
+    private SoundPolicy sndctrl_policy = null;
 
-    @Override
     @Nullable
-    public AudioEffectLibrary.EffectData getData() {
-        return this.sndctrl_data;
+    @Override
+    public SoundPolicy getPolicy() {
+        return this.sndctrl_policy;
     }
 
     @Override
-    public void setData(@Nullable AudioEffectLibrary.EffectData data) {
-        this.sndctrl_data = data;
+    public void setPolicy(@Nullable SoundPolicy policy) {
+        this.sndctrl_policy = policy;
     }
 }
@@ -61,6 +61,10 @@ public class MixinSoundEngine {
     @Shadow
     private GameSettings options;
 
+    @Final
+    @Shadow
+    private SoundEngineExecutor executor;
+
     @Final
     @Shadow
     private Map<ISound, Integer> playingSoundsStopTime;
@@ -134,20 +138,24 @@ public class MixinSoundEngine {
     public void onSoundPlay(ISound p_sound, CallbackInfo ci, SoundEventAccessor soundeventaccessor, ResourceLocation resourcelocation, Sound sound, float f, float f1, SoundCategory soundcategory, float f2, float f3, ISound.AttenuationType attenuationtype, boolean flag, Vector3d vector3d, boolean flag2, boolean flag3, CompletableFuture completablefuture, ChannelManager.Entry entry) {
         try {
             SoundFXProcessor.onSoundPlay(p_sound, entry);
-            AudioEngine.onPlaySound(p_sound);
+            AudioEngine.onPlaySound(p_sound, entry);
         } catch(@Nonnull final Throwable t) {
             SoundControl.LOGGER.error(t, "Error in onSoundPlay()!");
         }
     }
 
     /**
-     * Need to tick and handle sounds that are tagged with CONFIG category even if the game is paused.
+     * Need to tick and handle sounds that are tagged with CONFIG category even if the game is paused.  Also queues
+     * validation of the sound effect updates made while ticking sound sources.
      *
      * @param isGamePaused Flag indicating whether game is paused
      * @param ci           Ignored
      */
     @Inject(method = "tick(Z)V", at = @At("RETURN"))
     public void tick(final boolean isGamePaused, @Nonnull final CallbackInfo ci) {
+        // Queues in behind the source ticks submitted by the channel manager
+        this.executor.execute(SoundFXProcessor::endTickBatch);
+
         if (!isGamePaused)
             return;
 
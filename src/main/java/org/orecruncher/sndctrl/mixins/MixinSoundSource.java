@@ -19,6 +19,7 @@
 package org.orecruncher.sndctrl.mixins;
 
 import net.minecraft.client.audio.AudioStreamBuffer;
+import net.minecraft.client.audio.IAudioStream;
 import net.minecraft.client.audio.SoundSource;
 import org.lwjgl.openal.AL10;
 import org.orecruncher.sndctrl.SoundControl;
@@ -30,6 +31,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import javax.annotation.Nonnull;
@@ -56,14 +58,14 @@ public class MixinSoundSource implements IMixinSoundContext {
     }
 
     /**
-     * Called when the sound is ticked by the sound engine. This will set the sound effect properties for the sound
+     * Called when the sound is started by the sound engine. This will set the sound effect properties for the sound
      * at the time of play.
      * @param ci Ignored
      */
     @Inject(method = "play()V", at = @At("HEAD"))
     public void onPlay(CallbackInfo ci) {
         try {
-            SoundFXProcessor.tick((SoundSource) ((Object) this));
+            SoundFXProcessor.play((SoundSource) ((Object) this));
         } catch(@Nonnull final Throwable t) {
             SoundControl.LOGGER.error(t, "Error in onPlay()!");
         }
@@ -119,4 +121,20 @@ public class MixinSoundSource implements IMixinSoundContext {
             SoundControl.LOGGER.error(t, "Error in onPlayBuffer()!");
         }
     }
+
+    /**
+     * Called when a streaming sound is attached to the source.  If the sound has non-linear attenuation and is not
+     * mono, the stream is wrapped so that it is downmixed to mono as it is read.
+     * @param stream Stream to convert to mono if needed.
+     * @return The stream the source should play
+     */
+    @ModifyVariable(method = "playStreamingSound(Lnet/minecraft/client/audio/IAudioStream;)V", at = @At("HEAD"), argsOnly = true)
+    public IAudioStream onPlayStream(IAudioStream stream) {
+        try {
+            return SoundFXProcessor.playStream((SoundSource) ((Object) this), stream);
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onPlayStream()!");
+        }
+        return stream;
+    }
 }